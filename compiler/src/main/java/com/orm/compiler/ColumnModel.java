@@ -0,0 +1,37 @@
+package com.orm.compiler;
+
+/**
+ * A plain column of an entity as seen by the annotation processor.
+ */
+final class ColumnModel {
+
+    enum Kind {
+        SHORT,
+        INT,
+        LONG,
+        FLOAT,
+        DOUBLE,
+        BOOLEAN,
+        STRING,
+        BIG_DECIMAL,
+        TIMESTAMP,
+        DATE,
+        CALENDAR,
+        BYTES,
+        ENUM
+    }
+
+    final String fieldName;
+    final String columnName;
+    final String typeName;
+    final Kind kind;
+    final boolean primitive;
+
+    ColumnModel(String fieldName, String columnName, String typeName, Kind kind, boolean primitive) {
+        this.fieldName = fieldName;
+        this.columnName = columnName;
+        this.typeName = typeName;
+        this.kind = kind;
+        this.primitive = primitive;
+    }
+}
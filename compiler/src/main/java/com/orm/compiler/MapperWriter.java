@@ -0,0 +1,269 @@
+package com.orm.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes the source of a generated {@code SugarMapper}.
+ *
+ * The generated code mirrors what {@code ReflectionUtil.addFieldValueToColumn} and
+ * {@code ReflectionUtil.setFieldValueFromCursor} do for each field type, so that an entity reads
+ * and writes the same values whether or not it has a mapper.
+ */
+final class MapperWriter {
+    private static final String INDENT = "    ";
+
+    private final String packageName;
+    private final String mapperName;
+    private final String entityName;
+    private final List<ColumnModel> columns;
+
+    MapperWriter(String packageName, String mapperName, String entityName, List<ColumnModel> columns) {
+        this.packageName = packageName;
+        this.mapperName = mapperName;
+        this.entityName = entityName;
+        this.columns = columns;
+    }
+
+    void write(Writer writer) throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+
+        sb.append("import android.content.ContentValues;\n");
+        sb.append("import android.database.Cursor;\n");
+        sb.append("import android.database.sqlite.SQLiteStatement;\n\n");
+        sb.append("import com.orm.mapper.SugarMapper;\n\n");
+        sb.append("/**\n * Generated by sugar-compiler. Do not edit.\n */\n");
+        sb.append("public final class ").append(mapperName)
+                .append(" implements SugarMapper<").append(entityName).append("> {\n\n");
+
+        writeColumnNames(sb);
+        writeNewInstance(sb);
+        writeGetColumnNames(sb);
+        writeToContentValues(sb);
+        writeBind(sb);
+        writeFromCursor(sb);
+
+        sb.append("}\n");
+        writer.write(sb.toString());
+    }
+
+    private void writeColumnNames(StringBuilder sb) {
+        sb.append(INDENT).append("private static final String[] COLUMN_NAMES = {");
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(quote(columns.get(i).columnName));
+        }
+        sb.append("};\n\n");
+    }
+
+    private void writeNewInstance(StringBuilder sb) {
+        sb.append(INDENT).append("@Override\n");
+        sb.append(INDENT).append("public ").append(entityName).append(" newInstance() {\n");
+        sb.append(INDENT).append(INDENT).append("return new ").append(entityName).append("();\n");
+        sb.append(INDENT).append("}\n\n");
+    }
+
+    private void writeGetColumnNames(StringBuilder sb) {
+        sb.append(INDENT).append("@Override\n");
+        sb.append(INDENT).append("public String[] getColumnNames() {\n");
+        sb.append(INDENT).append(INDENT).append("return COLUMN_NAMES;\n");
+        sb.append(INDENT).append("}\n\n");
+    }
+
+    private void writeToContentValues(StringBuilder sb) {
+        sb.append(INDENT).append("@Override\n");
+        sb.append(INDENT).append("public void toContentValues(").append(entityName)
+                .append(" entity, ContentValues values) {\n");
+
+        for (ColumnModel column : columns) {
+            String field = "entity." + column.fieldName;
+            String name = quote(column.columnName);
+            String body = INDENT + INDENT;
+
+            if (column.primitive || column.kind == ColumnModel.Kind.STRING) {
+                sb.append(body).append("values.put(").append(name).append(", ").append(field).append(");\n");
+                continue;
+            }
+
+            String nullValue = (column.kind == ColumnModel.Kind.BYTES)
+                    ? "values.put(" + name + ", \"\".getBytes());"
+                    : "values.putNull(" + name + ");";
+            String value;
+            switch (column.kind) {
+                case BIG_DECIMAL:
+                    value = field + ".toString()";
+                    break;
+                case TIMESTAMP:
+                case DATE:
+                    value = field + ".getTime()";
+                    break;
+                case CALENDAR:
+                    value = field + ".getTimeInMillis()";
+                    break;
+                case ENUM:
+                    value = field + ".name()";
+                    break;
+                default:
+                    value = field;
+                    break;
+            }
+
+            sb.append(body).append("if (").append(field).append(" == null) {\n");
+            sb.append(body).append(INDENT).append(nullValue).append("\n");
+            sb.append(body).append("} else {\n");
+            sb.append(body).append(INDENT).append("values.put(").append(name).append(", ").append(value).append(");\n");
+            sb.append(body).append("}\n");
+        }
+
+        sb.append(INDENT).append("}\n\n");
+    }
+
+    private void writeBind(StringBuilder sb) {
+        sb.append(INDENT).append("@Override\n");
+        sb.append(INDENT).append("public int bind(SQLiteStatement statement, int startIndex, ")
+                .append(entityName).append(" entity) {\n");
+        sb.append(INDENT).append(INDENT).append("int index = startIndex;\n");
+
+        for (ColumnModel column : columns) {
+            String field = "entity." + column.fieldName;
+            String body = INDENT + INDENT;
+            String bind;
+
+            switch (column.kind) {
+                case SHORT:
+                case INT:
+                case LONG:
+                    bind = "statement.bindLong(index, " + field + ");";
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    bind = "statement.bindDouble(index, " + field + ");";
+                    break;
+                case BOOLEAN:
+                    bind = "statement.bindLong(index, " + field + " ? 1 : 0);";
+                    break;
+                case STRING:
+                    bind = "statement.bindString(index, " + field + ");";
+                    break;
+                case BIG_DECIMAL:
+                    bind = "statement.bindString(index, " + field + ".toString());";
+                    break;
+                case TIMESTAMP:
+                case DATE:
+                    bind = "statement.bindLong(index, " + field + ".getTime());";
+                    break;
+                case CALENDAR:
+                    bind = "statement.bindLong(index, " + field + ".getTimeInMillis());";
+                    break;
+                case BYTES:
+                    bind = "statement.bindBlob(index, " + field + ");";
+                    break;
+                case ENUM:
+                    bind = "statement.bindString(index, " + field + ".name());";
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown column kind " + column.kind);
+            }
+
+            if (column.primitive) {
+                sb.append(body).append(bind).append("\n");
+            } else {
+                String nullBind = (column.kind == ColumnModel.Kind.BYTES)
+                        ? "statement.bindBlob(index, \"\".getBytes());"
+                        : "statement.bindNull(index);";
+                sb.append(body).append("if (").append(field).append(" == null) {\n");
+                sb.append(body).append(INDENT).append(nullBind).append("\n");
+                sb.append(body).append("} else {\n");
+                sb.append(body).append(INDENT).append(bind).append("\n");
+                sb.append(body).append("}\n");
+            }
+            sb.append(body).append("index++;\n");
+        }
+
+        sb.append(INDENT).append(INDENT).append("return index;\n");
+        sb.append(INDENT).append("}\n\n");
+    }
+
+    private void writeFromCursor(StringBuilder sb) {
+        sb.append(INDENT).append("@Override\n");
+        sb.append(INDENT).append("public void fromCursor(Cursor cursor, int[] columnIndexes, ")
+                .append(entityName).append(" entity) {\n");
+        sb.append(INDENT).append(INDENT).append("int index;\n");
+
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnModel column = columns.get(i);
+            String field = "entity." + column.fieldName;
+            String body = INDENT + INDENT;
+            String inner = body + INDENT;
+
+            sb.append(body).append("index = columnIndexes[").append(i).append("];\n");
+            sb.append(body).append("if (index >= 0 && !cursor.isNull(index)) {\n");
+
+            switch (column.kind) {
+                case SHORT:
+                    sb.append(inner).append(field).append(" = cursor.getShort(index);\n");
+                    break;
+                case INT:
+                    sb.append(inner).append(field).append(" = cursor.getInt(index);\n");
+                    break;
+                case LONG:
+                    sb.append(inner).append(field).append(" = cursor.getLong(index);\n");
+                    break;
+                case FLOAT:
+                    sb.append(inner).append(field).append(" = cursor.getFloat(index);\n");
+                    break;
+                case DOUBLE:
+                    sb.append(inner).append(field).append(" = cursor.getDouble(index);\n");
+                    break;
+                case BOOLEAN:
+                    sb.append(inner).append(field).append(" = \"1\".equals(cursor.getString(index));\n");
+                    break;
+                case STRING:
+                    sb.append(inner).append("String value = cursor.getString(index);\n");
+                    sb.append(inner).append(field).append(" = \"null\".equals(value) ? null : value;\n");
+                    break;
+                case BIG_DECIMAL:
+                    sb.append(inner).append("String value = cursor.getString(index);\n");
+                    sb.append(inner).append(field).append(" = \"null\".equals(value) ? null : new java.math.BigDecimal(value);\n");
+                    break;
+                case TIMESTAMP:
+                    sb.append(inner).append(field).append(" = new java.sql.Timestamp(cursor.getLong(index));\n");
+                    break;
+                case DATE:
+                    sb.append(inner).append(field).append(" = new java.util.Date(cursor.getLong(index));\n");
+                    break;
+                case CALENDAR:
+                    sb.append(inner).append("java.util.Calendar value = java.util.Calendar.getInstance();\n");
+                    sb.append(inner).append("value.setTimeInMillis(cursor.getLong(index));\n");
+                    sb.append(inner).append(field).append(" = value;\n");
+                    break;
+                case BYTES:
+                    sb.append(inner).append("byte[] value = cursor.getBlob(index);\n");
+                    sb.append(inner).append(field).append(" = (value == null) ? \"\".getBytes() : value;\n");
+                    break;
+                case ENUM:
+                    sb.append(inner).append("try {\n");
+                    sb.append(inner).append(INDENT).append(field).append(" = ").append(column.typeName)
+                            .append(".valueOf(cursor.getString(index));\n");
+                    sb.append(inner).append("} catch (IllegalArgumentException ignored) {\n");
+                    sb.append(inner).append(INDENT).append("// unknown constant, leave the field untouched\n");
+                    sb.append(inner).append("}\n");
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown column kind " + column.kind);
+            }
+
+            sb.append(body).append("}\n");
+        }
+
+        sb.append(INDENT).append("}\n");
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,376 @@
+package com.orm.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a {@code SugarMapper} for every {@code @Table} annotated class and every
+ * {@code SugarRecord} subclass of the compilation.
+ *
+ * A mapper accesses fields directly, so it is only generated when every plain column is visible
+ * from the entity's package and the entity has a visible no-arg constructor. Entities that don't
+ * qualify are reported with a note and keep using reflection at runtime.
+ */
+public class SugarMapperProcessor extends AbstractProcessor {
+    private static final String TABLE = "com.orm.annotation.Table";
+    private static final String COLUMN = "com.orm.annotation.Column";
+    private static final String IGNORE = "com.orm.annotation.Ignore";
+    private static final String SUGAR_RECORD = "com.orm.SugarRecord";
+    private static final String ENTITY_REF = "com.orm.EntityRef";
+    private static final String MAPPER_SUFFIX = "_SugarMapper";
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // SugarRecord subclasses carry no annotation, so every root element has to be looked at
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        List<TypeElement> entities = new ArrayList<>();
+        for (Element element : roundEnv.getRootElements()) {
+            collectEntities(element, entities);
+        }
+
+        for (TypeElement entity : entities) {
+            String mapperName = getMapperName(entity);
+            if (generated.add(getPackageName(entity) + "." + mapperName)) {
+                generateMapper(entity, mapperName);
+            }
+        }
+
+        return false;
+    }
+
+    private void collectEntities(Element element, List<TypeElement> entities) {
+        if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+            return;
+        }
+
+        TypeElement type = (TypeElement) element;
+        if (type.getKind() == ElementKind.CLASS && isEntity(type)) {
+            entities.add(type);
+        }
+
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collectEntities(nested, entities);
+        }
+    }
+
+    private boolean isEntity(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+
+        return hasAnnotation(type, TABLE) || isSugarRecord(type.asType());
+    }
+
+    private boolean isSugarRecord(TypeMirror type) {
+        TypeElement sugarRecord = elements.getTypeElement(SUGAR_RECORD);
+        if (sugarRecord == null || type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        TypeMirror erased = types.erasure(type);
+        return !types.isSameType(erased, sugarRecord.asType()) && types.isSubtype(erased, sugarRecord.asType());
+    }
+
+    private boolean isEntityType(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        Element element = ((DeclaredType) type).asElement();
+        return hasAnnotation(element, TABLE) || isSugarRecord(type);
+    }
+
+    private void generateMapper(TypeElement entity, String mapperName) {
+        String reason = checkEntityAccess(entity);
+        List<ColumnModel> columns = new ArrayList<>();
+
+        if (reason == null) {
+            reason = collectColumns(entity, columns);
+        }
+
+        if (reason != null) {
+            messager.printMessage(Diagnostic.Kind.NOTE,
+                    "Sugar: no mapper generated for " + entity.getQualifiedName() + ", " + reason
+                            + ". Reflection will be used instead.", entity);
+            return;
+        }
+
+        String packageName = getPackageName(entity);
+        String qualifiedName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+
+        try {
+            JavaFileObject file = filer.createSourceFile(qualifiedName, entity);
+            try (Writer writer = file.openWriter()) {
+                new MapperWriter(packageName, mapperName, entity.getQualifiedName().toString(), columns).write(writer);
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                    "Sugar: could not write " + qualifiedName + ": " + e.getMessage(), entity);
+        }
+    }
+
+    private String checkEntityAccess(TypeElement entity) {
+        Element current = entity;
+        while (current.getKind().isClass() || current.getKind().isInterface()) {
+            TypeElement type = (TypeElement) current;
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                return "it is not visible from its package";
+            }
+            if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)
+                    && type.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+                return "it is a non-static inner class";
+            }
+            current = type.getEnclosingElement();
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return null;
+            }
+        }
+
+        return "it has no visible no-arg constructor";
+    }
+
+    private String collectColumns(TypeElement entity, List<ColumnModel> columns) {
+        String packageName = getPackageName(entity);
+        Set<String> names = new HashSet<>();
+        TypeMirror current = entity.asType();
+
+        // same order as ReflectionUtil.getTableFields: declared fields first, then the superclass
+        while (current.getKind() == TypeKind.DECLARED) {
+            TypeElement type = (TypeElement) ((DeclaredType) current).asElement();
+            if (type.getQualifiedName().contentEquals(Object.class.getName())) {
+                break;
+            }
+
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                        || hasAnnotation(field, IGNORE)) {
+                    continue;
+                }
+
+                TypeMirror fieldType = field.asType();
+                if (isEntityType(fieldType) || isDeclared(fieldType, List.class.getName())
+                        || isDeclared(fieldType, ENTITY_REF)) {
+                    // relations keep going through the reflective inflaters
+                    continue;
+                }
+
+                String fieldName = field.getSimpleName().toString();
+                if (!names.add(fieldName)) {
+                    return "field " + fieldName + " is shadowed by a subclass field";
+                }
+                if (modifiers.contains(Modifier.FINAL)) {
+                    return "field " + fieldName + " is final";
+                }
+                if (!isAccessible(field, type, packageName)) {
+                    return "field " + fieldName + " is not visible from its package";
+                }
+
+                ColumnModel column = toColumn(field, fieldName, fieldType);
+                if (column == null) {
+                    return "field " + fieldName + " has an unsupported type " + fieldType;
+                }
+                columns.add(column);
+            }
+
+            current = type.getSuperclass();
+        }
+
+        return null;
+    }
+
+    private boolean isAccessible(VariableElement field, TypeElement declaringType, String packageName) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        if (modifiers.contains(Modifier.PUBLIC) && declaringType.getModifiers().contains(Modifier.PUBLIC)) {
+            return true;
+        }
+
+        return getPackageName(declaringType).equals(packageName);
+    }
+
+    private boolean isDeclared(TypeMirror type, String qualifiedName) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        return element.getQualifiedName().contentEquals(qualifiedName);
+    }
+
+    private ColumnModel toColumn(VariableElement field, String fieldName, TypeMirror type) {
+        String columnName = getColumnName(field, fieldName);
+
+        switch (type.getKind()) {
+            case SHORT:
+                return new ColumnModel(fieldName, columnName, "short", ColumnModel.Kind.SHORT, true);
+            case INT:
+                return new ColumnModel(fieldName, columnName, "int", ColumnModel.Kind.INT, true);
+            case LONG:
+                return new ColumnModel(fieldName, columnName, "long", ColumnModel.Kind.LONG, true);
+            case FLOAT:
+                return new ColumnModel(fieldName, columnName, "float", ColumnModel.Kind.FLOAT, true);
+            case DOUBLE:
+                return new ColumnModel(fieldName, columnName, "double", ColumnModel.Kind.DOUBLE, true);
+            case BOOLEAN:
+                return new ColumnModel(fieldName, columnName, "boolean", ColumnModel.Kind.BOOLEAN, true);
+            case ARRAY:
+                if (types.isSameType(type, types.getArrayType(types.getPrimitiveType(TypeKind.BYTE)))) {
+                    return new ColumnModel(fieldName, columnName, "byte[]", ColumnModel.Kind.BYTES, false);
+                }
+                return null;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String typeName = element.getQualifiedName().toString();
+
+        if (element.getKind() == ElementKind.ENUM) {
+            return new ColumnModel(fieldName, columnName, typeName, ColumnModel.Kind.ENUM, false);
+        }
+
+        ColumnModel.Kind kind;
+        switch (typeName) {
+            case "java.lang.Short":
+                kind = ColumnModel.Kind.SHORT;
+                break;
+            case "java.lang.Integer":
+                kind = ColumnModel.Kind.INT;
+                break;
+            case "java.lang.Long":
+                kind = ColumnModel.Kind.LONG;
+                break;
+            case "java.lang.Float":
+                kind = ColumnModel.Kind.FLOAT;
+                break;
+            case "java.lang.Double":
+                kind = ColumnModel.Kind.DOUBLE;
+                break;
+            case "java.lang.Boolean":
+                kind = ColumnModel.Kind.BOOLEAN;
+                break;
+            case "java.lang.String":
+                kind = ColumnModel.Kind.STRING;
+                break;
+            case "java.math.BigDecimal":
+                kind = ColumnModel.Kind.BIG_DECIMAL;
+                break;
+            case "java.sql.Timestamp":
+                kind = ColumnModel.Kind.TIMESTAMP;
+                break;
+            case "java.util.Date":
+                kind = ColumnModel.Kind.DATE;
+                break;
+            case "java.util.Calendar":
+                kind = ColumnModel.Kind.CALENDAR;
+                break;
+            default:
+                return null;
+        }
+
+        return new ColumnModel(fieldName, columnName, typeName, kind, false);
+    }
+
+    private String getColumnName(VariableElement field, String fieldName) {
+        AnnotationMirror column = getAnnotation(field, COLUMN);
+        if (column != null) {
+            for (ExecutableElement key : column.getElementValues().keySet()) {
+                if (key.getSimpleName().contentEquals("name")) {
+                    AnnotationValue value = column.getElementValues().get(key);
+                    return String.valueOf(value.getValue());
+                }
+            }
+        }
+
+        return fieldName;
+    }
+
+    private String getMapperName(TypeElement entity) {
+        String binaryName = elements.getBinaryName(entity).toString();
+        String packageName = getPackageName(entity);
+        String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        return simpleName.replace('$', '_') + MAPPER_SUFFIX;
+    }
+
+    private String getPackageName(TypeElement type) {
+        PackageElement packageElement = elements.getPackageOf(type);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        return getAnnotation(element, annotation) != null;
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotation)) {
+                return mirror;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+package android.database;
+
+/**
+ * Stand-in for the Android interface, with the methods generated mappers call.
+ */
+public interface Cursor {
+
+    boolean isNull(int columnIndex);
+
+    short getShort(int columnIndex);
+
+    int getInt(int columnIndex);
+
+    long getLong(int columnIndex);
+
+    float getFloat(int columnIndex);
+
+    double getDouble(int columnIndex);
+
+    String getString(int columnIndex);
+
+    byte[] getBlob(int columnIndex);
+}
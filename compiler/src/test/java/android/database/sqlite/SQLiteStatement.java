@@ -0,0 +1,39 @@
+package android.database.sqlite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the Android class, with the methods generated mappers call.
+ */
+public final class SQLiteStatement {
+    private final Map<Integer, Object> arguments = new HashMap<>();
+
+    public void bindNull(int index) {
+        arguments.put(index, null);
+    }
+
+    public void bindLong(int index, long value) {
+        arguments.put(index, value);
+    }
+
+    public void bindDouble(int index, double value) {
+        arguments.put(index, value);
+    }
+
+    public void bindString(int index, String value) {
+        arguments.put(index, value);
+    }
+
+    public void bindBlob(int index, byte[] value) {
+        arguments.put(index, value);
+    }
+
+    public boolean isBound(int index) {
+        return arguments.containsKey(index);
+    }
+
+    public Object getArgument(int index) {
+        return arguments.get(index);
+    }
+}
@@ -0,0 +1,223 @@
+package com.orm.compiler;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the processor over small entities and compiles what it generates against the real
+ * {@code SugarMapper} and annotations of the library. Android types come from the stand-ins of
+ * this module's test sources. The generated mappers are loaded in their own class loader, along
+ * with {@code SugarMapper}, so they are called through reflection.
+ */
+public final class SugarMapperProcessorTest {
+    private static final String LIBRARY_SOURCES = "../library/src/main/java/";
+    private static final String[] LIBRARY_FILES = {
+            "com/orm/mapper/SugarMapper.java",
+            "com/orm/annotation/Table.java",
+            "com/orm/annotation/Column.java",
+            "com/orm/annotation/Ignore.java",
+            "com/orm/annotation/Id.java"
+    };
+
+    private static final String MAPPED_MODEL = "package com.orm.model;\n"
+            + "import com.orm.annotation.Id;\n"
+            + "import com.orm.annotation.Table;\n"
+            + "@Table\n"
+            + "public class MappedModel {\n"
+            + "    @Id Long id;\n"
+            + "    String name;\n"
+            + "    public MappedModel() {}\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File classes;
+    private File generated;
+    private final List<String> errors = new ArrayList<>();
+
+    @Test
+    public void testGeneratedMapperImplementsSugarMapper() throws Exception {
+        assertTrue(errors.toString(), compile(MAPPED_MODEL));
+
+        Object mapper = loadMapper("com.orm.model.MappedModel_SugarMapper");
+        assertTrue(isSugarMapper(mapper.getClass()));
+
+        Object model = call(mapper, "newInstance");
+        assertEquals("com.orm.model.MappedModel", model.getClass().getName());
+        assertArrayEquals(new String[] { "id", "name" }, (String[]) call(mapper, "getColumnNames"));
+
+        ContentValues values = new ContentValues();
+        call(mapper, "toContentValues", model, values);
+        assertTrue(values.containsKey("id"));
+        assertTrue(values.containsKey("name"));
+
+        SQLiteStatement statement = new SQLiteStatement();
+        assertEquals(3, call(mapper, "bind", statement, 1, model));
+        assertTrue(statement.isBound(1));
+        assertTrue(statement.isBound(2));
+    }
+
+    @Test
+    public void testColumnNamesAreNotCopied() throws Exception {
+        assertTrue(errors.toString(), compile(MAPPED_MODEL));
+
+        Object mapper = loadMapper("com.orm.model.MappedModel_SugarMapper");
+        assertSame(call(mapper, "getColumnNames"), call(mapper, "getColumnNames"));
+    }
+
+    @Test
+    public void testEverySupportedTypeCompiles() throws Exception {
+        String source = "package com.orm.model;\n"
+                + "import com.orm.annotation.Column;\n"
+                + "import com.orm.annotation.Ignore;\n"
+                + "import com.orm.annotation.Table;\n"
+                + "@Table\n"
+                + "public class TypesModel {\n"
+                + "    public enum Kind { A, B }\n"
+                + "    Long id;\n"
+                + "    short primitiveShort; Short boxedShort;\n"
+                + "    int primitiveInt; Integer boxedInt;\n"
+                + "    long primitiveLong; Long boxedLong;\n"
+                + "    float primitiveFloat; Float boxedFloat;\n"
+                + "    double primitiveDouble; Double boxedDouble;\n"
+                + "    boolean primitiveBoolean; Boolean boxedBoolean;\n"
+                + "    @Column(name = \"TEXT\") String string;\n"
+                + "    java.math.BigDecimal decimal;\n"
+                + "    java.sql.Timestamp timestamp;\n"
+                + "    java.util.Date date;\n"
+                + "    java.util.Calendar calendar;\n"
+                + "    byte[] bytes;\n"
+                + "    Kind kind;\n"
+                + "    MappedModel owner;\n"
+                + "    java.util.List<MappedModel> children;\n"
+                + "    @Ignore String ignored;\n"
+                + "    transient String skipped;\n"
+                + "    static String shared;\n"
+                + "}\n";
+
+        assertTrue(errors.toString(), compile(MAPPED_MODEL, source));
+
+        Object mapper = loadMapper("com.orm.model.TypesModel_SugarMapper");
+        List<String> columns = Arrays.asList((String[]) call(mapper, "getColumnNames"));
+        assertEquals(20, columns.size());
+        assertTrue(columns.contains("TEXT"));
+        assertFalse(columns.contains("owner"));
+        assertFalse(columns.contains("children"));
+        assertFalse(columns.contains("ignored"));
+        assertFalse(columns.contains("skipped"));
+        assertFalse(columns.contains("shared"));
+
+        SQLiteStatement statement = new SQLiteStatement();
+        assertEquals(21, call(mapper, "bind", statement, 1, call(mapper, "newInstance")));
+    }
+
+    @Test
+    public void testPrivateFieldKeepsReflection() throws Exception {
+        String source = "package com.orm.model;\n"
+                + "import com.orm.annotation.Table;\n"
+                + "@Table\n"
+                + "public class PrivateModel {\n"
+                + "    private Long id;\n"
+                + "    public PrivateModel() {}\n"
+                + "}\n";
+
+        assertTrue(errors.toString(), compile(source));
+        assertFalse(new File(generated, "com/orm/model/PrivateModel_SugarMapper.java").exists());
+    }
+
+    private boolean compile(String... sources) throws Exception {
+        File sourceDir = folder.newFolder("src");
+        classes = folder.newFolder("classes");
+        generated = folder.newFolder("generated");
+
+        List<File> files = new ArrayList<>();
+        for (String libraryFile : LIBRARY_FILES) {
+            files.add(new File(LIBRARY_SOURCES + libraryFile));
+        }
+        for (String source : sources) {
+            String className = source.substring(source.indexOf("public class ") + 13).split("[ {]")[0];
+            File file = new File(sourceDir, className + ".java");
+            Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            // the android stand-ins are the only classes the sources need from the classpath
+            File stubs = new File(ContentValues.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            List<String> options = Arrays.asList(
+                    "-classpath", stubs.getPath(),
+                    "-d", classes.getPath(),
+                    "-s", generated.getPath());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(files));
+            task.setProcessors(Collections.singletonList(new SugarMapperProcessor()));
+            boolean success = task.call();
+
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.add(diagnostic.getMessage(Locale.ROOT));
+                }
+            }
+            return success;
+        }
+    }
+
+    private Object loadMapper(String name) throws Exception {
+        ClassLoader loader = new URLClassLoader(new URL[] { classes.toURI().toURL() }, getClass().getClassLoader());
+        Class<?> type = Class.forName(name, true, loader);
+        assertNotNull(type);
+        return type.newInstance();
+    }
+
+    private static boolean isSugarMapper(Class<?> type) {
+        for (Class<?> implemented : type.getInterfaces()) {
+            if (implemented.getName().equals("com.orm.mapper.SugarMapper")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object call(Object target, String name, Object... arguments) throws Exception {
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == arguments.length
+                    && !method.isBridge()) {
+                return method.invoke(target, arguments);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+}
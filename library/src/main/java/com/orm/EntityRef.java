@@ -0,0 +1,91 @@
+package com.orm;
+
+import com.orm.metadata.EntityMetadata;
+
+/**
+ * A lazy reference to another entity. Declaring a relation as {@code EntityRef<Customer>} instead
+ * of {@code Customer} stores the same id column, but a loaded entity only holds the id of the
+ * referenced one, which is read on the first call to {@link #get()}.
+ *
+ * Unlike plain {@link SugarRecord} relations, the referenced entity is not saved along with the
+ * entity that holds the reference.
+ *
+ * @param <T> the referenced entity class
+ */
+public final class EntityRef<T> {
+    private final Class<T> type;
+    private final Long id;
+    private volatile T entity;
+    private volatile boolean loaded;
+
+    private EntityRef(Class<T> type, Long id, T entity, boolean loaded) {
+        this.type = type;
+        this.id = id;
+        this.entity = entity;
+        this.loaded = loaded;
+    }
+
+    /**
+     * @param entity the referenced entity, or null
+     * @return a reference to an entity that is already loaded, or null if {@code entity} is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityRef<T> of(T entity) {
+        if (entity == null) {
+            return null;
+        }
+        return new EntityRef<>((Class<T>) entity.getClass(), null, entity, true);
+    }
+
+    /**
+     * @param type the referenced entity class
+     * @param id the id of the referenced entity
+     * @return a reference that reads the entity on first use
+     */
+    public static <T> EntityRef<T> of(Class<T> type, long id) {
+        return new EntityRef<>(type, id, null, false);
+    }
+
+    /**
+     * @return the referenced entity, read on the first call, or null if it does not exist
+     */
+    public T get() {
+        if (!loaded) {
+            entity = SugarRecord.findById(type, id);
+            loaded = true;
+        }
+        return entity;
+    }
+
+    /**
+     * @return the id of the referenced entity, without reading it, or null if it has none yet
+     */
+    public Long getId() {
+        if (id != null) {
+            return id;
+        }
+
+        Object entityId = EntityMetadata.of(type).getId(entity);
+        return (entityId instanceof Number) ? ((Number) entityId).longValue() : null;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the referenced entity was read, or given when the reference was created
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityRef{" +
+                "type=" + type.getSimpleName() +
+                ", id=" + getId() +
+                ", loaded=" + loaded +
+                '}';
+    }
+}
@@ -0,0 +1,359 @@
+package com.orm;
+
+import com.orm.query.Page;
+import com.orm.query.Select;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.orm.SugarContext.getSugarContext;
+
+/**
+ * Loads the results of a query one fixed-size page at a time, for lists that scroll through large
+ * tables. Created by {@link SugarDataSource#pagedLoader(Select, String, boolean, int, int)}.
+ *
+ * Pages are read with {@link Select#page(String, boolean, int, String)}, so every page costs the
+ * same however deep it is. Once a page is read, the next one is read ahead on the executor of the
+ * {@link SugarContext} while the current one is shown; a page read ahead is not read further ahead
+ * until it is loaded. At most {@code maxPages} pages are kept, the least recently loaded ones are
+ * dropped and read again if they are loaded again.
+ *
+ * A page can be loaded once the page before it has been loaded or is loading; the first page can
+ * always be loaded.
+ */
+public final class PagedLoader<T> {
+    private final Select<T> query;
+    private final String column;
+    private final boolean descending;
+    private final int pageSize;
+    private final int maxPages;
+    private final Executor callbackExecutor;
+    private final boolean synchronous;
+
+    // tokens.get(i) reads page i: the first page has no token, each page adds the token of the next
+    private final List<String> tokens = new ArrayList<>(Collections.singletonList((String) null));
+    private final Map<Integer, PageTask> pages;
+    private final Map<Integer, PageTask> waiting = new HashMap<>();
+    private int lastPage = -1;
+    private boolean closed;
+
+    PagedLoader(Select<T> query, String column, boolean descending, int pageSize, final int maxPages,
+                Executor callbackExecutor, boolean synchronous) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        if (maxPages < 2) {
+            throw new IllegalArgumentException("maxPages must be at least 2, for the current page and the next one");
+        }
+
+        this.query = query;
+        this.column = column;
+        this.descending = descending;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.callbackExecutor = callbackExecutor;
+        this.synchronous = synchronous;
+        this.pages = new LinkedHashMap<Integer, PageTask>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, PageTask> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Loads a page, from memory if it is kept or being read ahead, and else from the database.
+     *
+     * @param index the index of the page, from 0
+     * @param successCallback called with the page, whose {@link Page#hasNext()} tells if there is
+     *                        another one
+     * @param errorCallback called if the page can't be read, or with a
+     *                      {@link NoSuchElementException} if it is past the last page
+     * @return the Future of the page
+     * @throws IllegalArgumentException if the page before it hasn't been loaded yet
+     */
+    public Future<Page<T>> load(int index, SugarDataSource.SuccessCallback<Page<T>> successCallback,
+                                SugarDataSource.ErrorCallback errorCallback) {
+        if (null == successCallback || null == errorCallback) {
+            throw new IllegalArgumentException("callbacks shouldn't be null");
+        }
+
+        PageTask task;
+        PageTask next = null;
+        boolean start = false;
+        NoSuchElementException pastLastPage = null;
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The loader is closed");
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("No page " + index);
+            }
+
+            task = pages.get(index);
+            if (task == null) {
+                task = waiting.get(index);
+            }
+            if (task == null) {
+                task = new PageTask(index);
+                if (lastPage >= 0 && index > lastPage) {
+                    pastLastPage = new NoSuchElementException("Page " + index + " is past the last page, " + lastPage);
+                } else if (index < tokens.size()) {
+                    pages.put(index, task);
+                    start = true;
+                } else if (index == tokens.size() && pages.containsKey(index - 1)) {
+                    // started once the page before it gives its token
+                    waiting.put(index, task);
+                } else {
+                    throw new IllegalArgumentException("Page " + index + " can't be loaded before page " + (index - 1));
+                }
+            }
+            if (!task.asked) {
+                task.asked = true;
+                // a page that was read ahead and is already read starts the read ahead of the next one
+                next = (task.isDone() && task.getPage() != null) ? readAhead(task) : null;
+            }
+        }
+
+        task.addCallbacks(successCallback, errorCallback);
+        if (pastLastPage != null) {
+            task.fail(pastLastPage);
+        } else if (start) {
+            start(task);
+        }
+        if (next != null) {
+            start(next);
+        }
+        return task;
+    }
+
+    /**
+     * Cancels the pages being read and drops the kept ones. Their callbacks are not called.
+     */
+    public void close() {
+        List<PageTask> tasks;
+        synchronized (this) {
+            closed = true;
+            tasks = new ArrayList<>(pages.values());
+            tasks.addAll(waiting.values());
+            pages.clear();
+            waiting.clear();
+        }
+
+        for (PageTask task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * @return the number of pages kept or being read
+     */
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * @return the index of the last page, or -1 until it has been read
+     */
+    public synchronized int getLastPage() {
+        return lastPage;
+    }
+
+    /**
+     * Creates the task that reads ahead the page after a page that was asked for and read, unless
+     * it is already kept or being read. Pages read ahead don't read further ahead themselves.
+     *
+     * @return the task to start, or null
+     */
+    private PageTask readAhead(PageTask task) {
+        int index = task.index + 1;
+        if (synchronous || !task.asked || index >= tokens.size() || pages.containsKey(index)) {
+            return null;
+        }
+
+        PageTask next = new PageTask(index);
+        pages.put(index, next);
+        return next;
+    }
+
+    private synchronized String getToken(int index) {
+        return tokens.get(index);
+    }
+
+    private void start(PageTask task) {
+        if (synchronous) {
+            task.run();
+            return;
+        }
+
+        try {
+            getSugarContext().getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.fail(e);
+        }
+    }
+
+    /**
+     * Records the token of the page after a page that was read, and starts reading that page if it
+     * is waited for or to read it ahead.
+     */
+    private void pageDone(PageTask task) {
+        PageTask next = null;
+        Throwable nextError = null;
+
+        synchronized (this) {
+            Page<T> page = task.getPage();
+            if (page == null) {
+                // failed or cancelled, so that loading it again reads it again
+                if (pages.get(task.index) == task) {
+                    pages.remove(task.index);
+                }
+                next = waiting.remove(task.index + 1);
+                nextError = new IllegalStateException("Page " + task.index + " couldn't be read", task.getError());
+            } else if (closed) {
+                return;
+            } else {
+                int index = task.index + 1;
+                if (page.hasNext()) {
+                    if (tokens.size() == index) {
+                        tokens.add(page.getNextToken());
+                    }
+                    next = waiting.remove(index);
+                    if (next != null) {
+                        pages.put(index, next);
+                    } else {
+                        next = readAhead(task);
+                    }
+                } else {
+                    lastPage = task.index;
+                    next = waiting.remove(index);
+                    nextError = new NoSuchElementException("Page " + index + " is past the last page, " + lastPage);
+                }
+            }
+        }
+
+        if (next == null) {
+            return;
+        }
+        if (nextError != null) {
+            next.fail(nextError);
+        } else {
+            start(next);
+        }
+    }
+
+    private final class PageTask extends FutureTask<Page<T>> {
+        private final int index;
+        // guarded by the loader: false for a page read ahead until it is loaded
+        private boolean asked;
+        private List<Callbacks> callbacks = new ArrayList<>();
+
+        private PageTask(final int index) {
+            super(new Callable<Page<T>>() {
+                @Override
+                public Page<T> call() throws Exception {
+                    return query.page(column, descending, pageSize, getToken(index));
+                }
+            });
+            this.index = index;
+        }
+
+        private void addCallbacks(SugarDataSource.SuccessCallback<Page<T>> successCallback,
+                                  SugarDataSource.ErrorCallback errorCallback) {
+            Callbacks added = new Callbacks(successCallback, errorCallback);
+            synchronized (this) {
+                if (callbacks != null) {
+                    callbacks.add(added);
+                    return;
+                }
+            }
+            callBack(added);
+        }
+
+        private void fail(Throwable e) {
+            setException(e);
+        }
+
+        /**
+         * @return the page, or null if reading it failed or was cancelled
+         */
+        private Page<T> getPage() {
+            if (isCancelled()) {
+                return null;
+            }
+            try {
+                return get();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private Throwable getError() {
+            try {
+                get();
+                return null;
+            } catch (ExecutionException e) {
+                return e.getCause();
+            } catch (Exception e) {
+                return e;
+            }
+        }
+
+        @Override
+        protected void done() {
+            pageDone(this);
+
+            List<Callbacks> done;
+            synchronized (this) {
+                done = callbacks;
+                callbacks = null;
+            }
+            for (Callbacks added : done) {
+                callBack(added);
+            }
+        }
+
+        private void callBack(final Callbacks added) {
+            if (isCancelled()) {
+                return;
+            }
+
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    SugarDataSource.deliver(PageTask.this, added.successCallback, added.errorCallback);
+                }
+            });
+        }
+    }
+
+    private final class Callbacks {
+        private final SugarDataSource.SuccessCallback<Page<T>> successCallback;
+        private final SugarDataSource.ErrorCallback errorCallback;
+
+        private Callbacks(SugarDataSource.SuccessCallback<Page<T>> successCallback, SugarDataSource.ErrorCallback errorCallback) {
+            this.successCallback = successCallback;
+            this.errorCallback = errorCallback;
+        }
+    }
+}
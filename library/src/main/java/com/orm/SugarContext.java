@@ -2,22 +2,29 @@ package com.orm;
 
 import android.content.Context;
 
+import com.orm.cache.Caches;
+import com.orm.helper.GroupCommitQueue;
 import com.orm.util.ContextUtil;
+import com.orm.util.EntityIdMap;
+import com.orm.util.ThreadUtil;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class SugarContext {
 
     private static SugarDbConfiguration dbConfiguration = null;
     private static SugarContext instance = null;
     private SugarDb sugarDb;
-    private Map<Object, Object> entitiesMap;
+    private EntityIdMap entityIds;
+    private ExecutorService executor;
+    private boolean ownsExecutor;
+    private GroupCommitQueue groupCommitQueue;
 
     private SugarContext() {
         this.sugarDb = SugarDb.getInstance();
-        this.entitiesMap = Collections.synchronizedMap(new WeakHashMap<Object, Object>());
+        this.entityIds = new EntityIdMap();
     }
     
     public static SugarContext getSugarContext() {
@@ -29,6 +36,11 @@ public class SugarContext {
 
     public static void init(Context context) {
         ContextUtil.init(context);
+        Caches.reset();
+        if (instance != null) {
+            instance.shutdownGroupCommitQueue();
+            instance.shutdownExecutor();
+        }
         instance = new SugarContext();
         dbConfiguration = null;
     }
@@ -54,9 +66,27 @@ public class SugarContext {
      * Robolectric Android mock.
      */
     private void doTerminate() {
+        shutdownGroupCommitQueue();
         if (this.sugarDb != null) {
+            this.sugarDb.releaseConnections();
             this.sugarDb.getDB().close();
         }
+        shutdownExecutor();
+        Caches.reset();
+    }
+
+    private synchronized void shutdownGroupCommitQueue() {
+        if (groupCommitQueue != null) {
+            groupCommitQueue.shutdown();
+            groupCommitQueue = null;
+        }
+    }
+
+    private synchronized void shutdownExecutor() {
+        if (executor != null && ownsExecutor) {
+            executor.shutdown();
+        }
+        executor = null;
     }
 
     public static SugarDbConfiguration getDbConfiguration() {
@@ -67,7 +97,59 @@ public class SugarContext {
         return sugarDb;
     }
 
-    public Map<Object, Object> getEntitiesMap() {
-        return entitiesMap;
+    /**
+     * @return the executor that SugarDataSource runs its work on: the one of the
+     *         {@link SugarDbConfiguration}, or else one created on first use, with a bounded queue,
+     *         and shut down by {@link #terminate()}
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            SugarDbConfiguration configuration = dbConfiguration;
+            if (configuration != null && configuration.getExecutor() != null) {
+                executor = configuration.getExecutor();
+                ownsExecutor = false;
+            } else {
+                int poolSize = ThreadUtil.DEFAULT_POOL_SIZE;
+                int queueSize = ThreadUtil.DEFAULT_QUEUE_SIZE;
+                RejectedExecutionHandler rejectionPolicy = new ThreadPoolExecutor.AbortPolicy();
+                if (configuration != null) {
+                    if (configuration.getExecutorPoolSize() > 0) {
+                        poolSize = configuration.getExecutorPoolSize();
+                    }
+                    if (configuration.getExecutorQueueSize() > 0) {
+                        queueSize = configuration.getExecutorQueueSize();
+                    }
+                    if (configuration.getExecutorRejectionPolicy() != null) {
+                        rejectionPolicy = configuration.getExecutorRejectionPolicy();
+                    }
+                }
+                executor = ThreadUtil.newExecutor(poolSize, queueSize, rejectionPolicy);
+                ownsExecutor = true;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * @return the queue that commits the writes of SugarDataSource together, created on first use
+     *         and flushed by {@link #terminate()}, or null if no
+     *         {@link SugarDbConfiguration#setGroupCommitWindow(long) group commit window} is set
+     */
+    public synchronized GroupCommitQueue getGroupCommitQueue() {
+        SugarDbConfiguration configuration = dbConfiguration;
+        if (groupCommitQueue == null && configuration != null && configuration.getGroupCommitWindow() > 0) {
+            int maxWrites = configuration.getGroupCommitMaxWrites() > 0
+                    ? configuration.getGroupCommitMaxWrites()
+                    : GroupCommitQueue.DEFAULT_MAX_WRITES;
+            groupCommitQueue = new GroupCommitQueue(sugarDb, configuration.getGroupCommitWindow(), maxWrites);
+        }
+        return groupCommitQueue;
+    }
+
+    /**
+     * @return the row ids of the saved and loaded entities that have no id field
+     */
+    public EntityIdMap getEntityIds() {
+        return entityIds;
     }
 }
@@ -1,57 +1,118 @@
 package com.orm;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+
+import com.orm.helper.BulkInsertHelper;
+import com.orm.helper.GroupCommitQueue;
+import com.orm.query.Select;
+import com.orm.util.ThreadUtil;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
-import static com.orm.util.ThreadUtil.*;
+import static com.orm.SugarContext.getSugarContext;
 
 /**
  * SugarDataSource provides basic crud operations and simplifies SugarRecord by using callbacks and
  * performing Asynchronous execution to run queries.
  *
+ * Every operation returns at once with a Future that can cancel it, runs on the executor of the
+ * {@link SugarContext}, and calls back on the callback executor given to
+ * {@link #getInstance(Class, Executor)}, such as {@link com.orm.util.ThreadUtil#mainThreadExecutor()},
+ * or on the {@link Looper} thread that called {@link #getInstance(Class)}.
+ * An operation cancelled before it is done doesn't call back. The instances of
+ * {@link #getSynchronousInstance(Class)} run their operations and call back on the calling thread
+ * instead, before returning.
+ *
+ * With a {@link SugarDbConfiguration#setGroupCommitWindow(long) group commit window}, the inserts,
+ * updates and deletes of the asynchronous instances are committed together by the
+ * {@link GroupCommitQueue} of the {@link SugarContext}.
+ *
  * @author jonatan.salas
  */
 @SuppressWarnings("all")
 public final class SugarDataSource<T extends SugarRecord> {
     private final Class<T> sClass;
+    private final Executor callbackExecutor;
+    private final boolean synchronous;
 
     /**
      * SugarDataSource constructor with params
      *
      * @param tClass class argument used then to run SugarRecord class queries
+     * @param callbackExecutor the executor the callbacks are called on
+     * @param synchronous true to run the operations on the calling thread
      */
-    private SugarDataSource(Class<T> tClass) {
+    private SugarDataSource(Class<T> tClass, Executor callbackExecutor, boolean synchronous) {
         if (null == tClass) {
             throw new IllegalArgumentException("sClass shouldn't be null!");
         }
+        if (null == callbackExecutor) {
+            throw new IllegalArgumentException("callbackExecutor shouldn't be null!");
+        }
 
         this.sClass = tClass;
+        this.callbackExecutor = callbackExecutor;
+        this.synchronous = synchronous;
     }
 
     /**
-     * SugarDataSource static method to construct an Instance of this class.
+     * SugarDataSource static method to construct an Instance of this class. Called on a thread with
+     * a {@link Looper}, such as the main thread, it calls back on that thread, so that callbacks can
+     * touch the views as they could when operations blocked. Called on any other thread, it calls
+     * back on the background thread that ran the operation.
      *
      * @param sClass class argument used then to run SugarRecord class queries
      * @param <T> generic argument that must be a SugarRecord extended class or @Table annotated class
      * @return an instance of SugarDataSource
      */
     public static <T extends SugarRecord> SugarDataSource<T> getInstance(Class<T> sClass) {
-        return new SugarDataSource<>(sClass);
+        Looper looper = Looper.myLooper();
+        Executor callbackExecutor = (looper != null) ? ThreadUtil.looperExecutor(looper) : ThreadUtil.directExecutor();
+        return new SugarDataSource<>(sClass, callbackExecutor, false);
+    }
+
+    /**
+     * Constructs an instance of this class which calls back on the given executor.
+     *
+     * @param sClass class argument used then to run SugarRecord class queries
+     * @param callbackExecutor the executor the callbacks are called on, such as
+     *                         {@link com.orm.util.ThreadUtil#mainThreadExecutor()}
+     * @param <T> generic argument that must be a SugarRecord extended class or @Table annotated class
+     * @return an instance of SugarDataSource
+     */
+    public static <T extends SugarRecord> SugarDataSource<T> getInstance(Class<T> sClass, Executor callbackExecutor) {
+        return new SugarDataSource<>(sClass, callbackExecutor, false);
     }
 
     /**
-     * Method used to perform an Asynchronous insert. It works on top of SugarRecord class, executes the
-     * insert query using Futures.
+     * Constructs an instance of this class whose operations block: they run on the calling thread
+     * and call back before returning.
+     *
+     * @param sClass class argument used then to run SugarRecord class queries
+     * @param <T> generic argument that must be a SugarRecord extended class or @Table annotated class
+     * @return an instance of SugarDataSource
+     */
+    public static <T extends SugarRecord> SugarDataSource<T> getSynchronousInstance(Class<T> sClass) {
+        return new SugarDataSource<>(sClass, ThreadUtil.directExecutor(), true);
+    }
+
+    /**
+     * Method used to perform an Asynchronous insert. It works on top of SugarRecord class.
      *
      * @param object the object you want to insert. It must be a SugarRecord extended class or @Table annotated class
      * @param successCallback the callback for a successful insert operation
      * @param errorCallback the callback for an error in insert operation
+     * @return the Future of the id of the object
      */
-    public void insert(final T object, final SuccessCallback<Long> successCallback, final ErrorCallback errorCallback) {
+    public Future<Long> insert(final T object, final SuccessCallback<Long> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
         checkNotNull(object);
@@ -59,80 +120,57 @@ public final class SugarDataSource<T extends SugarRecord> {
         final Callable<Long> call = new Callable<Long>() {
             @Override
             public Long call() throws Exception {
-                return SugarRecord.save(object);
-            }
-        };
+                Long id = SugarRecord.save(object);
 
-        final Future<Long> future = doInBackground(call);
-        Long id;
-
-        try {
-            id = future.get();
-
-            if (null == id) {
-                errorCallback.onError(new Exception("Error when performing insert of " + object.toString()));
-            } else {
-                successCallback.onSuccess(id);
+                if (null == id) {
+                    throw new Exception("Error when performing insert of " + object.toString());
+                }
+                return id;
             }
+        };
 
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return write(object, "save", call, successCallback, errorCallback);
     }
 
     /**
-     * Method that performs a bulk insert. It works on top of SugarRecord class, and executes the query
-     * asynchronously using Futures.
+     * Method that performs a bulk insert. All the objects are inserted in one transaction with one compiled
+     * statement, and the query is executed asynchronously.
      *
      * @param objects the list of objects that you want to insert. They must be SugarRecord extended objects or @Table annotatd objects.
-     * @param successCallback the callback for successful bulk insert operation
+     * @param successCallback the callback for successful bulk insert operation, receiving the ids in the order of the list
      * @param errorCallback the callback for an error in bulk insert operation
+     * @return the Future of the ids of the objects
      */
-    public void bulkInsert(final List<T> objects, final SuccessCallback<List<Long>> successCallback, final ErrorCallback errorCallback) {
+    public Future<long[]> bulkInsert(final List<T> objects, final SuccessCallback<long[]> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
         checkNotNull(objects);
 
-        final Callable<List<Long>> call = new Callable<List<Long>>() {
+        final Callable<long[]> call = new Callable<long[]>() {
             @Override
-            public List<Long> call() throws Exception {
-                List<Long> ids = new ArrayList<>(objects.size());
+            public long[] call() throws Exception {
+                long[] ids = BulkInsertHelper.insert(getSugarContext().getSugarDb().getDB(), objects, SQLiteDatabase.CONFLICT_REPLACE);
 
-                for (int i = 0; i < objects.size(); i++) {
-                    Long id = SugarRecord.save(objects.get(i));
-                    ids.add(i, id);
+                if (null == ids || ids.length == 0) {
+                    throw new Exception("Error when performing bulk insert");
                 }
-
                 return ids;
             }
         };
 
-        final Future<List<Long>> future = doInBackground(call);
-        List<Long> ids;
-
-        try {
-            ids = future.get();
-
-            if (null == ids || ids.isEmpty()) {
-                errorCallback.onError(new Exception("Error when performing bulk insert"));
-            } else {
-                successCallback.onSuccess(ids);
-            }
-
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return write(null, "bulkInsert", call, successCallback, errorCallback);
     }
 
     /**
      * Method that performs a findById, It works on top of SugarRecord class providing asynchronous
-     * execution with the use of Futures.
+     * execution.
      *
      * @param id the id of the object you want to retrieve
      * @param successCallback the callback to execute when the operation is successful
      * @param errorCallback the callback to execute when the operation has a trouble
+     * @return the Future of the object
      */
-    public void findById(final Long id, final SuccessCallback<T> successCallback, final ErrorCallback errorCallback) {
+    public Future<T> findById(final Long id, final SuccessCallback<T> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
         checkNotNull(id);
@@ -140,30 +178,21 @@ public final class SugarDataSource<T extends SugarRecord> {
         final Callable<T> call = new Callable<T>() {
             @Override
             public T call() throws Exception {
-                return SugarRecord.findById(getSugarClass(), id);
-            }
-        };
+                T object = SugarRecord.findById(getSugarClass(), id);
 
-        final Future<T> future = doInBackground(call);
-        T object;
-
-        try {
-            object = future.get();
-
-            if (null == object) {
-                errorCallback.onError(new Exception("The object with " + id.toString() + "doesn't exist in database"));
-            } else {
-                successCallback.onSuccess(object);
+                if (null == object) {
+                    throw new Exception("The object with " + id.toString() + "doesn't exist in database");
+                }
+                return object;
             }
+        };
 
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return execute(call, successCallback, errorCallback);
     }
 
     /**
      * Method that provides you the ability of perform a custom query and retrieve a cursor. It works on top of SugarRecord class,
-     * All the code is executed asynchronously with the usage of Futures and callbacks.
+     * All the code is executed asynchronously with the usage of callbacks.
      *
      * @param whereClause the clause of the search
      * @param whereArgs the arguments for the search
@@ -172,81 +201,99 @@ public final class SugarDataSource<T extends SugarRecord> {
      * @param limit the limit of objects to want
      * @param successCallback the callback to be executed if the operation is successful
      * @param errorCallback the callback to be executed if the operation has an error
+     * @return the Future of the cursor, which the caller closes
      */
-    public void query(final String whereClause, final String[] whereArgs, final String groupBy, final String orderBy, final String limit, final SuccessCallback<Cursor> successCallback, final ErrorCallback errorCallback) {
+    public Future<Cursor> query(final String whereClause, final String[] whereArgs, final String groupBy, final String orderBy, final String limit, final SuccessCallback<Cursor> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
 
         final Callable<Cursor> call = new Callable<Cursor>() {
             @Override
             public Cursor call() throws Exception {
-                return SugarRecord.getCursor(getSugarClass(), whereClause, whereArgs, groupBy, orderBy, limit);
-            }
-        };
-
-        final Future<Cursor> future = doInBackground(call);
-        Cursor cursor;
-
-        try {
-            cursor = future.get();
+                Cursor cursor = SugarRecord.getCursor(getSugarClass(), whereClause, whereArgs, groupBy, orderBy, limit);
 
-            if (null == cursor) {
-                errorCallback.onError(new Exception("Problem when trying to get the cursor"));
-            } else {
-                successCallback.onSuccess(cursor);
+                if (null == cursor) {
+                    throw new Exception("Problem when trying to get the cursor");
+                }
+                return cursor;
             }
+        };
 
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return execute(call, successCallback, errorCallback);
     }
 
     /**
      * Method that list all elements. It run a SugarRecord.listAll but it's code is performed asynchronously
-     * with the usage of Futures and callbacks.
+     * with the usage of callbacks.
      *
      * @param orderBy the way you want to order the objects you get
      * @param successCallback the callback that is performed if the operation is successful
      * @param errorCallback the callback that is performed if your code has an error
+     * @return the Future of the objects
      */
-    public void listAll(final String orderBy, final SuccessCallback<List<T>> successCallback, final ErrorCallback errorCallback) {
+    public Future<List<T>> listAll(final String orderBy, final SuccessCallback<List<T>> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
 
         final Callable<List<T>> call = new Callable<List<T>>() {
             @Override
             public List<T> call() throws Exception {
-                return SugarRecord.listAll(getSugarClass(), orderBy);
+                List<T> objects = SugarRecord.listAll(getSugarClass(), orderBy);
+
+                if (null == objects || objects.isEmpty()) {
+                    throw new Exception("There are no objects in the database");
+                }
+                return objects;
             }
         };
 
-        final Future<List<T>> future = doInBackground(call);
-        List<T> objects;
+        return execute(call, successCallback, errorCallback);
+    }
 
-        try {
-            objects = future.get();
+    /**
+     * Creates a loader that reads all the objects one page at a time, in ascending order of a
+     * column. See {@link #pagedLoader(Select, String, boolean, int, int)}.
+     *
+     * @param column the column to order by
+     * @param pageSize the number of objects in a page
+     * @param maxPages the number of pages kept in memory
+     * @return the loader
+     */
+    public PagedLoader<T> pagedLoader(String column, int pageSize, int maxPages) {
+        return pagedLoader(Select.from(getSugarClass()), column, false, pageSize, maxPages);
+    }
 
-            if (null == objects || objects.isEmpty()) {
-                errorCallback.onError(new Exception("There are no objects in the database"));
-            } else {
-                successCallback.onSuccess(objects);
-            }
+    /**
+     * Creates a loader that reads the results of a query one page at a time instead of all at once
+     * like {@link #listAll(String, SuccessCallback, ErrorCallback)}. The page after the one loaded
+     * is read ahead on the executor of the {@link SugarContext}, and only {@code maxPages} pages are
+     * kept in memory. Pages of a synchronous instance are read on the calling thread, and not ahead.
+     *
+     * @param query the query, whose conditions the pages keep
+     * @param column the column to order by, ties being broken by id
+     * @param descending true to order from the largest value
+     * @param pageSize the number of objects in a page
+     * @param maxPages the number of pages kept in memory, at least 2
+     * @return the loader, to close once it is no longer needed
+     */
+    public PagedLoader<T> pagedLoader(Select<T> query, String column, boolean descending, int pageSize, int maxPages) {
+        checkNotNull(query);
+        checkNotNull(column);
 
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return new PagedLoader<>(query, column, descending, pageSize, maxPages, callbackExecutor, synchronous);
     }
 
 
     /**
-     * Method that works on top of SugarRecord.update and runs the code asynchronously via Futures
-     * and callbacks.
+     * Method that works on top of SugarRecord.update and runs the code asynchronously via
+     * callbacks.
      *
      * @param object the object you want to update
      * @param successCallback the callback that will be performed if the update is successful
      * @param errorCallback the callback that will be performed if the update has an error
+     * @return the Future of the id of the object
      */
-    public void update(final T object, final SuccessCallback<Long> successCallback, final ErrorCallback errorCallback) {
+    public Future<Long> update(final T object, final SuccessCallback<Long> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
         checkNotNull(object);
@@ -254,36 +301,28 @@ public final class SugarDataSource<T extends SugarRecord> {
         final Callable<Long> call = new Callable<Long>() {
             @Override
             public Long call() throws Exception {
-                return SugarRecord.update(object);
-            }
-        };
-
-        final Future<Long> future = doInBackground(call);
-        Long id;
-
-        try {
-            id = future.get();
+                Long id = SugarRecord.update(object);
 
-            if (null == id) {
-                errorCallback.onError(new Exception("Error when performing update of " + object.toString()));
-            } else {
-                successCallback.onSuccess(id);
+                if (null == id) {
+                    throw new Exception("Error when performing update of " + object.toString());
+                }
+                return id;
             }
+        };
 
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return write(object, "update", call, successCallback, errorCallback);
     }
 
     /**
      * This method works on top of SugarRecord and provides asynchronous code execution via the usage of
-     * Futures and callbacks to handle success result and error.
+     * callbacks to handle success result and error.
      *
      * @param object the object you want to delete
      * @param successCallback the callback to be performed when the operation is successful
      * @param errorCallback the callback to be performed when the operation has an error
+     * @return the Future of the outcome of the delete
      */
-    public void delete(final T object, final SuccessCallback<Boolean> successCallback, final ErrorCallback errorCallback) {
+    public Future<Boolean> delete(final T object, final SuccessCallback<Boolean> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
         checkNotNull(object);
@@ -291,37 +330,29 @@ public final class SugarDataSource<T extends SugarRecord> {
         final Callable<Boolean> call = new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
-                return SugarRecord.delete(object);
-            }
-        };
-
-        final Future<Boolean> future = doInBackground(call);
-        Boolean isDeleted;
-
-        try {
-            isDeleted = future.get();
+                boolean isDeleted = SugarRecord.delete(object);
 
-            if (null == isDeleted || !isDeleted) {
-                errorCallback.onError(new Exception("Error when performing delete of " + object.toString()));
-            } else {
-                successCallback.onSuccess(isDeleted);
+                if (!isDeleted) {
+                    throw new Exception("Error when performing delete of " + object.toString());
+                }
+                return isDeleted;
             }
+        };
 
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return write(object, "delete", call, successCallback, errorCallback);
     }
 
     /**
-     * Method that performs a selective delete. The code is executed asynchronously via the usage of Futures
-     * and result callbacks
+     * Method that performs a selective delete. The code is executed asynchronously via the usage of
+     * result callbacks
      *
      * @param whereClause the clause for the search
      * @param whereArgs the values
      * @param successCallback the callback to be executed if there is no trouble
      * @param errorCallback the callback to be executed if there is an error
+     * @return the Future of the number of deleted rows
      */
-    public void delete(final String whereClause, final String[] whereArgs, final SuccessCallback<Integer> successCallback, final ErrorCallback errorCallback) {
+    public Future<Integer> delete(final String whereClause, final String[] whereArgs, final SuccessCallback<Integer> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
 
@@ -332,21 +363,7 @@ public final class SugarDataSource<T extends SugarRecord> {
             }
         };
 
-        final Future<Integer> future = doInBackground(call);
-        Integer count;
-
-        try {
-            count = future.get();
-
-            if (null == count) {
-                errorCallback.onError(new Exception("Error when performing delete of all elements"));
-            } else {
-                successCallback.onSuccess(count);
-            }
-
-        } catch (Exception e) {
-            errorCallback.onError(e);
-        }
+        return write(null, "deleteAll", call, successCallback, errorCallback);
     }
 
     /**
@@ -354,9 +371,10 @@ public final class SugarDataSource<T extends SugarRecord> {
      *
      * @param successCallback the callback that is executed if the operation is succesful
      * @param errorCallback the callback that is executed if there is an error
+     * @return the Future of the number of deleted rows
      */
-    public void deleteAll(final SuccessCallback<Integer> successCallback, final ErrorCallback errorCallback) {
-        delete(null, null, successCallback, errorCallback);
+    public Future<Integer> deleteAll(final SuccessCallback<Integer> successCallback, final ErrorCallback errorCallback) {
+        return delete(null, null, successCallback, errorCallback);
     }
 
     /**
@@ -364,8 +382,9 @@ public final class SugarDataSource<T extends SugarRecord> {
      *
      * @param successCallback the callback that is executed if this is successful
      * @param errorCallback the callback that is executed if there is an error
+     * @return the Future of the count
      */
-    public void count(final SuccessCallback<Long> successCallback, final ErrorCallback errorCallback) {
+    public Future<Long> count(final SuccessCallback<Long> successCallback, final ErrorCallback errorCallback) {
         checkNotNull(successCallback);
         checkNotNull(errorCallback);
 
@@ -376,21 +395,93 @@ public final class SugarDataSource<T extends SugarRecord> {
             }
         };
 
-        final Future<Long> future = doInBackground(call);
-        Long count;
+        return execute(call, successCallback, errorCallback);
+    }
+
+    /**
+     * Runs an operation, on the calling thread for a synchronous instance and else on the executor
+     * of the {@link SugarContext}, and calls back with its outcome on the callback executor unless
+     * it was cancelled.
+     */
+    private <R> Future<R> execute(final Callable<R> call, final SuccessCallback<R> successCallback, final ErrorCallback errorCallback) {
+        if (synchronous) {
+            FutureTask<R> task = new FutureTask<>(call);
+            task.run();
+            deliver(task, successCallback, errorCallback);
+            return task;
+        }
+
+        final FutureTask<R> task = new FutureTask<R>(call) {
+            @Override
+            protected void done() {
+                callBack(this, successCallback, errorCallback);
+            }
+        };
 
         try {
-            count = future.get();
+            getSugarContext().getExecutor().execute(task);
+        } catch (final RejectedExecutionException e) {
+            task.cancel(false);
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    errorCallback.onError(e);
+                }
+            });
+        }
+        return task;
+    }
+
+    /**
+     * Queues a write for the group commit if there is one, and else runs it like any operation.
+     *
+     * @param entity the entity written, whose later writes of the same kind join this one, or null
+     */
+    private <R> Future<R> write(Object entity, String kind, Callable<R> call, final SuccessCallback<R> successCallback, final ErrorCallback errorCallback) {
+        GroupCommitQueue queue = synchronous ? null : getSugarContext().getGroupCommitQueue();
+        if (null == queue) {
+            return execute(call, successCallback, errorCallback);
+        }
 
-            if (null == count) {
-                errorCallback.onError(new Exception("Error when trying to get count"));
-            } else {
-                successCallback.onSuccess(count);
+        GroupCommitQueue.Ticket<R> ticket = new GroupCommitQueue.Ticket<R>() {
+            @Override
+            protected void done() {
+                callBack(this, successCallback, errorCallback);
             }
+        };
+        queue.submit(entity, kind, call, ticket);
+        return ticket;
+    }
+
+    private <R> void callBack(final Future<R> done, final SuccessCallback<R> successCallback, final ErrorCallback errorCallback) {
+        if (done.isCancelled()) {
+            return;
+        }
 
-        } catch (Exception e) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(done, successCallback, errorCallback);
+            }
+        });
+    }
+
+    static <R> void deliver(Future<R> done, SuccessCallback<R> successCallback, ErrorCallback errorCallback) {
+        R result;
+
+        try {
+            result = done.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            errorCallback.onError(cause instanceof Exception ? (Exception) cause : e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             errorCallback.onError(e);
+            return;
         }
+
+        successCallback.onSuccess(result);
     }
 
     /**
@@ -2,12 +2,17 @@ package com.orm;
 
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.util.Log;
 
 import com.orm.dsl.BuildConfig;
 import com.orm.helper.ManifestHelper;
+import com.orm.helper.PragmaHelper;
+import com.orm.util.StatementCache;
 import com.orm.util.SugarCursorFactory;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.orm.util.ContextUtil.getContext;
 import static com.orm.helper.ManifestHelper.getDatabaseVersion;
 import static com.orm.helper.ManifestHelper.getDbName;
@@ -17,7 +22,10 @@ public class SugarDb extends SQLiteOpenHelper {
     private static final String LOG_TAG = "Sugar";
 
     private final SchemaGenerator schemaGenerator;
-    private SQLiteDatabase sqLiteDatabase;
+    private volatile SQLiteDatabase sqLiteDatabase;
+    private volatile StatementCache statementCache;
+    private volatile ReadPool readPool;
+    private volatile SQLiteDatabase versionDatabase;
     private int openedConnections = 0;
 
     //Prevent instantiation
@@ -44,6 +52,11 @@ public class SugarDb extends SQLiteOpenHelper {
             db.setLocale(configuration.getDatabaseLocale());
             db.setMaximumSize(configuration.getMaxSize());
             db.setPageSize(configuration.getPageSize());
+            if (configuration.getStatementCacheSize() != null) {
+                db.setMaxSqlCacheSize(Math.min(configuration.getStatementCacheSize(), SQLiteDatabase.MAX_SQL_CACHE_SIZE));
+            }
+            // write-ahead logging is set by PragmaHelper, see there
+            PragmaHelper.apply(db, configuration, false);
         }
 
         super.onConfigure(db);
@@ -54,12 +67,152 @@ public class SugarDb extends SQLiteOpenHelper {
         schemaGenerator.doUpgrade(sqLiteDatabase, oldVersion, newVersion);
     }
 
-    public synchronized SQLiteDatabase getDB() {
-        if (this.sqLiteDatabase == null) {
-            this.sqLiteDatabase = getWritableDatabase();
+    /**
+     * @return the primary connection, which every write goes through, opened on first use
+     */
+    public SQLiteDatabase getDB() {
+        SQLiteDatabase database = this.sqLiteDatabase;
+        if (database == null) {
+            synchronized (this) {
+                database = this.sqLiteDatabase;
+                if (database == null) {
+                    database = getWritableDatabase();
+                    SugarDbConfiguration configuration = getDbConfiguration();
+                    // onConfigure is only called from Android 4.1
+                    if (configuration != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                        PragmaHelper.apply(database, configuration, false);
+                    }
+                    this.sqLiteDatabase = database;
+                }
+            }
         }
+        return database;
+    }
 
-        return this.sqLiteDatabase;
+    /**
+     * The connection to read with. With write-ahead logging and a
+     * {@link SugarDbConfiguration#setReadConnectionPoolSize(int) read connection pool}, this is one of
+     * the connections of the pool, taken in turn, so that reads run alongside each other
+     * and alongside writes. Otherwise, and for reads made by a thread in a transaction, which must
+     * see its own writes, this is the {@link #getDB() primary connection}.
+     *
+     * @return the connection to read with
+     */
+    public SQLiteDatabase getReadDB() {
+        SQLiteDatabase database = getDB();
+        ReadPool pool = getReadPool();
+        if (pool == null || database.inTransaction()) {
+            return database;
+        }
+        return pool.connections[pool.next()];
+    }
+
+    /**
+     * The connection to read {@code PRAGMA data_version} on, a counter that each connection keeps
+     * of the commits of the others, so it has to be read on the same one every time. With a
+     * {@link SugarDbConfiguration#setReadConnectionPoolSize(int) read connection pool}, or with the
+     * connection pool of Android enabled on the primary connection, of which any connection could run
+     * the query, this is a connection of its own, opened on first use, so that reads don't wait for
+     * the primary connection to be free of writes. It also counts the commits of the primary
+     * connection. Otherwise every read is made on the {@link #getDB() primary connection}, which is
+     * then the one returned.
+     *
+     * @return the connection to read the data version on
+     */
+    public SQLiteDatabase getDataVersionDB() {
+        SQLiteDatabase database = getDB();
+        boolean androidPool = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && database.isWriteAheadLoggingEnabled();
+        if (!androidPool && getReadPool() == null) {
+            return database;
+        }
+
+        SQLiteDatabase version = this.versionDatabase;
+        if (version == null) {
+            synchronized (this) {
+                version = this.versionDatabase;
+                if (version == null) {
+                    version = SQLiteDatabase.openDatabase(database.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+                    this.versionDatabase = version;
+                }
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @return the compiled statements of {@link #getDB()}, created on first use
+     */
+    public StatementCache getStatementCache() {
+        StatementCache cache = this.statementCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.statementCache;
+                if (cache == null) {
+                    cache = new StatementCache(getDB(), getStatementCacheSize());
+                    this.statementCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @return the compiled statements of the connection {@link #getReadDB()} would return
+     */
+    public StatementCache getReadStatementCache() {
+        ReadPool pool = getReadPool();
+        if (pool == null || getDB().inTransaction()) {
+            return getStatementCache();
+        }
+        return pool.statements[pool.next()];
+    }
+
+    private static int getStatementCacheSize() {
+        SugarDbConfiguration configuration = getDbConfiguration();
+        Integer size = (configuration != null) ? configuration.getStatementCacheSize() : null;
+        return (size != null) ? size : StatementCache.DEFAULT_MAX_SIZE;
+    }
+
+    private ReadPool getReadPool() {
+        ReadPool pool = this.readPool;
+        if (pool == null) {
+            SugarDbConfiguration configuration = getDbConfiguration();
+            if (configuration == null || !configuration.isWriteAheadLogging()
+                    || configuration.getReadConnectionPoolSize() <= 0
+                    || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+                return null;
+            }
+
+            synchronized (this) {
+                pool = this.readPool;
+                if (pool == null) {
+                    // the primary connection creates or upgrades the schema before any reader opens
+                    pool = new ReadPool(getDB().getPath(), configuration, getStatementCacheSize());
+                    this.readPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Releases the compiled statements and closes the read connections and the data version one, before the database is
+     * closed.
+     */
+    synchronized void releaseConnections() {
+        if (this.statementCache != null) {
+            this.statementCache.clear();
+            this.statementCache = null;
+        }
+        if (this.readPool != null) {
+            this.readPool.close();
+            this.readPool = null;
+        }
+        if (this.versionDatabase != null) {
+            this.versionDatabase.close();
+            this.versionDatabase = null;
+        }
     }
 
     @Override
@@ -81,7 +234,48 @@ public class SugarDb extends SQLiteOpenHelper {
             if(ManifestHelper.isDebugEnabled()) {
                 Log.d(LOG_TAG, "closing");
             }
+            releaseConnections();
             super.close();
+            this.sqLiteDatabase = null;
+        }
+    }
+
+    /**
+     * Connections to the database file that Sugar only reads with, each with its own compiled
+     * statements. Unlike the readers Android opens on its own, they get the settings of
+     * {@link PragmaHelper} and their number is set by the configuration.
+     *
+     * They are opened read-write, since a WAL reader has to write the {@code -shm} index, and
+     * without Android's own connection pool, so that each of them is a single connection that gets
+     * the settings. Write-ahead logging is kept in the database file once the primary connection
+     * has set it, so they read in WAL mode without enabling it themselves.
+     */
+    private static final class ReadPool {
+        final SQLiteDatabase[] connections;
+        final StatementCache[] statements;
+        private final AtomicInteger next = new AtomicInteger();
+
+        ReadPool(String path, SugarDbConfiguration configuration, int statementCacheSize) {
+            int size = configuration.getReadConnectionPoolSize();
+            this.connections = new SQLiteDatabase[size];
+            this.statements = new StatementCache[size];
+            for (int i = 0; i < size; i++) {
+                connections[i] = SQLiteDatabase.openDatabase(path,
+                        new SugarCursorFactory(ManifestHelper.isDebugEnabled()), SQLiteDatabase.OPEN_READWRITE);
+                PragmaHelper.apply(connections[i], configuration, true);
+                statements[i] = new StatementCache(connections[i], statementCacheSize);
+            }
+        }
+
+        int next() {
+            return (next.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+        }
+
+        void close() {
+            for (int i = 0; i < connections.length; i++) {
+                statements[i].clear();
+                connections[i].close();
+            }
         }
     }
 }
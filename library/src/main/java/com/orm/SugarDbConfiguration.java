@@ -1,6 +1,9 @@
 package com.orm;
 
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author jonatan.salas
@@ -22,6 +25,106 @@ public class SugarDbConfiguration {
      */
     private Long pageSize;
 
+    /**
+     * Tells Sugar to save saveInTx batches with multi-row INSERT statements
+     */
+    private boolean multiRowInsert;
+
+    /**
+     * Tells Sugar to save entities with an upsert instead of INSERT OR REPLACE
+     */
+    private boolean upsert;
+
+    /**
+     * Tells Sugar how many Select results to cache
+     */
+    private int queryCacheSize;
+
+    /**
+     * Tells Sugar how many compiled statements to keep
+     */
+    private Integer statementCacheSize;
+
+    /**
+     * Tells SQLite to use write-ahead logging
+     */
+    private boolean writeAheadLogging;
+
+    /**
+     * Tells Sugar how many read-only connections to read with
+     */
+    private int readConnectionPoolSize;
+
+    /**
+     * Tells SQLite how to journal transactions
+     */
+    private JournalMode journalMode;
+
+    /**
+     * Tells SQLite how often to wait for writes to reach the disk
+     */
+    private Synchronous synchronous;
+
+    /**
+     * Tells SQLite how many pages, or KiB if negative, to cache per connection
+     */
+    private Integer cacheSize;
+
+    /**
+     * Tells SQLite how many bytes of the database to memory map
+     */
+    private Long mmapSize;
+
+    /**
+     * Tells SQLite where to keep temporary tables and indices
+     */
+    private TempStore tempStore;
+
+    /**
+     * Tells SQLite how many milliseconds to wait for a locked database
+     */
+    private Integer busyTimeout;
+
+    /**
+     * Tells SQLite after how many WAL pages to checkpoint
+     */
+    private Integer walAutoCheckpoint;
+
+    /**
+     * Tells SQLite to enforce foreign keys
+     */
+    private Boolean foreignKeys;
+
+    /**
+     * Tells Sugar which executor to run the background work of SugarDataSource on
+     */
+    private ExecutorService executor;
+
+    /**
+     * Tells Sugar how many threads its own executor has
+     */
+    private int executorPoolSize;
+
+    /**
+     * Tells Sugar how many tasks can wait for a thread of its own executor
+     */
+    private int executorQueueSize;
+
+    /**
+     * Tells Sugar what to do with a task when the queue of its own executor is full
+     */
+    private RejectedExecutionHandler executorRejectionPolicy;
+
+    /**
+     * Tells Sugar how long to collect SugarDataSource writes before committing them together
+     */
+    private long groupCommitWindow;
+
+    /**
+     * Tells Sugar how many SugarDataSource writes to commit together at most
+     */
+    private int groupCommitMaxWrites;
+
     public SugarDbConfiguration() { }
 
     public Locale getDatabaseLocale() {
@@ -51,12 +154,353 @@ public class SugarDbConfiguration {
         return this;
     }
 
+    public boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    /**
+     * Makes {@link SugarRecord#saveInTx(java.util.Collection)} insert many rows per statement
+     * ({@code INSERT INTO t (...) VALUES (...), (...)}), as many as the SQLite bound variable limit
+     * allows. Only used on Android 4.1 (API 16) and up, whose SQLite supports it.
+     */
+    public SugarDbConfiguration setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+        return this;
+    }
+
+    public boolean isUpsert() {
+        return upsert;
+    }
+
+    /**
+     * Makes {@link SugarRecord#save(Object)} and {@link SugarRecord#update(Object)} update the
+     * existing row in place, matched on the {@link com.orm.annotation.MultiUnique} or
+     * {@link com.orm.annotation.Unique} constraint of the table or else on the id, instead of deleting and
+     * re-inserting it. Uses {@code INSERT ... ON CONFLICT DO UPDATE} where the SQLite of the device
+     * supports it (3.24 and up), and an UPDATE followed by an INSERT when no row matched otherwise.
+     * Only used on Android 3.0 (API 11) and up, and for tables with at most one unique constraint.
+     */
+    public SugarDbConfiguration setUpsert(boolean upsert) {
+        this.upsert = upsert;
+        return this;
+    }
+
+    public int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    /**
+     * Makes {@link com.orm.query.Select#list()} and {@link com.orm.query.Select#count()} cache up to
+     * this many results, keyed by their SQL and arguments, until Sugar writes to their table or
+     * another connection writes to the database. 0, the default, disables the cache.
+     *
+     * @see com.orm.cache.QueryCache
+     */
+    public SugarDbConfiguration setQueryCacheSize(int queryCacheSize) {
+        this.queryCacheSize = queryCacheSize;
+        return this;
+    }
+
+    public Integer getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Sets how many compiled statements are kept for reuse: the statements of
+     * {@link SugarRecord#count(Class, String, String...)}, {@link SugarRecord#sum(Class, String)} and
+     * {@link SugarRecord#executeQuery(String, String...)}, by their SQL, and the queries of the
+     * database connection, such as the ones of {@code find} and {@code findById}, up to
+     * {@link android.database.sqlite.SQLiteDatabase#MAX_SQL_CACHE_SIZE}. Defaults to
+     * {@link com.orm.util.StatementCache#DEFAULT_MAX_SIZE}.
+     */
+    public SugarDbConfiguration setStatementCacheSize(Integer statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    /**
+     * @return true if write-ahead logging is enabled, directly or through {@link #setJournalMode(JournalMode)}
+     */
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging || journalMode == JournalMode.WAL;
+    }
+
+    /**
+     * Enables write-ahead logging, with which reads don't wait for writes to commit and see the
+     * last committed data instead. Only used on Android 3.0 (API 11) and up. It is set with
+     * {@code PRAGMA journal_mode}, so Android keeps a single connection that gets every setting,
+     * and the reads that run alongside writes are the ones of the read connection pool.
+     *
+     * @see #setReadConnectionPoolSize(int)
+     */
+    public SugarDbConfiguration setWriteAheadLogging(boolean writeAheadLogging) {
+        this.writeAheadLogging = writeAheadLogging;
+        return this;
+    }
+
+    public int getReadConnectionPoolSize() {
+        return readConnectionPoolSize;
+    }
+
+    /**
+     * With {@link #setWriteAheadLogging(boolean) write-ahead logging}, opens this many connections
+     * to read with, which {@code find}, {@code count}, {@code Select} and iterators take in turn, while
+     * writes and the reads of a thread in a transaction go to the primary connection. 0, the
+     * default, leaves reads to the primary connection, where they wait for the writes in progress.
+     * Queries run through {@code findWithQuery} must only read.
+     */
+    public SugarDbConfiguration setReadConnectionPoolSize(int readConnectionPoolSize) {
+        this.readConnectionPoolSize = readConnectionPoolSize;
+        return this;
+    }
+
+    public JournalMode getJournalMode() {
+        return journalMode;
+    }
+
+    /**
+     * Sets {@code PRAGMA journal_mode}. {@link JournalMode#WAL} is the same as
+     * {@link #setWriteAheadLogging(boolean)}, and other modes are ignored when write-ahead logging
+     * is enabled.
+     */
+    public SugarDbConfiguration setJournalMode(JournalMode journalMode) {
+        this.journalMode = journalMode;
+        return this;
+    }
+
+    public Synchronous getSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * Sets {@code PRAGMA synchronous}. {@link Synchronous#NORMAL} with write-ahead logging can
+     * lose the last transactions on a power loss, but never corrupts the database.
+     */
+    public SugarDbConfiguration setSynchronous(Synchronous synchronous) {
+        this.synchronous = synchronous;
+        return this;
+    }
+
+    public Integer getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets {@code PRAGMA cache_size}, in pages, or in KiB when negative.
+     */
+    public SugarDbConfiguration setCacheSize(Integer cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    public Long getMmapSize() {
+        return mmapSize;
+    }
+
+    /**
+     * Sets {@code PRAGMA mmap_size}, the number of bytes of the database file read through memory
+     * mapped I/O. Needs SQLite 3.7.17 (Android 5.0).
+     */
+    public SugarDbConfiguration setMmapSize(Long mmapSize) {
+        this.mmapSize = mmapSize;
+        return this;
+    }
+
+    public TempStore getTempStore() {
+        return tempStore;
+    }
+
+    /**
+     * Sets {@code PRAGMA temp_store}.
+     */
+    public SugarDbConfiguration setTempStore(TempStore tempStore) {
+        this.tempStore = tempStore;
+        return this;
+    }
+
+    public Integer getBusyTimeout() {
+        return busyTimeout;
+    }
+
+    /**
+     * Sets {@code PRAGMA busy_timeout}, in milliseconds. Needs SQLite 3.7.15 (Android 5.0).
+     */
+    public SugarDbConfiguration setBusyTimeout(Integer busyTimeout) {
+        this.busyTimeout = busyTimeout;
+        return this;
+    }
+
+    public Integer getWalAutoCheckpoint() {
+        return walAutoCheckpoint;
+    }
+
+    /**
+     * Sets {@code PRAGMA wal_autocheckpoint}, the number of WAL pages after which a commit
+     * checkpoints, or 0 to never checkpoint automatically.
+     */
+    public SugarDbConfiguration setWalAutoCheckpoint(Integer walAutoCheckpoint) {
+        this.walAutoCheckpoint = walAutoCheckpoint;
+        return this;
+    }
+
+    public Boolean getForeignKeys() {
+        return foreignKeys;
+    }
+
+    /**
+     * Sets {@code PRAGMA foreign_keys}, through
+     * {@link android.database.sqlite.SQLiteDatabase#setForeignKeyConstraintsEnabled(boolean)} on
+     * Android 4.1 and up so that every connection enforces them.
+     */
+    public SugarDbConfiguration setForeignKeys(Boolean foreignKeys) {
+        this.foreignKeys = foreignKeys;
+        return this;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Runs the background work of {@link SugarDataSource} on this executor instead of one Sugar
+     * creates. The executor belongs to the app, which shuts it down: {@link SugarContext#terminate()}
+     * doesn't.
+     */
+    public SugarDbConfiguration setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public int getExecutorPoolSize() {
+        return executorPoolSize;
+    }
+
+    /**
+     * Sets the number of threads of the executor Sugar creates when none is
+     * {@link #setExecutor(ExecutorService) given}. Defaults to
+     * {@link com.orm.util.ThreadUtil#DEFAULT_POOL_SIZE}.
+     */
+    public SugarDbConfiguration setExecutorPoolSize(int executorPoolSize) {
+        this.executorPoolSize = executorPoolSize;
+        return this;
+    }
+
+    public int getExecutorQueueSize() {
+        return executorQueueSize;
+    }
+
+    /**
+     * Sets how many tasks can wait for a thread of the executor Sugar creates. Defaults to
+     * {@link com.orm.util.ThreadUtil#DEFAULT_QUEUE_SIZE}.
+     */
+    public SugarDbConfiguration setExecutorQueueSize(int executorQueueSize) {
+        this.executorQueueSize = executorQueueSize;
+        return this;
+    }
+
+    public RejectedExecutionHandler getExecutorRejectionPolicy() {
+        return executorRejectionPolicy;
+    }
+
+    /**
+     * Sets what the executor Sugar creates does with a task when its queue is full, such as
+     * {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy}. Defaults to
+     * {@link java.util.concurrent.ThreadPoolExecutor.AbortPolicy}, which fails the task with a
+     * {@link java.util.concurrent.RejectedExecutionException}.
+     *
+     * The policy has to run the task or throw: a task dropped without an exception would leave its
+     * {@link java.util.concurrent.Future} waiting forever and call neither callback, so
+     * {@link ThreadPoolExecutor.DiscardPolicy} and {@link ThreadPoolExecutor.DiscardOldestPolicy}
+     * are refused.
+     *
+     * @throws IllegalArgumentException if the policy discards tasks
+     */
+    public SugarDbConfiguration setExecutorRejectionPolicy(RejectedExecutionHandler executorRejectionPolicy) {
+        if (executorRejectionPolicy instanceof ThreadPoolExecutor.DiscardPolicy
+                || executorRejectionPolicy instanceof ThreadPoolExecutor.DiscardOldestPolicy) {
+            throw new IllegalArgumentException("executorRejectionPolicy shouldn't discard tasks");
+        }
+        this.executorRejectionPolicy = executorRejectionPolicy;
+        return this;
+    }
+
+    public long getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    /**
+     * Makes the inserts, updates and deletes of {@link SugarDataSource} go through one writer
+     * thread, which commits the writes submitted within this many milliseconds in one transaction.
+     * Writes of the same entity instance within the window are written once, and every callback
+     * is called after the commit. 0, the default, runs each write on its own.
+     *
+     * @see com.orm.helper.GroupCommitQueue
+     */
+    public SugarDbConfiguration setGroupCommitWindow(long groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+        return this;
+    }
+
+    public int getGroupCommitMaxWrites() {
+        return groupCommitMaxWrites;
+    }
+
+    /**
+     * Sets how many writes commit a {@link #setGroupCommitWindow(long) group commit} window before
+     * its time is up. Defaults to {@link com.orm.helper.GroupCommitQueue#DEFAULT_MAX_WRITES}.
+     */
+    public SugarDbConfiguration setGroupCommitMaxWrites(int groupCommitMaxWrites) {
+        this.groupCommitMaxWrites = groupCommitMaxWrites;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "SugarDbConfiguration{" +
                 ", databaseLocale=" + databaseLocale +
                 ", maxSize=" + maxSize +
                 ", pageSize=" + pageSize +
+                ", multiRowInsert=" + multiRowInsert +
+                ", upsert=" + upsert +
+                ", queryCacheSize=" + queryCacheSize +
+                ", statementCacheSize=" + statementCacheSize +
+                ", writeAheadLogging=" + writeAheadLogging +
+                ", readConnectionPoolSize=" + readConnectionPoolSize +
+                ", journalMode=" + journalMode +
+                ", synchronous=" + synchronous +
+                ", cacheSize=" + cacheSize +
+                ", mmapSize=" + mmapSize +
+                ", tempStore=" + tempStore +
+                ", busyTimeout=" + busyTimeout +
+                ", walAutoCheckpoint=" + walAutoCheckpoint +
+                ", foreignKeys=" + foreignKeys +
+                ", executor=" + executor +
+                ", executorPoolSize=" + executorPoolSize +
+                ", executorQueueSize=" + executorQueueSize +
+                ", executorRejectionPolicy=" + executorRejectionPolicy +
+                ", groupCommitWindow=" + groupCommitWindow +
+                ", groupCommitMaxWrites=" + groupCommitMaxWrites +
                 '}';
     }
+
+    /**
+     * The values of {@code PRAGMA journal_mode}.
+     */
+    public enum JournalMode {
+        DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF
+    }
+
+    /**
+     * The values of {@code PRAGMA synchronous}, in the order of their numeric values.
+     */
+    public enum Synchronous {
+        OFF, NORMAL, FULL, EXTRA
+    }
+
+    /**
+     * The values of {@code PRAGMA temp_store}, in the order of their numeric values.
+     */
+    public enum TempStore {
+        DEFAULT, FILE, MEMORY
+    }
 }
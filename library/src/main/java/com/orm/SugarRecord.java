@@ -4,16 +4,28 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
-import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import android.util.Log;
 
-import com.orm.annotation.Id;
 import com.orm.annotation.Table;
-import com.orm.annotation.Unique;
+import com.orm.cache.Caches;
+import com.orm.cache.EntityCache;
+import com.orm.helper.BulkDeleteHelper;
+import com.orm.helper.BulkInsertHelper;
 import com.orm.helper.ManifestHelper;
 import com.orm.helper.NamingHelper;
-import com.orm.inflater.EntityInflater;
+import com.orm.helper.SugarTransactionHelper;
+import com.orm.helper.UpsertHelper;
+import com.orm.inflater.ColumnBinding;
+import com.orm.inflater.InflationPlan;
+import com.orm.inflater.LoadContext;
+import com.orm.mapper.SugarMapper;
+import com.orm.mapper.SugarMappers;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+import com.orm.util.CloseableIterator;
+import com.orm.util.CursorLeakTracker;
+import com.orm.util.EntityIdMap;
 import com.orm.util.QueryBuilder;
 import com.orm.util.ReflectionUtil;
 import com.orm.util.SugarCursor;
@@ -27,48 +39,51 @@ public class SugarRecord {
 
     public static final String LOG_TAG = "Sugar";
 
-
     private static SQLiteDatabase getSugarDataBase() {
         return getSugarContext().getSugarDb().getDB();
     }
 
+    private static SQLiteDatabase getReadDataBase() {
+        return getSugarContext().getSugarDb().getReadDB();
+    }
+
     public static <T> int deleteAll(Class<T> type) {
         return deleteAll(type, null);
     }
 
     public static <T> int deleteAll(Class<T> type, String whereClause, String... whereArgs) {
-        return getSugarDataBase().delete(NamingHelper.toTableName(type), whereClause, whereArgs);
+        int deleted = getSugarDataBase().delete(EntityMetadata.of(type).getTableName(), whereClause, whereArgs);
+        Caches.tableChanged(type);
+        return deleted;
     }
 
     public static <T> Cursor getCursor(Class<T> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
-        Cursor raw = getSugarDataBase().query(NamingHelper.toTableName(type), null, whereClause, whereArgs,
+        Cursor raw = getReadDataBase().query(EntityMetadata.of(type).getTableName(), null, whereClause, whereArgs,
                 groupBy, null, orderBy, limit);
         return new SugarCursor(raw);
     }
 
-    @SuppressWarnings("deprecation")
-    public static <T> void saveInTx(T... objects) {
-        saveInTx(Arrays.asList(objects));
+    public static <T> long[] saveInTx(T... objects) {
+        return saveInTx(Arrays.asList(objects));
     }
 
-    @SuppressWarnings("deprecation")
-    public static <T> void saveInTx(Collection<T> objects) {
-        SQLiteDatabase sqLiteDatabase = getSugarDataBase();
+    /**
+     * Saves the objects in one transaction, with one compiled INSERT per class. Rows are inserted
+     * in multi-row batches when {@link SugarDbConfiguration#setMultiRowInsert(boolean)} is set.
+     *
+     * @return the ids of the objects in iteration order, or an empty array if the transaction failed
+     */
+    public static <T> long[] saveInTx(Collection<T> objects) {
+        SugarDbConfiguration configuration = SugarContext.getDbConfiguration();
+        boolean multiRow = configuration != null && configuration.isMultiRowInsert();
         try {
-            sqLiteDatabase.beginTransaction();
-            sqLiteDatabase.setLockingEnabled(false);
-            for (T object: objects) {
-                save(object);
-            }
-            sqLiteDatabase.setTransactionSuccessful();
+            return BulkInsertHelper.insert(getSugarDataBase(), objects, SQLiteDatabase.CONFLICT_REPLACE, multiRow);
         } catch (Exception e) {
             if (ManifestHelper.isDebugEnabled()) {
                 Log.i(LOG_TAG, "Error in saving in transaction " + e.getMessage());
             }
-        } finally {
-            sqLiteDatabase.endTransaction();
-            sqLiteDatabase.setLockingEnabled(true);
         }
+        return new long[0];
     }
 
     @SuppressWarnings("deprecation")
@@ -76,23 +91,19 @@ public class SugarRecord {
         updateInTx(Arrays.asList(objects));
     }
 
-    @SuppressWarnings("deprecation")
     public static <T> void updateInTx(Collection<T> objects) {
-        SQLiteDatabase sqLiteDatabase = getSugarDataBase();
+        SugarTransactionHelper.Transaction transaction = SugarTransactionHelper.begin(getSugarDataBase());
         try {
-            sqLiteDatabase.beginTransaction();
-            sqLiteDatabase.setLockingEnabled(false);
             for (T object: objects) {
                 update(object);
             }
-            sqLiteDatabase.setTransactionSuccessful();
+            transaction.setSuccessful();
         } catch (Exception e) {
             if (ManifestHelper.isDebugEnabled()) {
                 Log.i(LOG_TAG, "Error in saving in transaction " + e.getMessage());
             }
         } finally {
-            sqLiteDatabase.endTransaction();
-            sqLiteDatabase.setLockingEnabled(true);
+            transaction.end();
         }
     }
 
@@ -101,29 +112,38 @@ public class SugarRecord {
         return deleteInTx(Arrays.asList(objects));
     }
 
-    @SuppressWarnings("deprecation")
+    /**
+     * Deletes the objects in one transaction, with one {@code DELETE ... WHERE id IN (...)} per
+     * table and chunk of ids.
+     *
+     * @return the number of deleted rows, or 0 if the transaction failed
+     */
     public static <T> int deleteInTx(Collection<T> objects) {
-        SQLiteDatabase sqLiteDatabase = getSugarDataBase();
-        int deletedRows = 0;
         try {
-            sqLiteDatabase.beginTransaction();
-            sqLiteDatabase.setLockingEnabled(false);
-            for (T object : objects) {
-                if (delete(object)) {
-                    ++deletedRows;
-                }
+            return BulkDeleteHelper.delete(getSugarDataBase(), objects);
+        } catch (Exception e) {
+            if(ManifestHelper.isDebugEnabled()) {
+                Log.i(LOG_TAG, "Error in deleting in transaction " + e.getMessage());
             }
-            sqLiteDatabase.setTransactionSuccessful();
+        }
+        return 0;
+    }
+
+    /**
+     * Deletes rows by id in one transaction, with one {@code DELETE ... WHERE id IN (...)} per
+     * chunk of ids.
+     *
+     * @return the number of deleted rows, or 0 if the transaction failed
+     */
+    public static <T> int deleteByIds(Class<T> type, long... ids) {
+        try {
+            return BulkDeleteHelper.deleteByIds(getSugarDataBase(), EntityMetadata.of(type), ids);
         } catch (Exception e) {
-            deletedRows = 0;
             if(ManifestHelper.isDebugEnabled()) {
                 Log.i(LOG_TAG, "Error in deleting in transaction " + e.getMessage());
             }
-        } finally {
-            sqLiteDatabase.endTransaction();
-            sqLiteDatabase.setLockingEnabled(true);
         }
-        return deletedRows;
+        return 0;
     }
 
     public static <T> List<T> listAll(Class<T> type) {
@@ -135,10 +155,33 @@ public class SugarRecord {
     }
 
     public static <T> T findById(Class<T> type, Long id) {
-        Field idField = SchemaGenerator.findAnnotatedField(type, Id.class);
-        if(idField == null)
+        EntityMetadata metadata = EntityMetadata.of(type);
+        if (!metadata.hasIdField())
             return null;
-        List<T> list = find(type, idField.getName()+"=?", new String[]{String.valueOf(id)}, null, null, "1");
+
+        EntityCache cache = (id != null && !Caches.inTransaction()) ? EntityCache.of(type) : null;
+        if (cache == null) {
+            List<T> list = find(type, metadata.getIdColumnName()+"=?", new String[]{String.valueOf(id)}, null, null, "1");
+            if (list.isEmpty()) return null;
+            return list.get(0);
+        }
+
+        Cursor cursor = cache.get(id);
+        ColumnBinding binding;
+        if (cursor != null) {
+            binding = ColumnBinding.of(cursor, type);
+        } else {
+            long version = cache.getVersion();
+            cursor = getReadDataBase().query(metadata.getTableName(), null, metadata.getIdColumnName() + "=?",
+                    new String[]{String.valueOf(id)}, null, null, null, "1");
+            binding = ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type));
+            if (cursor.moveToFirst()) {
+                cache.put(cursor, binding, version);
+            }
+            cursor.moveToPosition(-1);
+        }
+
+        List<T> list = getEntitiesFromCursor(cursor, type, binding, null, null);
         if (list.isEmpty()) return null;
         return list.get(0);
     }
@@ -148,25 +191,32 @@ public class SugarRecord {
     }
 
     public static <T> T findById(Class<T> type, String id) {
-        Field idField = SchemaGenerator.findAnnotatedField(type, Id.class);
-        if(idField == null)
+        EntityMetadata metadata = EntityMetadata.of(type);
+        if (!metadata.hasIdField())
             return null;
-        List<T> list = find(type, idField.getName()+"=?", new String[]{id}, null, null, "1");
+        if (id != null && EntityCache.of(type) != null) {
+            try {
+                return findById(type, Long.valueOf(id));
+            } catch (NumberFormatException e) {
+                // not a row id, read it from the table
+            }
+        }
+        List<T> list = find(type, metadata.getIdColumnName()+"=?", new String[]{id}, null, null, "1");
         if (list.isEmpty()) return null;
         return list.get(0);
     }
 
     public static <T> List<T> findById(Class<T> type, String... ids) {
-        Field idField = SchemaGenerator.findAnnotatedField(type, Id.class);
-        if(idField == null)
+        EntityMetadata metadata = EntityMetadata.of(type);
+        if (!metadata.hasIdField())
             return null;
-        String whereClause = idField.getName()+" IN (" + QueryBuilder.generatePlaceholders(ids.length) + ")";
+        String whereClause = metadata.getIdColumnName()+" IN (" + QueryBuilder.generatePlaceholders(ids.length) + ")";
         return find(type, whereClause, ids);
     }
 
     public static <T> T first(Class<T>type) {
         List<T> list = findWithQuery(type,
-                "SELECT * FROM " + NamingHelper.toTableName(type) + " ORDER BY ID ASC LIMIT 1");
+                "SELECT * FROM " + EntityMetadata.of(type).getTableName() + " ORDER BY ID ASC LIMIT 1");
         if (list.isEmpty()) {
             return null;
         }
@@ -175,30 +225,65 @@ public class SugarRecord {
 
     public static <T> T last(Class<T>type) {
         List<T> list = findWithQuery(type,
-                "SELECT * FROM " + NamingHelper.toTableName(type) + " ORDER BY ID DESC LIMIT 1");
+                "SELECT * FROM " + EntityMetadata.of(type).getTableName() + " ORDER BY ID DESC LIMIT 1");
         if (list.isEmpty()) {
             return null;
         }
         return list.get(0);
     }
 
-    public static <T> Iterator<T> findAll(Class<T> type) {
+    public static <T> CloseableIterator<T> findAll(Class<T> type) {
         return findAsIterator(type, null, null, null, null, null);
     }
 
-    public static <T> Iterator<T> findAsIterator(Class<T> type, String whereClause, String... whereArgs) {
+    public static <T> CloseableIterator<T> findAsIterator(Class<T> type, String whereClause, String... whereArgs) {
         return findAsIterator(type, whereClause, whereArgs, null, null, null);
     }
 
-    public static <T> Iterator<T> findWithQueryAsIterator(Class<T> type, String query, String... arguments) {
-        Cursor cursor = getSugarDataBase().rawQuery(query, arguments);
-        return new CursorIterator<>(type, cursor);
+    public static <T> CloseableIterator<T> findWithQueryAsIterator(Class<T> type, String query, String... arguments) {
+        Cursor cursor = getReadDataBase().rawQuery(query, arguments);
+        return new CursorIterator<>(type, cursor, ColumnBinding.forQuery(cursor, type, query));
     }
 
-    public static <T> Iterator<T> findAsIterator(Class<T> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
-        Cursor cursor = getSugarDataBase().query(NamingHelper.toTableName(type), null, whereClause, whereArgs,
+    public static <T> CloseableIterator<T> findAsIterator(Class<T> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
+        Cursor cursor = getReadDataBase().query(EntityMetadata.of(type).getTableName(), null, whereClause, whereArgs,
                 groupBy, null, orderBy, limit);
-        return new CursorIterator<>(type, cursor);
+        return new CursorIterator<>(type, cursor, ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type)));
+    }
+
+    public static <T> int forEach(Class<T> type, RowCallback<? super T> callback) {
+        return forEach(findAll(type), callback);
+    }
+
+    /**
+     * Streams the entities of a query to a callback one row at a time, until the callback asks to
+     * stop, and closes the cursor whether or not every row was read.
+     *
+     * @return the number of rows given to the callback
+     */
+    public static <T> int forEach(Class<T> type, String whereClause, String[] whereArgs, String orderBy, RowCallback<? super T> callback) {
+        return forEach(findAsIterator(type, whereClause, whereArgs, null, orderBy, null), callback);
+    }
+
+    /**
+     * Streams the entities of an iterator to a callback until the callback asks to stop, and closes
+     * the iterator.
+     *
+     * @return the number of rows given to the callback
+     */
+    public static <T> int forEach(CloseableIterator<T> iterator, RowCallback<? super T> callback) {
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                count++;
+                if (!callback.onRow(iterator.next())) {
+                    break;
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
     }
 
     public static <T> List<T> find(Class<T> type, String whereClause, String... whereArgs) {
@@ -206,13 +291,15 @@ public class SugarRecord {
     }
 
     public static <T> List<T> findWithQuery(Class<T> type, String query, String... arguments) {
-        Cursor cursor = getSugarDataBase().rawQuery(query, arguments);
+        Cursor cursor = getReadDataBase().rawQuery(query, arguments);
 
-        return getEntitiesFromCursor(cursor, type);
+        return getEntitiesFromCursor(cursor, type, ColumnBinding.forQuery(cursor, type, query), null, null);
     }
 
     public static void executeQuery(String query, String... arguments) {
-        getSugarDataBase().execSQL(query, arguments);
+        getSugarContext().getSugarDb().getStatementCache().execute(query, (Object[]) arguments);
+        // any table may have changed
+        Caches.clearAll();
     }
 
     public static <T> List<T> find(Class<T> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
@@ -220,20 +307,69 @@ public class SugarRecord {
         String args[];
         args = (whereArgs == null) ? null : replaceArgs(whereArgs);
 
-        Cursor cursor = getSugarDataBase().query(NamingHelper.toTableName(type), null, whereClause, args,
+        Cursor cursor = getReadDataBase().query(EntityMetadata.of(type).getTableName(), null, whereClause, args,
                 groupBy, null, orderBy, limit);
 
-        return getEntitiesFromCursor(cursor, type);
+        return getEntitiesFromCursor(cursor, type, ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type)), null, null);
+    }
+
+    public static <T> List<T> findReadOnly(Class<T> type, String whereClause, String... whereArgs) {
+        return findReadOnly(type, whereClause, whereArgs, null, null, null);
+    }
+
+    /**
+     * Reads entities that will not be saved back, such as for exports or reports, keeping nothing
+     * about them once they are returned. Each row is a new instance, read from the row alone:
+     * entity references and eager one-to-many lists are not loaded, {@link EntityRef} fields and
+     * lazy lists are set and load when used, no cache is read or filled and {@link #onLoad()} is
+     * not called.
+     */
+    public static <T> List<T> findReadOnly(Class<T> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
+        Cursor cursor = queryReadOnly(type, whereClause, whereArgs, groupBy, orderBy, limit);
+        ColumnBinding binding = ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type));
+        InflationPlan<T> plan = InflationPlan.of(type);
+
+        List<T> result = new ArrayList<>(Math.max(cursor.getCount(), 0));
+        try {
+            while (cursor.moveToNext()) {
+                try {
+                    T entity = plan.newInstance();
+                    plan.inflateColumns(cursor, binding, entity);
+                    result.add(entity);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Iterates over entities read the way {@link #findReadOnly(Class, String, String[], String, String, String)}
+     * reads them, so that a long scan only holds the entity of the current row.
+     */
+    public static <T> CloseableIterator<T> findReadOnlyAsIterator(Class<T> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
+        Cursor cursor = queryReadOnly(type, whereClause, whereArgs, groupBy, orderBy, limit);
+        return new CursorIterator<>(type, cursor, ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type)), true);
+    }
+
+    private static Cursor queryReadOnly(Class<?> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
+        String[] args = (whereArgs == null) ? null : replaceArgs(whereArgs);
+        return getReadDataBase().query(EntityMetadata.of(type).getTableName(), null, whereClause, args,
+                groupBy, null, orderBy, limit);
     }
 
     public static <T> List<T> findOneToMany(Class<T> type, String relationFieldName, Object relationObject, Long relationObjectId) {
         String args[] = { String.valueOf(relationObjectId) };
-        String whereClause = NamingHelper.toSQLNameDefault(relationFieldName) + " = ?";
+        String whereClause = EntityMetadata.of(type).getColumnName(relationFieldName) + " = ?";
 
-        Cursor cursor = getSugarDataBase().query(NamingHelper.toTableName(type), null, whereClause, args,
+        Cursor cursor = getReadDataBase().query(EntityMetadata.of(type).getTableName(), null, whereClause, args,
                 null, null, null, null);
 
-        return getEntitiesFromCursor(cursor, type, relationFieldName, relationObject);
+        return getEntitiesFromCursor(cursor, type, ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type)),
+                relationFieldName, relationObject);
     }
 
     public static <T> List<T> getEntitiesFromCursor(Cursor cursor, Class<T> type){
@@ -241,47 +377,234 @@ public class SugarRecord {
     }
 
     public static <T> T getEntityFromCursor(Cursor cursor, Class<T> type){
-        T entity = null;
+        return getEntityFromCursor(cursor, type, ColumnBinding.of(cursor, type), null, null);
+    }
+
+    static <T> T getEntityFromCursor(Cursor cursor, Class<T> type, ColumnBinding binding, String relationFieldName, Object relationObject){
         try {
-            entity = type.getDeclaredConstructor().newInstance();
-            new EntityInflater()
-                    .withCursor(cursor)
-                    .withObject(entity)
-                    .withEntitiesMap(getSugarContext().getEntitiesMap())
-                    .withRelationFieldName(null)
-                    .withRelationObject(null)
-                    .inflate();
-            //set id here
-            Field idField = SchemaGenerator.findAnnotatedField(type, Id.class);
-            if(idField != null){
-                idField.setAccessible(true);
-                Object id =null;
-                if(idField.getType() == Integer.class){
-                    id = cursor.getInt(cursor.getColumnIndex(idField.getName()));
-                }else if(idField.getType() == Long.class){
-                    id = cursor.getLong(cursor.getColumnIndex(idField.getName()));
-                    idField.set(entity, id);
-                }else if(idField.getType() == String.class){
-                    id = cursor.getString(cursor.getColumnIndex(idField.getName()));
-                }
-                if(id != null){
-                    idField.set(entity, id);
-                }
-            }
-            ((SugarRecord)entity).onLoad();
+            LoadContext context = new LoadContext();
+            T entity = loadEntity(cursor, InflationPlan.of(type), binding, relationFieldName, relationObject, context);
+            loadReferences(context);
             return entity;
         }catch (Exception e){
             e.printStackTrace();
         }
+        return null;
+    }
+
+    /**
+     * Reads the entity of the current row, unless the load already read the row with the same id,
+     * in which case that instance is returned as it is.
+     */
+    static <T> T loadEntity(Cursor cursor, InflationPlan<T> plan, ColumnBinding binding, String relationFieldName,
+                            Object relationObject, LoadContext context) throws Exception {
+        Class<T> type = plan.getType();
+        int idIndex = binding.getIdIndex();
+        if (idIndex >= 0 && !cursor.isNull(idIndex) && plan.hasNumericId()) {
+            Object loaded = context.getLoaded(type, cursor.getLong(idIndex));
+            if (type.isInstance(loaded)) {
+                return type.cast(loaded);
+            }
+        }
+
+        T entity = plan.newInstance();
+        plan.inflate(cursor, binding, entity, relationFieldName, relationObject, context);
+        trackLoaded(plan.getMetadata(), entity, cursor, idIndex);
+
+        Object id = plan.getMetadata().getId(entity);
+        if (id instanceof Number) {
+            context.register(type, ((Number) id).longValue(), entity);
+        }
+
+        if (entity instanceof SugarRecord) {
+            context.addRecord((SugarRecord) entity);
+        }
         return entity;
     }
 
+    /**
+     * Reads the entities referenced by the rows of a load and their one-to-many lists, with one
+     * query per type or list field and chunk of ids, until the references and lists of the entities
+     * read this way are loaded too. Then calls {@link #onLoad()} on the records read by the load, now
+     * that their references and lists are set.
+     */
+    static void loadReferences(LoadContext context) {
+        while (context.hasPending()) {
+            Class<?> type = context.nextPendingType();
+            if (type != null) {
+                long[] ids = context.getPendingIds(type);
+                loadByIds(type, ids, context);
+                context.resolve(type, ids);
+            } else {
+                ColumnMetadata column = context.nextPendingListColumn();
+                loadLists(column.getRelationType(), column, context.takePendingOwners(column), context);
+            }
+        }
+
+        for (SugarRecord record : context.takeRecords()) {
+            record.onLoad();
+        }
+    }
+
+    private static <T> void loadLists(Class<T> type, ColumnMetadata column, Map<Long, List<Object>> owners,
+                                      LoadContext context) {
+        String targetFieldName = column.getTargetFieldName();
+        EntityMetadata metadata = EntityMetadata.of(type);
+        String targetColumnName = metadata.getColumnName(targetFieldName);
+        InflationPlan<T> plan = InflationPlan.of(type);
+
+        List<Long> ownerIds = new ArrayList<>(owners.keySet());
+        Map<Long, List<T>> lists = new HashMap<>();
+
+        for (int from = 0; from < ownerIds.size(); from += QueryBuilder.MAX_VARIABLES) {
+            String[] args = new String[Math.min(QueryBuilder.MAX_VARIABLES, ownerIds.size() - from)];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = String.valueOf(ownerIds.get(from + i));
+            }
+
+            String whereClause = targetColumnName + " IN (" + QueryBuilder.generatePlaceholders(args.length) + ")";
+            Cursor cursor = getReadDataBase().query(metadata.getTableName(), null, whereClause, args,
+                    null, null, null, null);
+            ColumnBinding binding = ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type));
+            int targetIndex = cursor.getColumnIndex(targetColumnName);
+            try {
+                while (targetIndex >= 0 && cursor.moveToNext()) {
+                    long ownerId = cursor.getLong(targetIndex);
+                    List<Object> sameId = owners.get(ownerId);
+
+                    // an element already read by this load is shared, which also ends cycles
+                    T element = null;
+                    try {
+                        element = loadEntity(cursor, plan, binding, targetFieldName,
+                                (sameId != null) ? sameId.get(0) : null, context);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+
+                    List<T> list = lists.get(ownerId);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        lists.put(ownerId, list);
+                    }
+                    list.add(element);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        for (Map.Entry<Long, List<Object>> entry : owners.entrySet()) {
+            List<T> list = lists.get(entry.getKey());
+            boolean first = true;
+            for (Object owner : entry.getValue()) {
+                try {
+                    column.getField().set(owner, (list == null) ? new ArrayList<T>()
+                            : first ? list : new ArrayList<>(list));
+                } catch (IllegalAccessException e) {
+                    Log.e(LOG_TAG, String.format("Error while inflating list field %s", column.getField()), e);
+                }
+                first = false;
+            }
+        }
+    }
+
+    private static <T> void loadByIds(Class<T> type, long[] ids, LoadContext context) {
+        EntityMetadata metadata = EntityMetadata.of(type);
+        if (!metadata.hasIdField()) {
+            return;
+        }
+
+        InflationPlan<T> plan = InflationPlan.of(type);
+        EntityCache cache = Caches.inTransaction() ? null : EntityCache.of(type);
+        if (cache != null) {
+            ids = loadCached(cache, plan, ids, context);
+        }
+
+        for (int from = 0; from < ids.length; from += QueryBuilder.MAX_VARIABLES) {
+            String[] args = new String[Math.min(QueryBuilder.MAX_VARIABLES, ids.length - from)];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = String.valueOf(ids[from + i]);
+            }
+
+            String whereClause = metadata.getIdColumnName() + " IN (" + QueryBuilder.generatePlaceholders(args.length) + ")";
+            long version = (cache != null) ? cache.getVersion() : 0;
+            Cursor cursor = getReadDataBase().query(metadata.getTableName(), null, whereClause, args,
+                    null, null, null, null);
+            ColumnBinding binding = ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type));
+            try {
+                while (cursor.moveToNext()) {
+                    try {
+                        if (cache != null) {
+                            cache.put(cursor, binding, version);
+                        }
+                        loadEntity(cursor, plan, binding, null, null, context);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Loads the entities whose rows are cached, as part of the same load as the rows that are not.
+     *
+     * @return the ids that are not cached
+     */
+    private static <T> long[] loadCached(EntityCache cache, InflationPlan<T> plan, long[] ids, LoadContext context) {
+        List<Long> missing = new ArrayList<>();
+        Cursor cursor = cache.get(ids, missing);
+        try {
+            ColumnBinding binding = ColumnBinding.of(cursor, plan.getType());
+            while (cursor.moveToNext()) {
+                try {
+                    loadEntity(cursor, plan, binding, null, null, context);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        long[] result = new long[missing.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = missing.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Remembers the row id of a loaded entity that has no id field to hold it.
+     */
+    private static void trackLoaded(EntityMetadata metadata, Object entity, Cursor cursor, int idIndex) {
+        if (!metadata.hasIdField() && metadata.isTableAnnotated() && idIndex >= 0 && !cursor.isNull(idIndex)) {
+            getSugarContext().getEntityIds().put(entity, cursor.getLong(idIndex));
+        }
+    }
+
+    static <T> T newEntity(Class<T> type) throws Exception {
+        return InflationPlan.of(type).newInstance();
+    }
+
     public static <T> List<T> getEntitiesFromCursor(Cursor cursor, Class<T> type, String relationFieldName, Object relationObject){
-        T entity;
+        return getEntitiesFromCursor(cursor, type, ColumnBinding.of(cursor, type), relationFieldName, relationObject);
+    }
+
+    static <T> List<T> getEntitiesFromCursor(Cursor cursor, Class<T> type, ColumnBinding binding, String relationFieldName, Object relationObject){
+        InflationPlan<T> plan = InflationPlan.of(type);
+        LoadContext context = new LoadContext();
         List<T> result = new ArrayList<>();
         try {
             while (cursor.moveToNext()) {
-                entity = getEntityFromCursor(cursor, type);
+                T entity = null;
+                try {
+                    entity = loadEntity(cursor, plan, binding, relationFieldName, relationObject, context);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
                 result.add(entity);
             }
         } catch (Exception e) {
@@ -290,6 +613,12 @@ public class SugarRecord {
             cursor.close();
         }
 
+        try {
+            loadReferences(context);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
         return result;
     }
 
@@ -302,29 +631,8 @@ public class SugarRecord {
     }
 
     public static <T> long count(Class<T> type, String whereClause, String[] whereArgs, String groupBy, String orderBy, String limit) {
-        long result = -1;
         String filter = (!TextUtils.isEmpty(whereClause)) ? " where "  + whereClause : "";
-        SQLiteStatement sqliteStatement;
-        try {
-            sqliteStatement = getSugarDataBase().compileStatement("SELECT count(*) FROM " + NamingHelper.toTableName(type) + filter);
-        } catch (SQLiteException e) {
-            e.printStackTrace();
-            return result;
-        }
-
-        if (whereArgs != null) {
-            for (int i = whereArgs.length; i != 0; i--) {
-                sqliteStatement.bindString(i, whereArgs[i - 1]);
-            }
-        }
-
-        try {
-            result = sqliteStatement.simpleQueryForLong();
-        } finally {
-            sqliteStatement.close();
-        }
-
-        return result;
+        return simpleQueryForLong("SELECT count(*) FROM " + EntityMetadata.of(type).getTableName() + filter, whereArgs);
     }
 
     public static <T> long sum(Class<T> type, String field) {
@@ -332,29 +640,22 @@ public class SugarRecord {
     }
 
     public static <T> long sum(Class<T> type, String field, String whereClause, String... whereArgs) {
-        long result = -1;
         String filter = (!TextUtils.isEmpty(whereClause)) ? " where " + whereClause : "";
-        SQLiteStatement sqLiteStatement;
+        return simpleQueryForLong("SELECT sum(" + field + ") FROM " + EntityMetadata.of(type).getTableName() + filter, whereArgs);
+    }
+
+    /**
+     * Runs a query returning a single number through the compiled statement cache.
+     *
+     * @return the number, or -1 if the query does not compile
+     */
+    private static long simpleQueryForLong(String sql, String[] args) {
         try {
-            sqLiteStatement = getSugarDataBase().compileStatement("SELECT sum(" + field + ") FROM " + NamingHelper.toTableName(type) + filter);
+            return getSugarContext().getSugarDb().getReadStatementCache().simpleQueryForLong(sql, (Object[]) args);
         } catch (SQLiteException e) {
             e.printStackTrace();
-            return result;
-        }
-
-        if (whereArgs != null) {
-            for (int i = whereArgs.length; i != 0; i--) {
-                sqLiteStatement.bindString(i, whereArgs[i - 1]);
-            }
+            return -1;
         }
-
-        try {
-            result = sqLiteStatement.simpleQueryForLong();
-        } finally {
-            sqLiteStatement.close();
-        }
-
-        return result;
     }
 
     public static long save(Object object) {
@@ -370,70 +671,64 @@ public class SugarRecord {
     }
 
     static long save(SQLiteDatabase db, Object object, ContentValues overrideValues) {
-        Map<Object, Object> entitiesMap = getSugarContext().getEntitiesMap();
-        List<Field> columns = ReflectionUtil.getTableFields(object.getClass());
-        ContentValues values = new ContentValues(columns.size());
-        Field idField = SchemaGenerator.findAnnotatedField(object.getClass(), Id.class);
-        for (Field column : columns) {
-            ReflectionUtil.addFieldValueToColumn(values, column, object, entitiesMap);
-//            if (column.getName().equals("id")) {
-//                idField = column;
-//            }
+        EntityIdMap entityIds = getSugarContext().getEntityIds();
+        EntityMetadata metadata = EntityMetadata.of(object.getClass());
+
+        long id;
+        if (overrideValues == null && isUpsert(object.getClass())) {
+            id = UpsertHelper.upsert(db, object);
+        } else {
+            id = insertOrReplace(db, object, metadata, overrideValues, entityIds);
         }
 
-        boolean isSugarEntity = isSugarEntity(object.getClass());
-        if (isSugarEntity && entitiesMap.containsKey(object)) {
-//                values.put("id", entitiesMap.get(object));
-            Object colOb = entitiesMap.get(object);
-            if(colOb instanceof Integer){
-                values.put(idField.getName(), (Integer) entitiesMap.get(object));
-            }else if(colOb instanceof Long){
-                values.put(idField.getName(), (Long) entitiesMap.get(object));
-            }else if(colOb instanceof String){
-                values.put(idField.getName(), (String) entitiesMap.get(object));
-            }
+        if (metadata.hasIdField()) {
+            metadata.setGeneratedId(object, id);
+        } else if (metadata.isTableAnnotated()) {
+            entityIds.put(object, id);
         }
 
-        if(overrideValues!=null){
-            values.putAll(overrideValues);
+        if (overrideValues == null) {
+            Caches.saved(object);
+        } else {
+            Caches.evicted(object);
         }
 
-        long id = db.insertWithOnConflict(NamingHelper.toTableName(object.getClass()), null, values,
-                SQLiteDatabase.CONFLICT_REPLACE);
+        if (ManifestHelper.isDebugEnabled()) {
+            Log.i(LOG_TAG, object.getClass().getSimpleName() + " saved : " + id);
+        }
 
-        Log.d(LOG_TAG, "ID: "+id);
-        if (idField.getType() == Integer.class || idField.getType() == Long.class) {
-            Log.d(LOG_TAG, "Setting id field");
-            idField.setAccessible(true);
-            try {
-                idField.set(object, id);
-                Log.d(LOG_TAG, "ID set");
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-                Log.d(LOG_TAG, "Error setting id: "+e.getMessage());
+        return id;
+    }
+
+    private static boolean isUpsert(Class<?> type) {
+        SugarDbConfiguration configuration = SugarContext.getDbConfiguration();
+        return configuration != null && configuration.isUpsert() && UpsertHelper.canUpsert(type);
+    }
+
+    private static long insertOrReplace(SQLiteDatabase db, Object object, EntityMetadata metadata,
+                                        ContentValues overrideValues, EntityIdMap entityIds) {
+        ContentValues values = new ContentValues(metadata.getColumns().size());
+        SugarMapper<Object> mapper = SugarMappers.getMapper(object.getClass());
+        if (mapper != null) {
+            mapper.toContentValues(object, values);
+        }
+        for (ColumnMetadata column : metadata.getColumns()) {
+            if (mapper == null || column.getKind() == ColumnMetadata.Kind.ENTITY) {
+                ReflectionUtil.addFieldValueToColumn(values, column, object);
             }
         }
 
-        if (object.getClass().isAnnotationPresent(Table.class)) {
-            if (idField != null) {
-                idField.setAccessible(true);
-                try {
-                    idField.set(object, id);
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                entitiesMap.put(object, id);
-            }
-        } else if (SugarRecord.class.isAssignableFrom(object.getClass())) {
-//            ((SugarRecord) object).setId(id);
+        // entities without an id field replace the row they were saved or loaded from
+        if (!metadata.hasIdField() && entityIds.contains(object)) {
+            values.put(metadata.getIdColumnName(), entityIds.get(object, 0));
         }
 
-        if (ManifestHelper.isDebugEnabled()) {
-            Log.i(LOG_TAG, object.getClass().getSimpleName() + " saved : " + id);
+        if(overrideValues!=null){
+            values.putAll(overrideValues);
         }
 
-        return id;
+        return db.insertWithOnConflict(metadata.getTableName(), null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
     }
 
     public static long update(Object object) {
@@ -441,52 +736,71 @@ public class SugarRecord {
     }
 
     static long update(SQLiteDatabase db, Object object) {
-        Map<Object, Object> entitiesMap = getSugarContext().getEntitiesMap();
-        List<Field> columns = ReflectionUtil.getTableFields(object.getClass());
-        ContentValues values = new ContentValues(columns.size());
+        if (isUpsert(object.getClass())) {
+            return save(db, object);
+        }
+
+        EntityMetadata metadata = EntityMetadata.of(object.getClass());
+        ContentValues values = new ContentValues(metadata.getColumns().size());
 
         StringBuilder whereClause = new StringBuilder();
         List<String> whereArgs = new ArrayList<>();
 
-        Field id = SchemaGenerator.findAnnotatedField(object.getClass(), Id.class);
+        ColumnMetadata id = metadata.getIdColumn();
+        SugarMapper<Object> mapper = SugarMappers.getMapper(object.getClass());
+        if (mapper != null) {
+            mapper.toContentValues(object, values);
+        }
 
-        for (Field column : columns) {
-            if(column.isAnnotationPresent(Unique.class) || column.isAnnotationPresent(Id.class)) {
+        for (ColumnMetadata column : metadata.getColumns()) {
+            if(column.isUniqueAnnotated() || column.isId()) {
+                if (mapper != null) {
+                    values.remove(column.getColumnName());
+                }
 
                 try {
-                    column.setAccessible(true);
-                    String columnName = NamingHelper.toColumnName(column);
-                    Log.d(LOG_TAG, "Adding unique field: "+columnName);
-                    Object columnValue = column.get(object);
+                    String columnName = column.getColumnName();
+                    Object columnValue = column.getField().get(object);
 
+                    if (whereClause.length() > 0) {
+                        whereClause.append(" AND ");
+                    }
                     whereClause.append(columnName).append(" = ?");
                     whereArgs.add(String.valueOf(columnValue));
                 } catch (IllegalAccessException e) {
                     e.printStackTrace();
                 }
-            } else {
-                if (id == null || !column.getName().equals(id.getName())) {
-                    ReflectionUtil.addFieldValueToColumn(values, column, object, entitiesMap);
+            } else if (column == id) {
+                if (mapper != null) {
+                    values.remove(column.getColumnName());
                 }
+            } else if (mapper == null || column.getKind() == ColumnMetadata.Kind.ENTITY) {
+                ReflectionUtil.addFieldValueToColumn(values, column, object);
             }
         }
 
         String[] whereArgsArray = whereArgs.toArray(new String[whereArgs.size()]);
         // Get SugarRecord based on Unique values
-        Log.d(LOG_TAG, "Where clause: "+whereClause.toString());
-        Log.d(LOG_TAG, "Where args: "+TextUtils.join(" ", whereArgsArray));
-        long rowsEffected = db.update(NamingHelper.toTableName(object.getClass()), values, whereClause.toString(), whereArgsArray);
+        if (ManifestHelper.isDebugEnabled()) {
+            Log.d(LOG_TAG, "Where clause: "+whereClause.toString());
+            Log.d(LOG_TAG, "Where args: "+TextUtils.join(" ", whereArgsArray));
+        }
+        long rowsEffected = db.update(metadata.getTableName(), values, whereClause.toString(), whereArgsArray);
 
         if (rowsEffected == 0) {
             return save(db, object);
         } else {
+            // rows matched by unique values may not be the one cached under the id of the object
+            Caches.tableChanged(object.getClass());
             return rowsEffected;
         }
     }
 
     public static <T> long update(Class<T> tClass, ContentValues values, String whereClause, String... selectionArgs){
         SQLiteDatabase db = getSugarDataBase();
-        return db.update(NamingHelper.toTableName(tClass), values, whereClause, selectionArgs);
+        int updated = db.update(EntityMetadata.of(tClass).getTableName(), values, whereClause, selectionArgs);
+        Caches.tableChanged(tClass);
+        return updated;
     }
 
     public static boolean isSugarEntity(Class<?> objectClass) {
@@ -496,13 +810,16 @@ public class SugarRecord {
     public boolean delete() {
 //        IdType id = getId();
         Class<?> type = getClass();
-        Field id = SchemaGenerator.findAnnotatedField(type, Id.class);
+        EntityMetadata metadata = EntityMetadata.of(type);
+        Object id = metadata.getId(this);
 //        if (id != null && id > 0L) {
         if (id != null) {
             if(ManifestHelper.isDebugEnabled()) {
                 Log.i(LOG_TAG, type.getSimpleName() + " deleted : " + id);
             }
-            return getSugarDataBase().delete(NamingHelper.toTableName(type), id.getName()+"=?", new String[]{id.toString()}) == 1;
+            boolean deleted = getSugarDataBase().delete(metadata.getTableName(), metadata.getIdColumnName() + "=?", new String[]{String.valueOf(id)}) == 1;
+            Caches.evicted(this);
+            return deleted;
         } else {
             if(ManifestHelper.isDebugEnabled()) {
                 Log.i(LOG_TAG, "Cannot delete object: " + type.getSimpleName() + " - object has not been saved");
@@ -517,10 +834,11 @@ public class SugarRecord {
         Class<?> type = object.getClass();
         if (type.isAnnotationPresent(Table.class)) {
             try {
-                Field id = SchemaGenerator.findAnnotatedField(type, Id.class);
-                id.setAccessible(true);
+                EntityMetadata metadata = EntityMetadata.of(type);
+                Object id = metadata.getId(object);
                 if (id != null) {
-                    boolean deleted = getSugarDataBase().delete(NamingHelper.toTableName(type), id.getName() + "=?", new String[]{id.toString()}) == 1;
+                    boolean deleted = getSugarDataBase().delete(metadata.getTableName(), metadata.getIdColumnName() + "=?", new String[]{String.valueOf(id)}) == 1;
+                    Caches.evicted(object);
                     if (ManifestHelper.isDebugEnabled()) {
                         Log.i(LOG_TAG, type.getSimpleName() + " deleted : " + id);
                     }
@@ -570,35 +888,49 @@ public class SugarRecord {
 
     @SuppressWarnings("unchecked")
     void inflate(Cursor cursor) {
-        new EntityInflater()
-                .withCursor(cursor)
-                .withObject(this)
-                .withEntitiesMap(getSugarContext().getEntitiesMap())
-                .inflate();
+        InflationPlan<SugarRecord> plan = (InflationPlan<SugarRecord>) InflationPlan.of(getClass());
+        plan.inflate(cursor, ColumnBinding.of(cursor, getClass()), this);
     }
 
 
     public String getIdField(){
-        Field id = SchemaGenerator.findAnnotatedField(getClass(), Id.class);
-        id.setAccessible(true);
-        if(id != null) {
-            try {
-                return String.valueOf(id.get(this));
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-                Log.d(LOG_TAG, "Error getting id field: "+e.getMessage());
-            }
+        EntityMetadata metadata = EntityMetadata.of(getClass());
+        if(metadata.hasIdField()) {
+            return String.valueOf(metadata.getId(this));
         }
         return null;
     }
 
-    static class CursorIterator<E> implements Iterator<E> {
+    /**
+     * Iterates over the entities of a cursor. The entities referenced by the rows are shared by the
+     * whole iteration, and released with the cursor once the last row is read; the iterated entities
+     * themselves are not kept.
+     */
+    static class CursorIterator<E> implements CloseableIterator<E> {
         Class<E> type;
         Cursor cursor;
+        ColumnBinding binding;
+        InflationPlan<E> plan;
+        boolean readOnly;
+        LoadContext context;
+        CursorLeakTracker.Handle leakHandle;
 
         public CursorIterator(Class<E> type, Cursor cursor) {
+            this(type, cursor, ColumnBinding.of(cursor, type));
+        }
+
+        CursorIterator(Class<E> type, Cursor cursor, ColumnBinding binding) {
+            this(type, cursor, binding, false);
+        }
+
+        CursorIterator(Class<E> type, Cursor cursor, ColumnBinding binding, boolean readOnly) {
             this.type = type;
             this.cursor = cursor;
+            this.binding = binding;
+            this.plan = InflationPlan.of(type);
+            this.readOnly = readOnly;
+            this.context = readOnly ? null : new LoadContext();
+            this.leakHandle = CursorLeakTracker.track(this, cursor);
         }
 
         @Override
@@ -609,7 +941,7 @@ public class SugarRecord {
         @Override
         public E next() {
             E entity = null;
-            if (cursor == null || cursor.isAfterLast()) {
+            if (cursor == null || cursor.isClosed() || cursor.isAfterLast()) {
                 throw new NoSuchElementException();
             }
 
@@ -618,31 +950,60 @@ public class SugarRecord {
             }
 
             try {
-                entity = type.getDeclaredConstructor().newInstance();
-                new EntityInflater()
-                        .withCursor(cursor)
-                        .withObject(entity)
-                        .withEntitiesMap(getSugarContext().getEntitiesMap())
-                        .inflate();
-                ((SugarRecord)entity).onLoad();
+                if (readOnly) {
+                    entity = plan.newInstance();
+                    plan.inflateColumns(cursor, binding, entity);
+                } else {
+                    entity = loadEntity(cursor, plan, binding, null, null, context);
+                    loadReferences(context);
+                    Object id = plan.getMetadata().getId(entity);
+                    if (id instanceof Number) {
+                        context.release(type, ((Number) id).longValue());
+                    }
+                }
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
                 cursor.moveToNext();
                 if (cursor.isAfterLast()) {
-                    cursor.close();
+                    close();
                 }
             }
 
             return entity;
         }
 
+        @Override
+        public void close() {
+            if (cursor != null && !cursor.isClosed()) {
+                cursor.close();
+            }
+            context = null;
+            if (leakHandle != null) {
+                leakHandle.closed();
+                leakHandle = null;
+            }
+        }
+
         @Override
         public void remove() {
             throw new UnsupportedOperationException();
         }
     }
 
+    /**
+     * Receives the entities of {@link #forEach(Class, String, String[], String, RowCallback)} one row
+     * at a time.
+     */
+    public interface RowCallback<T> {
+
+        /**
+         * @param entity the entity of the current row
+         * @return true to go on to the next row, false to stop and close the cursor
+         */
+        boolean onRow(T entity);
+    }
+
     public void onLoad(){}
 
     public static String[] replaceArgs(String[] args){
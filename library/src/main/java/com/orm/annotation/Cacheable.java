@@ -0,0 +1,20 @@
+package com.orm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the rows of the most recently used entities of the class in memory, so that
+ * {@link com.orm.SugarRecord#findById(Class, Long)} and references to them do not query the
+ * database. Each lookup still inflates a new instance. See {@link com.orm.cache.EntityCache}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cacheable {
+    /**
+     * @return the number of rows kept, the least recently used being evicted first
+     */
+    int maxEntries() default 100;
+}
@@ -0,0 +1,15 @@
+package com.orm.annotation;
+
+/**
+ * When the entities of a relation are read.
+ */
+public enum FetchType {
+    /**
+     * Along with the entity that owns the relation.
+     */
+    EAGER,
+    /**
+     * On first access to the relation.
+     */
+    LAZY
+}
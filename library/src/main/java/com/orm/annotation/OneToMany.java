@@ -13,4 +13,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface OneToMany {
     String targetField();
+
+    /**
+     * With {@link FetchType#LAZY}, the list is only read when its elements are first accessed, and
+     * its size is counted without reading them.
+     */
+    FetchType fetch() default FetchType.EAGER;
 }
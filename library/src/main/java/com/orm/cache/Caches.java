@@ -0,0 +1,211 @@
+package com.orm.cache;
+
+import com.orm.SugarContext;
+import com.orm.metadata.EntityMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the {@link EntityCache entity caches} and the {@link QueryCache query cache} up to date
+ * with the writes Sugar makes.
+ *
+ * A thread writing inside a transaction that is committed later can {@link #hold()} its updates
+ * and apply them once the transaction is committed, so that no other thread caches rows that may
+ * still be rolled back. {@link com.orm.helper.SugarTransactionHelper#begin(android.database.sqlite.SQLiteDatabase)}
+ * does so for every transaction it starts. Until then the caches don't follow the writes of the
+ * transaction, so the thread reads {@link #inTransaction() around them}.
+ */
+public final class Caches {
+    private static final ThreadLocal<List<Runnable>> HELD = new ThreadLocal<>();
+
+    //Prevent instantiation..
+    private Caches() { }
+
+    /**
+     * Caches the row of an entity that was just saved, if its class is cacheable, and invalidates
+     * the cached queries of its table.
+     */
+    public static void saved(Object entity) {
+        // the row is read now, as the entity may change again before the write is committed
+        final EntityCache cache = EntityCache.of(entity.getClass());
+        final Long id = (cache != null) ? getId(entity) : null;
+        final Object[] row = (id != null) ? cache.snapshot(entity) : null;
+        final String tableName = EntityMetadata.of(entity.getClass()).getTableName();
+
+        Runnable update = new Runnable() {
+            @Override
+            public void run() {
+                if (row != null) {
+                    cache.put(id, row);
+                }
+                QueryCache.tableChanged(tableName);
+            }
+        };
+        if (!hold(update)) {
+            update.run();
+        }
+    }
+
+    /**
+     * Evicts an entity that was just deleted, or changed in a way the cache can't follow, and
+     * invalidates the cached queries of its table.
+     */
+    public static void evicted(final Object entity) {
+        if (hold(new Runnable() {
+            @Override
+            public void run() {
+                evicted(entity);
+            }
+        })) {
+            return;
+        }
+
+        EntityCache cache = EntityCache.of(entity.getClass());
+        Long id = (cache != null) ? getId(entity) : null;
+        if (id != null) {
+            cache.remove(id);
+        }
+        QueryCache.tableChanged(EntityMetadata.of(entity.getClass()).getTableName());
+    }
+
+    /**
+     * Evicts the entities of a class with the given ids, and invalidates the cached queries of its
+     * table.
+     */
+    public static void evicted(final Class<?> type, final long... ids) {
+        if (hold(new Runnable() {
+            @Override
+            public void run() {
+                evicted(type, ids);
+            }
+        })) {
+            return;
+        }
+
+        EntityCache cache = EntityCache.of(type);
+        if (cache != null) {
+            for (long id : ids) {
+                cache.remove(id);
+            }
+        }
+        QueryCache.tableChanged(EntityMetadata.of(type).getTableName());
+    }
+
+    /**
+     * Clears the caches of a class, after a write that may have changed any row of its table.
+     */
+    public static void tableChanged(final Class<?> type) {
+        if (hold(new Runnable() {
+            @Override
+            public void run() {
+                tableChanged(type);
+            }
+        })) {
+            return;
+        }
+
+        EntityCache cache = EntityCache.of(type);
+        if (cache != null) {
+            cache.clear();
+        }
+        QueryCache.tableChanged(EntityMetadata.of(type).getTableName());
+    }
+
+    /**
+     * Clears every cache, after a write that may have changed any table. The entity caches keep
+     * their counts.
+     */
+    public static void clearAll() {
+        if (hold(new Runnable() {
+            @Override
+            public void run() {
+                clearAll();
+            }
+        })) {
+            return;
+        }
+
+        EntityCache.clearAll();
+        QueryCache.clearAll();
+    }
+
+    /**
+     * Drops every cache along with its counts, for a new database or configuration.
+     */
+    public static void reset() {
+        EntityCache.reset();
+        QueryCache.clearAll();
+    }
+
+    /**
+     * Reads made by a thread in a transaction neither use the caches nor fill them: they see the
+     * writes of the transaction, which the caches don't hold yet and which may still be rolled back.
+     *
+     * @return whether the calling thread is in a transaction on the primary connection
+     */
+    public static boolean inTransaction() {
+        return SugarContext.getSugarContext().getSugarDb().getDB().inTransaction();
+    }
+
+    /**
+     * Holds the cache updates of the calling thread until {@link #release()}.
+     */
+    public static void hold() {
+        HELD.set(new ArrayList<Runnable>());
+    }
+
+    /**
+     * Stops holding the cache updates of the calling thread.
+     *
+     * @return the updates held since {@link #hold()}, to {@link #apply(List)} once the writes they
+     *         follow are committed, or to drop if they are rolled back
+     */
+    public static List<Runnable> release() {
+        List<Runnable> held = HELD.get();
+        HELD.remove();
+        return (held != null) ? held : Collections.<Runnable>emptyList();
+    }
+
+    /**
+     * @return the number of updates the calling thread holds, or -1 if it doesn't hold them
+     */
+    public static int getHeldCount() {
+        List<Runnable> held = HELD.get();
+        return (held != null) ? held.size() : -1;
+    }
+
+    /**
+     * Drops the updates the calling thread held after the first {@code count}, whose writes were
+     * rolled back to a savepoint.
+     *
+     * @param count the {@link #getHeldCount() number of held updates} when the savepoint was set
+     */
+    public static void dropHeld(int count) {
+        List<Runnable> held = HELD.get();
+        if (held != null && count >= 0 && count < held.size()) {
+            held.subList(count, held.size()).clear();
+        }
+    }
+
+    public static void apply(List<Runnable> updates) {
+        for (Runnable update : updates) {
+            update.run();
+        }
+    }
+
+    private static boolean hold(Runnable update) {
+        List<Runnable> held = HELD.get();
+        if (held == null) {
+            return false;
+        }
+        held.add(update);
+        return true;
+    }
+
+    private static Long getId(Object entity) {
+        Object id = EntityMetadata.of(entity.getClass()).getId(entity);
+        return (id instanceof Number) ? ((Number) id).longValue() : null;
+    }
+}
@@ -0,0 +1,230 @@
+package com.orm.cache;
+
+import android.database.Cursor;
+
+import com.orm.annotation.Cacheable;
+import com.orm.inflater.ColumnBinding;
+import com.orm.metadata.EntityMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded, least recently used cache of the rows of one {@link Cacheable} class, keyed by id.
+ *
+ * It is read by {@code findById} and by the loading of entity references, and kept up to date by
+ * every write Sugar makes through {@link Caches}: saved entities are cached as they were saved,
+ * deleted ones are evicted, and writes that can change any row of the table clear the cache of the
+ * class. Raw SQL run through {@code executeQuery} clears every cache.
+ *
+ * The cache keeps the column values of each row rather than entities, and hands them out as a
+ * cursor to inflate, so every read gets a new instance that the caller is free to change.
+ */
+public final class EntityCache {
+    private static final ConcurrentMap<Class<?>, EntityCache> CACHES = new ConcurrentHashMap<>();
+    private static final EntityCache DISABLED = new EntityCache(null, 0);
+
+    private final int maxEntries;
+    private final RowLayout layout;
+    private final Map<Long, Object[]> rows;
+    // incremented by every write, so that rows read before it are not cached after it
+    private long version;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private EntityCache(RowLayout layout, int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.layout = layout;
+        this.rows = new LinkedHashMap<Long, Object[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Object[]> eldest) {
+                if (size() > EntityCache.this.maxEntries) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param type an entity class
+     * @return the cache of the class, or null if it is not {@link Cacheable} or has no numeric id
+     */
+    public static EntityCache of(Class<?> type) {
+        EntityCache cache = CACHES.get(type);
+        if (cache == null) {
+            cache = create(type);
+            EntityCache existing = CACHES.putIfAbsent(type, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return (cache != DISABLED) ? cache : null;
+    }
+
+    private static EntityCache create(Class<?> type) {
+        Cacheable cacheable = type.getAnnotation(Cacheable.class);
+        if (cacheable == null || cacheable.maxEntries() <= 0) {
+            return DISABLED;
+        }
+
+        EntityMetadata metadata = EntityMetadata.of(type);
+        Class<?> idType = metadata.hasIdField() ? metadata.getIdType() : null;
+        if (idType != Long.class && idType != long.class && idType != Integer.class && idType != int.class) {
+            return DISABLED;
+        }
+        return new EntityCache(RowLayout.of(type), cacheable.maxEntries());
+    }
+
+    /**
+     * Clears the rows of every cache, keeping the caches and their counts.
+     */
+    public static void clearAll() {
+        for (EntityCache cache : CACHES.values()) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Drops every cache, along with its rows and counts.
+     */
+    public static void reset() {
+        CACHES.clear();
+    }
+
+    /**
+     * @return a cursor over the cached row, to be inflated and closed by the caller, or null if it
+     *         is not cached
+     */
+    public synchronized Cursor get(long id) {
+        Object[] row = rows.get(id);
+        if (row == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return layout.toCursor(Collections.singletonList(row));
+    }
+
+    /**
+     * Looks up several rows at once.
+     *
+     * @param ids the ids to look up
+     * @param missing receives the ids that are not cached
+     * @return a cursor over the cached rows, to be inflated and closed by the caller
+     */
+    public synchronized Cursor get(long[] ids, List<Long> missing) {
+        List<Object[]> found = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Object[] row = rows.get(id);
+            if (row == null) {
+                missCount++;
+                missing.add(id);
+            } else {
+                hitCount++;
+                found.add(row);
+            }
+        }
+        return layout.toCursor(found);
+    }
+
+    /**
+     * @return the version of the cache, to take before reading rows to {@link #put(Cursor, ColumnBinding, long) put}
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Caches the current row of a cursor over the table, unless it has no id or the cache was
+     * written to since the row was read: a write committed while the query ran may have changed it.
+     *
+     * @param binding the binding of the entity for the cursor
+     * @param version the {@link #getVersion() version} taken before running the query
+     */
+    public void put(Cursor cursor, ColumnBinding binding, long version) {
+        int idIndex = binding.getIdIndex();
+        if (idIndex < 0 || cursor.isNull(idIndex)) {
+            return;
+        }
+
+        long id = cursor.getLong(idIndex);
+        Object[] row = layout.read(cursor, binding);
+        synchronized (this) {
+            if (this.version == version) {
+                rows.put(id, row);
+            }
+        }
+    }
+
+    /**
+     * Reads the row of an entity as it was just written, to {@link #put(long, Object[]) cache} once
+     * the write is committed.
+     */
+    Object[] snapshot(Object entity) {
+        return layout.read(entity);
+    }
+
+    synchronized void put(long id, Object[] row) {
+        version++;
+        rows.put(id, row);
+    }
+
+    public synchronized void remove(long id) {
+        version++;
+        rows.remove(id);
+    }
+
+    public synchronized void clear() {
+        version++;
+        rows.clear();
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the number of lookups that found their row
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that did not find their row
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of rows evicted to stay within {@link #getMaxEntries()}
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EntityCache{" +
+                "size=" + rows.size() +
+                ", maxEntries=" + maxEntries +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+}
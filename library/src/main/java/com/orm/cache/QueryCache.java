@@ -0,0 +1,332 @@
+package com.orm.cache;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.orm.SugarContext;
+import com.orm.SugarDbConfiguration;
+import com.orm.inflater.ColumnBinding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of the results of {@link com.orm.query.Select} queries,
+ * keyed by their SQL and arguments. Enabled with {@link SugarDbConfiguration#setQueryCacheSize(int)}.
+ *
+ * Every result is stamped with the version of its table, which every write Sugar makes to the table
+ * increments, and with the {@code PRAGMA data_version} of the database, which changes when another
+ * connection or process commits a write. A result whose stamp no longer matches is read again. The
+ * data version of the primary connection doesn't count its own commits, which the table versions
+ * are there for. When the data version is read on a connection of its own, it counts them as well,
+ * and the table versions are redundant but kept for the devices without it.
+ * Writes made through the {@link SQLiteDatabase} of Sugar directly are not seen, and neither are
+ * writes of other processes before Android 5.0, whose SQLite has no {@code data_version}. Queries
+ * made inside a transaction are not cached, see {@link Caches#inTransaction()}.
+ *
+ * Lists are cached as the column values of their rows, from which every hit inflates new entities
+ * that the caller is free to change. The entity references and one-to-many lists of those entities
+ * are not part of the cached result: they are loaded on every hit, through the
+ * {@link EntityCache} of their class when it has one, so they are never staler than their tables.
+ */
+public final class QueryCache {
+    /**
+     * Results with more rows than this are not cached.
+     */
+    public static final int MAX_CACHED_ROWS = 1000;
+
+    private static final long NO_DATA_VERSION = -1;
+
+    private static volatile QueryCache instance;
+    private static volatile Boolean dataVersionSupported;
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    private final Map<String, Long> tableVersions = new HashMap<>();
+    private final Object dataVersionLock = new Object();
+    private SQLiteDatabase dataVersionDatabase;
+    private SQLiteStatement dataVersionStatement;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private QueryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > QueryCache.this.maxEntries) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the query cache, or null if it is not enabled
+     */
+    public static QueryCache getInstance() {
+        QueryCache cache = instance;
+        if (cache == null) {
+            SugarDbConfiguration configuration = SugarContext.getDbConfiguration();
+            int maxEntries = (configuration != null) ? configuration.getQueryCacheSize() : 0;
+            if (maxEntries <= 0) {
+                return null;
+            }
+            synchronized (QueryCache.class) {
+                if (instance == null) {
+                    instance = new QueryCache(maxEntries);
+                }
+                cache = instance;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Drops the cache, along with its results and counts.
+     */
+    public static void clearAll() {
+        synchronized (QueryCache.class) {
+            instance = null;
+        }
+    }
+
+    /**
+     * Invalidates the cached results of a table, after a write that may have changed any of its rows.
+     *
+     * @param tableName the name of the table
+     */
+    public static void tableChanged(String tableName) {
+        QueryCache cache = instance;
+        if (cache != null) {
+            cache.incrementVersion(tableName);
+        }
+    }
+
+    /**
+     * Stamps a query about to be run. Take the stamp before running it, so that a write made while
+     * it runs keeps its result from being cached.
+     *
+     * {@code PRAGMA data_version} is a counter of each connection, so it is always read on the
+     * {@link com.orm.SugarDb#getDataVersionDB() same connection}, whichever connection the query runs
+     * on, by one statement compiled on first use.
+     *
+     * @param tableName the table the query reads
+     * @return the current version of the table and the database
+     */
+    public Stamp stamp(String tableName) {
+        long dataVersion = getDataVersion(SugarContext.getSugarContext().getSugarDb().getDataVersionDB());
+        synchronized (this) {
+            return new Stamp(tableName, getVersion(tableName), dataVersion);
+        }
+    }
+
+    /**
+     * @return a cursor over the cached rows, to be inflated and closed by the caller, or null if
+     *         they are not cached or are stale
+     */
+    public Cursor getRows(String key, Stamp stamp) {
+        Object value = get(key, stamp);
+        return (value instanceof Rows) ? ((Rows) value).toCursor() : null;
+    }
+
+    /**
+     * Caches the rows of a cursor over the table of an entity class, read with the given stamp,
+     * unless it has more than {@link #MAX_CACHED_ROWS} rows or its table has been written to
+     * since. The cursor is then moved back before its first row.
+     */
+    public void putRows(String key, Stamp stamp, Class<?> type, Cursor cursor) {
+        if (cursor.getCount() > MAX_CACHED_ROWS) {
+            return;
+        }
+
+        RowLayout layout = RowLayout.of(type);
+        ColumnBinding binding = ColumnBinding.forQuery(cursor, type, ColumnBinding.tableShape(type));
+        List<Object[]> rows = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            rows.add(layout.read(cursor, binding));
+        }
+        cursor.moveToPosition(-1);
+        put(key, stamp, new Rows(layout, rows));
+    }
+
+    /**
+     * @return the cached count, or null if it is not cached or is stale
+     */
+    public Long getCount(String key, Stamp stamp) {
+        Object value = get(key, stamp);
+        return (value instanceof Long) ? (Long) value : null;
+    }
+
+    public void putCount(String key, Stamp stamp, long count) {
+        put(key, stamp, count);
+    }
+
+    private synchronized Object get(String key, Stamp stamp) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.stamp.equals(stamp)) {
+            hitCount++;
+            return entry.value;
+        }
+        if (entry != null) {
+            entries.remove(key);
+        }
+        missCount++;
+        return null;
+    }
+
+    private synchronized void put(String key, Stamp stamp, Object value) {
+        if (stamp.tableVersion == getVersion(stamp.tableName)) {
+            entries.put(key, new Entry(stamp, value));
+        }
+    }
+
+    private synchronized void incrementVersion(String tableName) {
+        tableVersions.put(tableName, getVersion(tableName) + 1);
+    }
+
+    private long getVersion(String tableName) {
+        Long version = tableVersions.get(tableName);
+        return (version != null) ? version : 0;
+    }
+
+    private long getDataVersion(SQLiteDatabase database) {
+        if (Boolean.FALSE.equals(dataVersionSupported)) {
+            return NO_DATA_VERSION;
+        }
+
+        synchronized (dataVersionLock) {
+            if (dataVersionDatabase != database) {
+                // the connection was closed and opened again
+                if (dataVersionStatement != null && dataVersionDatabase.isOpen()) {
+                    dataVersionStatement.close();
+                }
+                dataVersionStatement = database.compileStatement("PRAGMA data_version");
+                dataVersionDatabase = database;
+            }
+
+            try {
+                long dataVersion = dataVersionStatement.simpleQueryForLong();
+                dataVersionSupported = Boolean.TRUE;
+                return dataVersion;
+            } catch (SQLiteDoneException e) {
+                // unknown pragmas return no row, data_version was added in SQLite 3.8.4
+                dataVersionSupported = Boolean.FALSE;
+                return NO_DATA_VERSION;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the number of lookups that found a current result
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that found no result, or a stale one
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of results evicted to stay within {@link #getMaxEntries()}
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryCache{" +
+                "size=" + entries.size() +
+                ", maxEntries=" + maxEntries +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+
+    /**
+     * The versions of a table and of the database a result was read at.
+     */
+    public static final class Stamp {
+        final String tableName;
+        final long tableVersion;
+        final long dataVersion;
+
+        Stamp(String tableName, long tableVersion, long dataVersion) {
+            this.tableName = tableName;
+            this.tableVersion = tableVersion;
+            this.dataVersion = dataVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Stamp)) {
+                return false;
+            }
+            Stamp stamp = (Stamp) o;
+            return tableVersion == stamp.tableVersion
+                    && dataVersion == stamp.dataVersion
+                    && tableName.equals(stamp.tableName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = tableName.hashCode();
+            result = 31 * result + (int) (tableVersion ^ (tableVersion >>> 32));
+            result = 31 * result + (int) (dataVersion ^ (dataVersion >>> 32));
+            return result;
+        }
+    }
+
+    private static final class Rows {
+        final RowLayout layout;
+        final List<Object[]> rows;
+
+        Rows(RowLayout layout, List<Object[]> rows) {
+            this.layout = layout;
+            this.rows = rows;
+        }
+
+        Cursor toCursor() {
+            return layout.toCursor(rows);
+        }
+    }
+
+    private static final class Entry {
+        final Stamp stamp;
+        final Object value;
+
+        Entry(Stamp stamp, Object value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
+}
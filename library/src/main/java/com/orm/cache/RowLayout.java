@@ -0,0 +1,146 @@
+package com.orm.cache;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.orm.inflater.ColumnBinding;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+import com.orm.util.ReflectionUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The persisted columns of an entity class, to read the values of its rows from a cursor or an
+ * entity, and to hand them out again as a new cursor.
+ *
+ * The caches keep rows in this form rather than entities, so that every read inflates new
+ * instances that the caller is free to change.
+ */
+final class RowLayout {
+    private static final ConcurrentMap<Class<?>, RowLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+    // the persisted columns, in the order of the metadata, then the id if it isn't one of them
+    private final ColumnMetadata[] columns;
+    private final String[] columnNames;
+    // the position of each column in the metadata, -1 for an id that isn't one of them
+    private final int[] positions;
+
+    private RowLayout(EntityMetadata metadata) {
+        List<ColumnMetadata> persisted = new ArrayList<>();
+        boolean hasId = false;
+        for (ColumnMetadata column : metadata.getColumns()) {
+            if (column.isPersisted()) {
+                persisted.add(column);
+                hasId |= column.getColumnName().equalsIgnoreCase(metadata.getIdColumnName());
+            }
+        }
+
+        int size = persisted.size() + (hasId ? 0 : 1);
+        this.columns = new ColumnMetadata[size];
+        this.columnNames = new String[size];
+        this.positions = new int[size];
+        for (int i = 0; i < persisted.size(); i++) {
+            columns[i] = persisted.get(i);
+            columnNames[i] = columns[i].getColumnName();
+            positions[i] = metadata.getColumns().indexOf(columns[i]);
+        }
+        if (!hasId) {
+            // null when the class has no id field, its rows still have the id column
+            columns[size - 1] = metadata.getIdColumn();
+            columnNames[size - 1] = metadata.getIdColumnName();
+            positions[size - 1] = -1;
+        }
+    }
+
+    static RowLayout of(Class<?> type) {
+        RowLayout layout = LAYOUTS.get(type);
+        if (layout == null) {
+            layout = new RowLayout(EntityMetadata.of(type));
+            RowLayout existing = LAYOUTS.putIfAbsent(type, layout);
+            if (existing != null) {
+                layout = existing;
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Reads the current row of a cursor over the table of the class.
+     *
+     * @param binding the binding of the class for the cursor
+     */
+    Object[] read(Cursor cursor, ColumnBinding binding) {
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            int index = (positions[i] >= 0) ? binding.getColumnIndex(positions[i]) : binding.getIdIndex();
+            row[i] = (index >= 0) ? readValue(cursor, index, columns[i]) : null;
+        }
+        return row;
+    }
+
+    /**
+     * Reads the row of an entity the way it is written, without saving its relations.
+     */
+    Object[] read(Object entity) {
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            row[i] = (columns[i] != null) ? ReflectionUtil.getColumnValue(columns[i], entity) : null;
+        }
+        return row;
+    }
+
+    /**
+     * @return a cursor over copies of the rows, to be inflated and closed by the caller
+     */
+    Cursor toCursor(List<Object[]> rows) {
+        MatrixCursor cursor = new MatrixCursor(columnNames, rows.size());
+        for (Object[] row : rows) {
+            cursor.addRow(copy(row));
+        }
+        return cursor;
+    }
+
+    private static Object readValue(Cursor cursor, int index, ColumnMetadata column) {
+        if (cursor.isNull(index)) {
+            return null;
+        }
+        if (column == null || column.getKind() == ColumnMetadata.Kind.ENTITY) {
+            return cursor.getLong(index);
+        }
+
+        switch (column.getValueType()) {
+            case LONG:
+            case INT:
+            case SHORT:
+            case BOOLEAN:
+            case TIMESTAMP:
+            case DATE:
+            case CALENDAR:
+                return cursor.getLong(index);
+            case DOUBLE:
+            case FLOAT:
+                return cursor.getDouble(index);
+            case BYTES:
+                return cursor.getBlob(index);
+            default:
+                return cursor.getString(index);
+        }
+    }
+
+    /**
+     * Copies the arrays of a row, the only values an inflated entity could change.
+     */
+    private static Object[] copy(Object[] row) {
+        Object[] copy = row.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof byte[]) {
+                copy[i] = ((byte[]) copy[i]).clone();
+            }
+        }
+        return copy;
+    }
+}
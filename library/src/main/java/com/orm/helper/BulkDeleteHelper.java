@@ -0,0 +1,145 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.orm.SugarRecord;
+import com.orm.cache.Caches;
+import com.orm.metadata.EntityMetadata;
+import com.orm.util.QueryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes many entities in one transaction, with one {@code DELETE ... WHERE id IN (...)} per
+ * table and chunk of ids instead of one statement per entity.
+ */
+public final class BulkDeleteHelper {
+    private static final String LOG_TAG = "Sugar";
+
+    //Prevent instantiation..
+    private BulkDeleteHelper() { }
+
+    /**
+     * Deletes the entities in one transaction. Entities that are not persisted, or have no id yet,
+     * are skipped.
+     *
+     * @param database the database to delete from
+     * @param objects the entities, of any mix of classes
+     * @return the number of deleted rows
+     * @throws android.database.SQLException if a delete fails, in which case nothing is deleted
+     */
+    public static int delete(SQLiteDatabase database, Collection<?> objects) {
+        Map<EntityMetadata, List<Object>> idsByTable = new LinkedHashMap<>();
+
+        for (Object object : objects) {
+            if (object == null || !SugarRecord.isSugarEntity(object.getClass())) {
+                continue;
+            }
+
+            EntityMetadata metadata = EntityMetadata.of(object.getClass());
+            Object id = metadata.getId(object);
+            if (id == null) {
+                if (ManifestHelper.isDebugEnabled()) {
+                    Log.i(LOG_TAG, "Cannot delete object: " + object.getClass().getSimpleName() + " - object has not been saved");
+                }
+                continue;
+            }
+
+            List<Object> ids = idsByTable.get(metadata);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByTable.put(metadata, ids);
+            }
+            ids.add(id);
+        }
+
+        int deletedRows = 0;
+        SugarTransactionHelper.Transaction transaction = SugarTransactionHelper.begin(database);
+        try {
+            for (Map.Entry<EntityMetadata, List<Object>> entry : idsByTable.entrySet()) {
+                EntityMetadata metadata = entry.getKey();
+                deletedRows += deleteIds(database, metadata.getTableName(), metadata.getIdColumnName(), entry.getValue());
+            }
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+
+        for (Object object : objects) {
+            if (object != null) {
+                Caches.evicted(object);
+            }
+        }
+
+        return deletedRows;
+    }
+
+    /**
+     * Deletes the rows of a table by id in one transaction.
+     *
+     * @param database the database to delete from
+     * @param metadata the metadata of the entity class
+     * @param ids the ids of the rows
+     * @return the number of deleted rows
+     * @throws android.database.SQLException if a delete fails, in which case nothing is deleted
+     */
+    public static int deleteByIds(SQLiteDatabase database, EntityMetadata metadata, long... ids) {
+        List<Object> values = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            values.add(id);
+        }
+
+        int deletedRows;
+        SugarTransactionHelper.Transaction transaction = SugarTransactionHelper.begin(database);
+        try {
+            deletedRows = deleteIds(database, metadata.getTableName(), metadata.getIdColumnName(), values);
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+
+        Caches.evicted(metadata.getType(), ids);
+
+        return deletedRows;
+    }
+
+    private static int deleteIds(SQLiteDatabase database, String tableName, String idColumnName, List<Object> ids) {
+        int deletedRows = 0;
+        String fullChunkClause = null;
+
+        for (int from = 0; from < ids.size(); from += QueryBuilder.MAX_VARIABLES) {
+            int size = Math.min(QueryBuilder.MAX_VARIABLES, ids.size() - from);
+            String[] args = new String[size];
+            for (int i = 0; i < size; i++) {
+                args[i] = String.valueOf(ids.get(from + i));
+            }
+
+            String whereClause;
+            if (size == QueryBuilder.MAX_VARIABLES) {
+                if (fullChunkClause == null) {
+                    fullChunkClause = inClause(idColumnName, QueryBuilder.MAX_VARIABLES);
+                }
+                whereClause = fullChunkClause;
+            } else {
+                whereClause = inClause(idColumnName, size);
+            }
+
+            deletedRows += database.delete(tableName, whereClause, args);
+        }
+
+        if (ManifestHelper.isDebugEnabled()) {
+            Log.i(LOG_TAG, deletedRows + " rows deleted from " + tableName);
+        }
+
+        return deletedRows;
+    }
+
+    private static String inClause(String columnName, int size) {
+        return columnName + " IN (" + QueryBuilder.generatePlaceholders(size) + ")";
+    }
+}
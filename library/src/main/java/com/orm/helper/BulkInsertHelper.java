@@ -0,0 +1,310 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.orm.cache.Caches;
+import com.orm.metadata.EntityMetadata;
+import com.orm.util.EntityIdMap;
+import com.orm.util.QueryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.orm.SugarContext.getSugarContext;
+
+/**
+ * Inserts many entities in one transaction, compiling the INSERT statement once per entity class
+ * and binding the values of each entity to it directly.
+ */
+public final class BulkInsertHelper {
+    private static final String LOG_TAG = "Sugar";
+
+    /**
+     * SQLITE_MAX_COMPOUND_SELECT, the number of rows of a multi-row VALUES clause.
+     */
+    private static final int MAX_ROWS = 500;
+
+    private static final String[] CONFLICT_VALUES = {
+            "", " OR ROLLBACK", " OR ABORT", " OR FAIL", " OR IGNORE", " OR REPLACE"
+    };
+
+    //Prevent instantiation..
+    private BulkInsertHelper() { }
+
+    /**
+     * Inserts the entities in one transaction, one row per statement execution.
+     *
+     * @see #insert(SQLiteDatabase, Collection, int, boolean)
+     */
+    public static long[] insert(SQLiteDatabase database, Collection<?> objects, int conflictAlgorithm) {
+        return insert(database, objects, conflictAlgorithm, false);
+    }
+
+    /**
+     * Inserts the entities in one transaction. The generated ids are set on the entities once the
+     * transaction is successful.
+     *
+     * With {@code multiRow}, the entities of each class are inserted in batches of as many rows as
+     * the bound variable limit allows, entities with an id first and then the ones without, whose
+     * ids are the consecutive row ids ending at the last one of each batch. A batch into which
+     * anything else was inserted, such as by a trigger, is rolled back and inserted again one row
+     * per execution. Classes without a numeric id or with entity references, which binding can save
+     * into the same table, and devices whose SQLite does not support multi-row VALUES, fall back to
+     * one row per execution.
+     *
+     * @param database the database to insert into
+     * @param objects the entities, of any mix of classes
+     * @param conflictAlgorithm one of the {@code SQLiteDatabase.CONFLICT_*} constants other than
+     *                          {@code CONFLICT_IGNORE}, for which the ids of multi-row batches can
+     *                          not be known
+     * @param multiRow whether to insert many rows per statement
+     * @return the row id of each entity, in the iteration order of {@code objects}
+     * @throws android.database.SQLException if an insert fails, in which case nothing is inserted
+     */
+    public static long[] insert(SQLiteDatabase database, Collection<?> objects, int conflictAlgorithm, boolean multiRow) {
+        long[] ids = new long[objects.size()];
+        Map<Class<?>, InsertStatement> statements = new HashMap<>();
+
+        SugarTransactionHelper.Transaction transaction = SugarTransactionHelper.begin(database);
+        try {
+            if (multiRow && supportsMultiRowInsert() && conflictAlgorithm != SQLiteDatabase.CONFLICT_IGNORE) {
+                insertMultiRow(database, objects, conflictAlgorithm, statements, ids);
+            } else {
+                int i = 0;
+                for (Object object : objects) {
+                    ids[i++] = getStatement(database, object.getClass(), conflictAlgorithm, statements).insert(object);
+                }
+            }
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+            for (InsertStatement statement : statements.values()) {
+                statement.close();
+            }
+        }
+
+        setGeneratedIds(objects, ids);
+
+        if (ManifestHelper.isDebugEnabled()) {
+            Log.i(LOG_TAG, ids.length + " objects saved in transaction");
+        }
+
+        return ids;
+    }
+
+    /**
+     * @return true if the SQLite of the device supports multi-row VALUES, added in 3.7.11
+     */
+    public static boolean supportsMultiRowInsert() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    private static InsertStatement getStatement(SQLiteDatabase database, Class<?> type, int conflictAlgorithm,
+                                                Map<Class<?>, InsertStatement> statements) {
+        InsertStatement statement = statements.get(type);
+        if (statement == null) {
+            statement = new InsertStatement(database, type, conflictAlgorithm);
+            statements.put(type, statement);
+        }
+        return statement;
+    }
+
+    private static void insertMultiRow(SQLiteDatabase database, Collection<?> objects, int conflictAlgorithm,
+                                       Map<Class<?>, InsertStatement> statements, long[] ids) {
+        Map<Class<?>, List<Integer>> positionsByClass = new LinkedHashMap<>();
+        List<Object> list = new ArrayList<>(objects);
+        for (int i = 0; i < list.size(); i++) {
+            Class<?> type = list.get(i).getClass();
+            List<Integer> positions = positionsByClass.get(type);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                positionsByClass.put(type, positions);
+            }
+            positions.add(i);
+        }
+
+        for (Map.Entry<Class<?>, List<Integer>> entry : positionsByClass.entrySet()) {
+            EntityMetadata metadata = EntityMetadata.of(entry.getKey());
+            InsertStatement statement = getStatement(database, entry.getKey(), conflictAlgorithm, statements);
+            Class<?> idType = metadata.hasIdField() ? metadata.getIdType() : null;
+
+            boolean numericId = idType == Long.class || idType == long.class
+                    || idType == Integer.class || idType == int.class;
+
+            // row ids are only predictable when nothing else is inserted into the table while binding,
+            // and a reference saves what it references in turn, which can lead back to this class
+            if (!numericId || statement.hasReferences()) {
+                for (int position : entry.getValue()) {
+                    ids[position] = statement.insert(list.get(position));
+                }
+                continue;
+            }
+
+            List<Integer> withId = new ArrayList<>();
+            List<Integer> withoutId = new ArrayList<>();
+            for (int position : entry.getValue()) {
+                if (metadata.getId(list.get(position)) != null) {
+                    withId.add(position);
+                } else {
+                    withoutId.add(position);
+                }
+            }
+
+            insertBatches(database, statement, metadata, list, withId, ids, true);
+            insertBatches(database, statement, metadata, list, withoutId, ids, false);
+        }
+    }
+
+    private static void insertBatches(SQLiteDatabase database, InsertStatement statement, EntityMetadata metadata,
+                                      List<Object> list, List<Integer> positions, long[] ids, boolean hasIds) {
+        int batchSize = statement.getBatchSize();
+
+        for (int from = 0; from < positions.size(); from += batchSize) {
+            List<Integer> batch = positions.subList(from, Math.min(from + batchSize, positions.size()));
+
+            // total_changes() also counts the rows of triggers, which changes() leaves out
+            SugarTransactionHelper.Transaction savepoint = SugarTransactionHelper.begin(database);
+            long lastId;
+            boolean consecutive;
+            try {
+                long changes = statement.totalChanges();
+                lastId = statement.insertRows(list, batch);
+                consecutive = statement.totalChanges() - changes == batch.size();
+                if (consecutive) {
+                    savepoint.setSuccessful();
+                }
+            } finally {
+                savepoint.end();
+            }
+
+            if (!consecutive) {
+                for (int position : batch) {
+                    ids[position] = statement.insert(list.get(position));
+                }
+                continue;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                int position = batch.get(i);
+                ids[position] = hasIds
+                        ? ((Number) metadata.getId(list.get(position))).longValue()
+                        : lastId - (batch.size() - 1 - i);
+            }
+        }
+    }
+
+    private static void setGeneratedIds(Collection<?> objects, long[] ids) {
+        EntityIdMap entityIds = getSugarContext().getEntityIds();
+        int i = 0;
+        for (Object object : objects) {
+            EntityMetadata metadata = EntityMetadata.of(object.getClass());
+            long id = ids[i++];
+            if (metadata.hasIdField()) {
+                metadata.setGeneratedId(object, id);
+            } else if (metadata.isTableAnnotated()) {
+                entityIds.put(object, id);
+            }
+            Caches.saved(object);
+        }
+    }
+
+    /**
+     * The compiled INSERTs of one entity class, by number of rows.
+     */
+    private static final class InsertStatement {
+        private final EntityBinder binder;
+        private final String prefix;
+        private final String rowValues;
+        private final SQLiteDatabase database;
+        private final Map<Integer, SQLiteStatement> statements = new HashMap<>();
+        private SQLiteStatement totalChanges;
+
+        InsertStatement(SQLiteDatabase database, Class<?> type, int conflictAlgorithm) {
+            this.database = database;
+            this.binder = EntityBinder.of(type);
+            this.prefix = "INSERT" + CONFLICT_VALUES[conflictAlgorithm] + " INTO "
+                    + binder.getMetadata().getTableName() + " (" + TextUtils.join(", ", binder.getColumnNames()) + ") VALUES ";
+            this.rowValues = placeholders(binder.getColumnNames().size());
+        }
+
+        boolean hasReferences() {
+            return binder.hasReferences();
+        }
+
+        /**
+         * @return the number of rows changed since the connection was opened
+         */
+        long totalChanges() {
+            if (totalChanges == null) {
+                totalChanges = database.compileStatement("SELECT total_changes()");
+            }
+            return totalChanges.simpleQueryForLong();
+        }
+
+        /**
+         * @return the number of rows a multi-row INSERT of this class can have
+         */
+        int getBatchSize() {
+            return Math.max(1, Math.min(QueryBuilder.MAX_VARIABLES / Math.max(1, binder.getColumnNames().size()), MAX_ROWS));
+        }
+
+        long insert(Object object) {
+            SQLiteStatement statement = getStatement(1);
+            statement.clearBindings();
+            binder.bind(statement, 1, object);
+            return statement.executeInsert();
+        }
+
+        /**
+         * @return the row id of the last row
+         */
+        long insertRows(List<Object> objects, List<Integer> positions) {
+            SQLiteStatement statement = getStatement(positions.size());
+            statement.clearBindings();
+
+            int index = 1;
+            for (int position : positions) {
+                index = binder.bind(statement, index, objects.get(position));
+            }
+            return statement.executeInsert();
+        }
+
+        private SQLiteStatement getStatement(int rows) {
+            SQLiteStatement statement = statements.get(rows);
+            if (statement == null) {
+                StringBuilder sql = new StringBuilder(prefix.length() + rows * (rowValues.length() + 2));
+                sql.append(prefix);
+                for (int i = 0; i < rows; i++) {
+                    sql.append(i == 0 ? "" : ", ").append(rowValues);
+                }
+                statement = database.compileStatement(sql.toString());
+                statements.put(rows, statement);
+            }
+            return statement;
+        }
+
+        void close() {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+            if (totalChanges != null) {
+                totalChanges.close();
+            }
+        }
+    }
+
+    /**
+     * @return the parameters of one row, {@code (?,?,...)}
+     */
+    static String placeholders(int count) {
+        return "(" + QueryBuilder.generatePlaceholders(count) + ")";
+    }
+}
@@ -0,0 +1,114 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteStatement;
+
+import com.orm.mapper.SugarMapper;
+import com.orm.mapper.SugarMappers;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+import com.orm.util.ReflectionUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Binds the columns of an entity to the parameters of a compiled statement, in a fixed order.
+ * Columns read by the generated mapper come first, followed by the ones bound through reflection.
+ * Built once per entity class.
+ */
+public final class EntityBinder {
+    private static final ConcurrentMap<Class<?>, EntityBinder> BINDERS = new ConcurrentHashMap<>();
+
+    private final EntityMetadata metadata;
+    private final SugarMapper<Object> mapper;
+    private final ColumnMetadata[] columns;
+    private final List<String> columnNames;
+    private final boolean hasReferences;
+
+    private EntityBinder(Class<?> type) {
+        this.metadata = EntityMetadata.of(type);
+        this.mapper = SugarMappers.getMapper(type);
+
+        List<String> columnNames = new ArrayList<>();
+        List<ColumnMetadata> boundColumns = new ArrayList<>();
+        boolean hasReferences = false;
+        if (mapper != null) {
+            Collections.addAll(columnNames, mapper.getColumnNames());
+        }
+        for (ColumnMetadata column : metadata.getColumns()) {
+            if (column.getKind() == ColumnMetadata.Kind.ENTITY
+                    || (column.getKind() == ColumnMetadata.Kind.PLAIN && mapper == null)) {
+                columnNames.add(column.getColumnName());
+                boundColumns.add(column);
+            }
+            if (column.getKind() == ColumnMetadata.Kind.ENTITY) {
+                hasReferences = true;
+            }
+        }
+
+        this.columns = boundColumns.toArray(new ColumnMetadata[boundColumns.size()]);
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.hasReferences = hasReferences;
+    }
+
+    /**
+     * @param type the entity class
+     * @return the binder of the class, built on first use
+     */
+    public static EntityBinder of(Class<?> type) {
+        EntityBinder binder = BINDERS.get(type);
+        if (binder == null) {
+            binder = new EntityBinder(type);
+            EntityBinder existing = BINDERS.putIfAbsent(type, binder);
+            if (existing != null) {
+                binder = existing;
+            }
+        }
+        return binder;
+    }
+
+    public static void clearCache() {
+        BINDERS.clear();
+    }
+
+    public EntityMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the bound columns, in the order of their parameters
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return true if the entity references others, which binding it can save, along with what
+     *         they reference in turn, possibly into its own table
+     */
+    public boolean hasReferences() {
+        return hasReferences;
+    }
+
+    /**
+     * Binds every column of the entity.
+     *
+     * @param statement the statement to bind to
+     * @param startIndex the 1-based index of the first parameter
+     * @param object the entity
+     * @return the index of the parameter following the last bound one
+     */
+    public int bind(SQLiteStatement statement, int startIndex, Object object) {
+        int index = startIndex;
+        if (mapper != null) {
+            index = mapper.bind(statement, index, object);
+        }
+        for (ColumnMetadata column : columns) {
+            ReflectionUtil.bindFieldValue(statement, index++, column, object);
+        }
+        return index;
+    }
+}
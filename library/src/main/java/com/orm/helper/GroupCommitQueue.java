@@ -0,0 +1,286 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.orm.SugarDb;
+import com.orm.cache.Caches;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single writer thread that commits the writes submitted within a short window in one
+ * transaction, so that they share one journal sync instead of paying one each.
+ *
+ * A window opens with the first write submitted after a commit and closes after
+ * {@code windowMillis}, or as soon as it holds {@code maxWrites} writes. Writes run in the order they
+ * were submitted, and a write of an entity that is already waiting to be written the same way, such
+ * as a second save of the same instance, joins that write: the entity is written once, with the
+ * values it has when the window is committed, and every caller gets the outcome. The tickets of a
+ * window are completed after its commit; a write that fails only fails its own tickets, unless the
+ * commit itself fails.
+ *
+ * Each write runs in a savepoint of the window, which a write that fails rolls back, and the cache
+ * updates of the writes are applied only once the window is committed.
+ */
+public final class GroupCommitQueue {
+    private static final String LOG_TAG = "Sugar";
+
+    public static final int DEFAULT_MAX_WRITES = 500;
+
+    private final SugarDb sugarDb;
+    private final long windowNanos;
+    private final int maxWrites;
+    private final Thread writer;
+
+    private final Object lock = new Object();
+    private final List<Write<?>> pending = new ArrayList<>();
+    private final Map<Object, Write<?>> pendingByEntity = new IdentityHashMap<>();
+    private long windowStart;
+    private boolean shutdown;
+
+    /**
+     * @param sugarDb the database to write to
+     * @param windowMillis how long a window stays open after its first write
+     * @param maxWrites how many writes close a window early
+     */
+    public GroupCommitQueue(SugarDb sugarDb, long windowMillis, int maxWrites) {
+        this.sugarDb = sugarDb;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxWrites = maxWrites;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "Sugar-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a write for the current window.
+     *
+     * @param entity the entity written, whose later writes of the same kind join this one, or null
+     *               for a write that never joins another
+     * @param kind the kind of write, such as "save" or "delete"
+     * @param write the write, run on the writer thread inside the transaction of the window
+     * @param ticket completed with the outcome of the write once the window is committed, or failed
+     *               with a {@link RejectedExecutionException} if the queue is shut down
+     */
+    public <R> void submit(Object entity, String kind, Callable<R> write, Ticket<R> ticket) {
+        synchronized (lock) {
+            if (!shutdown) {
+                enqueue(entity, kind, write, ticket);
+                return;
+            }
+        }
+        ticket.fail(new RejectedExecutionException("The group commit queue is shut down"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> void enqueue(Object entity, String kind, Callable<R> write, Ticket<R> ticket) {
+        if (entity != null) {
+            Write<?> same = pendingByEntity.get(entity);
+            if (same != null && same.kind.equals(kind)) {
+                ((Write<R>) same).tickets.add(ticket);
+                return;
+            }
+        }
+
+        Write<R> added = new Write<>(kind, write);
+        added.tickets.add(ticket);
+        if (pending.isEmpty()) {
+            windowStart = System.nanoTime();
+        }
+        pending.add(added);
+        if (entity != null) {
+            // a write of another kind, such as a delete after a save, ends the joining of the earlier one
+            pendingByEntity.put(entity, added);
+        }
+        lock.notifyAll();
+    }
+
+    /**
+     * Stops taking writes, commits the pending ones and waits for the writer thread to finish.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+
+        boolean interrupted = false;
+        while (writer.isAlive() && writer != Thread.currentThread()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<Write<?>> window;
+
+            synchronized (lock) {
+                try {
+                    while (pending.isEmpty() && !shutdown) {
+                        lock.wait();
+                    }
+                    while (!shutdown && pending.size() < maxWrites) {
+                        long remaining = windowNanos - (System.nanoTime() - windowStart);
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    // commit what is pending and carry on
+                }
+
+                if (pending.isEmpty()) {
+                    if (shutdown) {
+                        return;
+                    }
+                    continue;
+                }
+                window = new ArrayList<>(pending);
+                pending.clear();
+                pendingByEntity.clear();
+            }
+
+            commit(window);
+        }
+    }
+
+    private void commit(List<Write<?>> window) {
+        RuntimeException commitError = null;
+
+        try {
+            SQLiteDatabase database = sugarDb.getDB();
+            database.beginTransaction();
+            try {
+                for (Write<?> write : window) {
+                    write.run(database);
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Group commit of " + window.size() + " writes failed", e);
+            commitError = e;
+        }
+
+        if (commitError == null && ManifestHelper.isDebugEnabled()) {
+            Log.d(LOG_TAG, "Committed " + window.size() + " writes in one transaction");
+        }
+
+        for (Write<?> write : window) {
+            write.complete(commitError);
+        }
+    }
+
+    private static final class Write<R> {
+        private final String kind;
+        private final Callable<R> write;
+        private final List<Ticket<R>> tickets = new ArrayList<>();
+        private R result;
+        private Throwable error;
+        private List<Runnable> cacheUpdates;
+        private boolean ran;
+
+        private Write(String kind, Callable<R> write) {
+            this.kind = kind;
+            this.write = write;
+        }
+
+        /**
+         * Runs the write in a savepoint, so that a write that fails rolls back what it did, and
+         * holds its cache updates until the window is committed.
+         */
+        private void run(SQLiteDatabase database) {
+            boolean wanted = false;
+            for (Ticket<R> ticket : tickets) {
+                wanted |= !ticket.isCancelled();
+            }
+            if (!wanted) {
+                return;
+            }
+
+            SugarTransactionHelper.Transaction savepoint = SugarTransactionHelper.begin(database);
+            Caches.hold();
+            try {
+                result = write.call();
+                savepoint.setSuccessful();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                cacheUpdates = Caches.release();
+                savepoint.end();
+            }
+            ran = true;
+        }
+
+        private void complete(RuntimeException commitError) {
+            if (!ran && commitError == null) {
+                return;
+            }
+            if (ran && error == null && commitError == null) {
+                Caches.apply(cacheUpdates);
+            }
+
+            for (Ticket<R> ticket : tickets) {
+                if (error != null) {
+                    ticket.fail(error);
+                } else if (commitError != null) {
+                    ticket.fail(commitError);
+                } else {
+                    ticket.complete(result);
+                }
+            }
+        }
+    }
+
+    /**
+     * The Future of a write, completed by the writer thread once the window of the write is
+     * committed. Cancelling it before then drops the write, unless another ticket is waiting for it.
+     */
+    public static class Ticket<R> extends FutureTask<R> {
+
+        public Ticket() {
+            super(new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    throw new IllegalStateException("A ticket is completed by its GroupCommitQueue");
+                }
+            });
+        }
+
+        private void complete(R result) {
+            set(result);
+        }
+
+        private void fail(Throwable e) {
+            setException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.orm.helper;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.util.Log;
+
+import com.orm.SugarDbConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Applies the {@code PRAGMA} settings of a {@link SugarDbConfiguration} to a connection, and reads
+ * each one back to check that SQLite took it: older SQLite versions ignore the pragmas they don't
+ * know, and some values are capped.
+ *
+ * Sugar applies them to every connection it reads or writes with: the primary connection, which
+ * Android keeps to a single one since write-ahead logging is enabled with {@code journal_mode}, and
+ * the connections of the read pool.
+ */
+public final class PragmaHelper {
+    private static final String LOG_TAG = "Sugar";
+
+    //Prevent instantiation..
+    private PragmaHelper() { }
+
+    /**
+     * @param database the connection to configure, outside of any transaction
+     * @param configuration the settings, of which the unset ones are left as they are
+     * @param readOnly true for a connection that is only read with, which only gets the settings of
+     *                 reads
+     * @return the names of the pragmas that did not take effect
+     */
+    public static List<String> apply(SQLiteDatabase database, SugarDbConfiguration configuration, boolean readOnly) {
+        List<String> failed = new ArrayList<>();
+
+        if (!readOnly) {
+            String mode = null;
+            if (configuration.isWriteAheadLogging()) {
+                // not enableWriteAheadLogging(), with which Android opens connections of its own
+                // for reads that these settings never reach
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                    mode = "wal";
+                }
+            } else if (configuration.getJournalMode() != null) {
+                mode = configuration.getJournalMode().name().toLowerCase(Locale.US);
+            }
+            if (mode != null) {
+                set(database, "journal_mode", mode, mode, failed);
+            }
+            if (configuration.getSynchronous() != null) {
+                int level = configuration.getSynchronous().ordinal();
+                set(database, "synchronous", String.valueOf(level), String.valueOf(level), failed);
+            }
+            if (configuration.getWalAutoCheckpoint() != null) {
+                String pages = String.valueOf(configuration.getWalAutoCheckpoint());
+                set(database, "wal_autocheckpoint", pages, pages, failed);
+            }
+            if (configuration.getForeignKeys() != null) {
+                boolean enabled = configuration.getForeignKeys();
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    database.setForeignKeyConstraintsEnabled(enabled);
+                    check(database, "foreign_keys", enabled ? "1" : "0", failed);
+                } else {
+                    set(database, "foreign_keys", enabled ? "1" : "0", enabled ? "1" : "0", failed);
+                }
+            }
+        }
+
+        if (configuration.getCacheSize() != null) {
+            String size = String.valueOf(configuration.getCacheSize());
+            set(database, "cache_size", size, size, failed);
+        }
+        if (configuration.getMmapSize() != null) {
+            String size = String.valueOf(configuration.getMmapSize());
+            set(database, "mmap_size", size, size, failed);
+        }
+        if (configuration.getTempStore() != null) {
+            int store = configuration.getTempStore().ordinal();
+            set(database, "temp_store", String.valueOf(store), String.valueOf(store), failed);
+        }
+        if (configuration.getBusyTimeout() != null) {
+            String timeout = String.valueOf(configuration.getBusyTimeout());
+            set(database, "busy_timeout", timeout, timeout, failed);
+        }
+
+        return failed;
+    }
+
+    private static void set(SQLiteDatabase database, String name, String value, String expected, List<String> failed) {
+        // pragmas that return their new value can't go through execSQL
+        query(database, "PRAGMA " + name + " = " + value);
+        check(database, name, expected, failed);
+    }
+
+    private static void check(SQLiteDatabase database, String name, String expected, List<String> failed) {
+        String actual = query(database, "PRAGMA " + name);
+        if (!expected.equalsIgnoreCase(actual)) {
+            Log.w(LOG_TAG, "PRAGMA " + name + " is " + actual + " instead of " + expected);
+            failed.add(name);
+        } else if (ManifestHelper.isDebugEnabled()) {
+            Log.d(LOG_TAG, "PRAGMA " + name + " = " + actual);
+        }
+    }
+
+    private static String query(SQLiteDatabase database, String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
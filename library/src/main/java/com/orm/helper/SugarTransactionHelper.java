@@ -3,6 +3,10 @@ package com.orm.helper;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
+import com.orm.cache.Caches;
+
+import java.util.List;
+
 import static com.orm.SugarContext.getSugarContext;
 
 public final class SugarTransactionHelper {
@@ -11,9 +15,15 @@ public final class SugarTransactionHelper {
     //Prevent instantiation..
     private SugarTransactionHelper() { }
 
+    /**
+     * The statement that rolls back to the savepoint. It starts with a comment because Android takes
+     * any statement starting with ROLLBACK for the end of its own transaction.
+     */
+    private static final String ROLLBACK_TO_SAVEPOINT = "/* savepoint */ ROLLBACK TO sugar_savepoint";
+
     public static void doInTransaction(Callback callback) {
         final SQLiteDatabase database = getSugarContext().getSugarDb().getDB();
-        database.beginTransaction();
+        Transaction transaction = begin(database);
 
         try {
             if (ManifestHelper.isDebugEnabled()) {
@@ -21,7 +31,7 @@ public final class SugarTransactionHelper {
             }
 
             callback.manipulateInTransaction();
-            database.setTransactionSuccessful();
+            transaction.setSuccessful();
 
             if (ManifestHelper.isDebugEnabled()) {
                 Log.d(LOG_TAG, "Callback successfully executed within transaction");
@@ -31,11 +41,74 @@ public final class SugarTransactionHelper {
                 Log.d(LOG_TAG, "Could execute callback within transaction", e);
             }
         } finally {
-            database.endTransaction();
+            transaction.end();
         }
     }
 
+    /**
+     * Starts a transaction, or a savepoint if the calling thread already has one open. A nested
+     * Android transaction that fails makes the outer one roll back when it ends, even if the outer
+     * one was successful, whereas a savepoint only rolls back its own statements.
+     *
+     * The cache updates of the writes made in a transaction are {@link Caches#hold() held} until
+     * it is committed, and dropped if it, or the savepoint they were made in, is rolled back.
+     *
+     * @param database the database to write to
+     * @return the transaction, to end in a finally block
+     */
+    public static Transaction begin(SQLiteDatabase database) {
+        boolean savepoint = database.inTransaction();
+        if (savepoint) {
+            database.execSQL("SAVEPOINT sugar_savepoint");
+        } else {
+            database.beginTransaction();
+            Caches.hold();
+        }
+        return new Transaction(database, savepoint, Caches.getHeldCount());
+    }
+
     public interface Callback {
         void manipulateInTransaction();
     }
+
+    /**
+     * A transaction or savepoint started by {@link #begin(SQLiteDatabase)}, committed or released
+     * by {@link #end()} if it was marked successful, and else rolled back.
+     */
+    public static final class Transaction {
+        private final SQLiteDatabase database;
+        private final boolean savepoint;
+        private final int heldCount;
+        private boolean successful;
+
+        private Transaction(SQLiteDatabase database, boolean savepoint, int heldCount) {
+            this.database = database;
+            this.savepoint = savepoint;
+            this.heldCount = heldCount;
+        }
+
+        public void setSuccessful() {
+            if (!savepoint) {
+                database.setTransactionSuccessful();
+            }
+            successful = true;
+        }
+
+        public void end() {
+            if (!savepoint) {
+                List<Runnable> cacheUpdates = Caches.release();
+                database.endTransaction();
+                if (successful) {
+                    Caches.apply(cacheUpdates);
+                }
+                return;
+            }
+
+            if (!successful) {
+                database.execSQL(ROLLBACK_TO_SAVEPOINT);
+                Caches.dropHeld(heldCount);
+            }
+            database.execSQL("RELEASE sugar_savepoint");
+        }
+    }
 }
@@ -0,0 +1,334 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+import com.orm.util.ReflectionUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Saves an entity by inserting it, or updating the row it conflicts with, without the delete and
+ * re-insert of {@code INSERT OR REPLACE}.
+ *
+ * The row is matched on the {@link com.orm.annotation.MultiUnique} or {@link com.orm.annotation.Unique}
+ * constraint of the table when it has one, and on the id otherwise. On SQLite 3.24 and up this is
+ * a single {@code INSERT ... ON CONFLICT (key) DO UPDATE} statement; before that an UPDATE by key
+ * is run first, and an INSERT only when it matched no row.
+ */
+public final class UpsertHelper {
+    private static final String LOG_TAG = "Sugar";
+
+    private static final ConcurrentMap<Class<?>, UpsertSql> STATEMENTS = new ConcurrentHashMap<>();
+    // package-private so that tests can force the fallback of older SQLite versions
+    static volatile Boolean nativeUpsert;
+
+    //Prevent instantiation..
+    private UpsertHelper() { }
+
+    /**
+     * @param type an entity class
+     * @return true if the entity can be upserted: the device supports it (API 11 and up) and the
+     *         table has at most one unique constraint besides its primary key
+     */
+    public static boolean canUpsert(Class<?> type) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && getSql(type) != null;
+    }
+
+    /**
+     * @param database an open database
+     * @return true if the SQLite of the device supports {@code ON CONFLICT ... DO UPDATE}, added in
+     *         3.24.0
+     */
+    public static boolean supportsNativeUpsert(SQLiteDatabase database) {
+        Boolean supported = nativeUpsert;
+        if (supported == null) {
+            SQLiteStatement statement = database.compileStatement("SELECT sqlite_version()");
+            try {
+                supported = isAtLeast(statement.simpleQueryForString(), 3, 24);
+            } finally {
+                statement.close();
+            }
+            nativeUpsert = supported;
+        }
+        return supported;
+    }
+
+    static boolean isAtLeast(String version, int major, int minor) {
+        String[] parts = version.split("\\.");
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = (parts.length > 1) ? Integer.parseInt(parts[1]) : 0;
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Inserts the entity, or updates the row with the same key.
+     *
+     * @param database the database to write to
+     * @param object the entity, of a class for which {@link #canUpsert(Class)} is true
+     * @return the id of the inserted or updated row
+     * @throws android.database.SQLException if the write fails
+     */
+    public static long upsert(SQLiteDatabase database, Object object) {
+        UpsertSql sql = getSql(object.getClass());
+        if (sql == null) {
+            throw new IllegalArgumentException(object.getClass().getSimpleName() + " can't be upserted");
+        }
+
+        EntityBinder binder = sql.binder;
+        Object id = binder.getMetadata().getId(object);
+        List<ColumnMetadata> keyColumns = sql.uniqueColumns.isEmpty() ? sql.idColumns : sql.uniqueColumns;
+        boolean byUnique = !sql.uniqueColumns.isEmpty();
+
+        if (hasNullValue(keyColumns, object)) {
+            // nothing to conflict with
+            return execute(database, sql.insert, binder, object, null, true);
+        }
+
+        long rowId;
+        if (supportsNativeUpsert(database)) {
+            rowId = execute(database, byUnique ? sql.upsertByUnique : sql.upsertById, binder, object, null, true);
+        } else {
+            String update = byUnique ? sql.updateByUnique : sql.updateById;
+            if (execute(database, update, binder, object, keyColumns, false) == 0) {
+                return execute(database, sql.insert, binder, object, null, true);
+            }
+            rowId = -1;
+        }
+
+        if (!byUnique) {
+            return ((Number) id).longValue();
+        }
+
+        // the row id of an updated row is not reported, read it back through the key
+        if (rowId == -1 || supportsNativeUpsert(database)) {
+            SQLiteStatement statement = database.compileStatement(sql.selectIdByUnique);
+            try {
+                int index = 1;
+                for (ColumnMetadata column : keyColumns) {
+                    ReflectionUtil.bindFieldValue(statement, index++, column, object);
+                }
+                rowId = statement.simpleQueryForLong();
+            } finally {
+                statement.close();
+            }
+        }
+        return rowId;
+    }
+
+    private static boolean hasNullValue(List<ColumnMetadata> columns, Object object) {
+        if (columns.isEmpty()) {
+            return true;
+        }
+        try {
+            for (ColumnMetadata column : columns) {
+                if (column.getField().get(object) == null) {
+                    return true;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the row id for inserts, the number of changed rows otherwise
+     */
+    private static long execute(SQLiteDatabase database, String sql, EntityBinder binder, Object object,
+                                List<ColumnMetadata> whereColumns, boolean insert) {
+        SQLiteStatement statement = database.compileStatement(sql);
+        try {
+            int index = binder.bind(statement, 1, object);
+            if (whereColumns != null) {
+                for (ColumnMetadata column : whereColumns) {
+                    ReflectionUtil.bindFieldValue(statement, index++, column, object);
+                }
+            }
+
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.d(LOG_TAG, sql);
+            }
+            return insert ? statement.executeInsert() : statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static UpsertSql getSql(Class<?> type) {
+        UpsertSql sql = STATEMENTS.get(type);
+        if (sql == null) {
+            sql = new UpsertSql(type);
+            UpsertSql existing = STATEMENTS.putIfAbsent(type, sql);
+            if (existing != null) {
+                sql = existing;
+            }
+        }
+        return sql.supported ? sql : null;
+    }
+
+    public static void clearCache() {
+        STATEMENTS.clear();
+    }
+
+    /**
+     * The SQL of every statement an upsert of one entity class can run.
+     */
+    private static final class UpsertSql {
+        final EntityBinder binder;
+        final boolean supported;
+        final List<ColumnMetadata> idColumns;
+        final List<ColumnMetadata> uniqueColumns;
+        final String insert;
+        final String upsertById;
+        final String upsertByUnique;
+        final String updateById;
+        final String updateByUnique;
+        final String selectIdByUnique;
+
+        UpsertSql(Class<?> type) {
+            this.binder = EntityBinder.of(type);
+            EntityMetadata metadata = binder.getMetadata();
+            String tableName = metadata.getTableName();
+            String idColumnName = metadata.getIdColumnName();
+            List<String> columnNames = binder.getColumnNames();
+
+            ColumnMetadata idColumn = metadata.getIdColumn();
+            this.idColumns = (idColumn != null && columnNames.contains(idColumnName))
+                    ? Collections.singletonList(idColumn)
+                    : Collections.<ColumnMetadata>emptyList();
+
+            List<ColumnMetadata> unique = new ArrayList<>();
+            boolean supported = true;
+            if (!metadata.getMultiUniqueColumnNames().isEmpty()) {
+                for (String name : metadata.getMultiUniqueColumnNames()) {
+                    ColumnMetadata column = findColumn(metadata, name);
+                    if (column == null) {
+                        supported = false;
+                    } else {
+                        unique.add(column);
+                    }
+                }
+                supported &= metadata.getUniqueColumns().isEmpty();
+            } else if (metadata.getUniqueColumns().size() == 1) {
+                unique.add(metadata.getUniqueColumns().get(0));
+            } else if (metadata.getUniqueColumns().size() > 1) {
+                // ON CONFLICT can only target one constraint
+                supported = false;
+            }
+            this.uniqueColumns = Collections.unmodifiableList(unique);
+            this.supported = supported;
+
+            this.insert = "INSERT INTO " + tableName + " (" + TextUtils.join(", ", columnNames) + ") VALUES "
+                    + BulkInsertHelper.placeholders(columnNames.size());
+            this.upsertById = insert + onConflict(columnNames, idColumns, idColumnName);
+            this.upsertByUnique = insert + onConflict(columnNames, uniqueColumns, idColumnName);
+            this.updateById = update(tableName, columnNames, idColumns, idColumnName);
+            this.updateByUnique = updateKeepingId(tableName, columnNames, uniqueColumns, idColumnName);
+            this.selectIdByUnique = "SELECT " + idColumnName + " FROM " + tableName + " WHERE " + where(uniqueColumns);
+        }
+
+        private static ColumnMetadata findColumn(EntityMetadata metadata, String columnName) {
+            for (ColumnMetadata column : metadata.getColumns()) {
+                if (column.isPersisted() && column.getColumnName().equalsIgnoreCase(columnName)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+
+        private static String onConflict(List<String> columnNames, List<ColumnMetadata> keyColumns, String idColumnName) {
+            StringBuilder sb = new StringBuilder(" ON CONFLICT (");
+            for (int i = 0; i < keyColumns.size(); i++) {
+                sb.append(i == 0 ? "" : ", ").append(keyColumns.get(i).getColumnName());
+            }
+            sb.append(") DO ");
+
+            boolean first = true;
+            for (String columnName : columnNames) {
+                if (columnName.equalsIgnoreCase(idColumnName) || isKey(columnName, keyColumns)) {
+                    continue;
+                }
+                sb.append(first ? "UPDATE SET " : ", ").append(columnName).append(" = excluded.").append(columnName);
+                first = false;
+            }
+            if (first) {
+                sb.append("NOTHING");
+            }
+            return sb.toString();
+        }
+
+        private static String update(String tableName, List<String> columnNames, List<ColumnMetadata> keyColumns,
+                                     String idColumnName) {
+            StringBuilder sb = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+            for (int i = 0; i < columnNames.size(); i++) {
+                String columnName = columnNames.get(i);
+                sb.append(i == 0 ? "" : ", ").append(columnName);
+                // every column is bound, but a missing id must not replace the one of the row
+                if (columnName.equalsIgnoreCase(idColumnName)) {
+                    sb.append(" = COALESCE(?, ").append(columnName).append(')');
+                } else {
+                    sb.append(" = ?");
+                }
+            }
+            return sb.append(" WHERE ").append(where(keyColumns)).toString();
+        }
+
+        /**
+         * Like {@link #update(String, List, List, String)}, but leaves the id of the matched row as it
+         * is, as {@code ON CONFLICT DO UPDATE} does: the entity may hold the id of another row. The
+         * parameters are numbered so that the id is still bound in its place and the statement takes
+         * the same parameters, the where clause numbering the last ones.
+         */
+        private static String updateKeepingId(String tableName, List<String> columnNames,
+                                              List<ColumnMetadata> keyColumns, String idColumnName) {
+            StringBuilder sb = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+            boolean first = true;
+            for (int i = 0; i < columnNames.size(); i++) {
+                String columnName = columnNames.get(i);
+                if (columnName.equalsIgnoreCase(idColumnName)) {
+                    continue;
+                }
+                sb.append(first ? "" : ", ").append(columnName).append(" = ?").append(i + 1);
+                first = false;
+            }
+
+            sb.append(" WHERE ");
+            for (int i = 0; i < keyColumns.size(); i++) {
+                sb.append(i == 0 ? "" : " AND ").append(keyColumns.get(i).getColumnName())
+                        .append(" = ?").append(columnNames.size() + i + 1);
+            }
+            return sb.toString();
+        }
+
+        private static String where(List<ColumnMetadata> columns) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < columns.size(); i++) {
+                sb.append(i == 0 ? "" : " AND ").append(columns.get(i).getColumnName()).append(" = ?");
+            }
+            return sb.toString();
+        }
+
+        private static boolean isKey(String columnName, List<ColumnMetadata> keyColumns) {
+            for (ColumnMetadata column : keyColumns) {
+                if (column.getColumnName().equalsIgnoreCase(columnName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
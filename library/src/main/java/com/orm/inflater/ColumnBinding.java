@@ -0,0 +1,170 @@
+package com.orm.inflater;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import com.orm.helper.ManifestHelper;
+import com.orm.mapper.SugarMapper;
+import com.orm.mapper.SugarMappers;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the columns of an entity to their index in a cursor.
+ *
+ * A binding is resolved once per query and reused for every row, so that inflating a row never
+ * calls {@link Cursor#getColumnIndex(String)}. Bindings are also cached by the shape of the query
+ * (the entity and its SQL) and reused by later queries that return the same columns.
+ */
+public final class ColumnBinding {
+    private static final String LOG_TAG = "Sugar";
+    private static final int MAX_CACHED_BINDINGS = 64;
+
+    private static final Map<String, ColumnBinding> CACHE =
+            new LinkedHashMap<String, ColumnBinding>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ColumnBinding> eldest) {
+                    return size() > MAX_CACHED_BINDINGS;
+                }
+            };
+
+    private final EntityMetadata metadata;
+    private final String[] cursorColumns;
+    private final int idIndex;
+    private final int[] columnIndexes;
+    private final int[] mapperIndexes;
+
+    private ColumnBinding(EntityMetadata metadata, Cursor cursor) {
+        this.metadata = metadata;
+        this.cursorColumns = cursor.getColumnNames();
+        this.idIndex = cursor.getColumnIndex(metadata.getIdColumnName());
+
+        List<ColumnMetadata> columns = metadata.getColumns();
+        this.columnIndexes = new int[columns.size()];
+        StringBuilder missing = null;
+
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnMetadata column = columns.get(i);
+            if (!column.isPersisted()) {
+                columnIndexes[i] = -1;
+                continue;
+            }
+
+            columnIndexes[i] = cursor.getColumnIndex(column.getColumnName());
+            if (columnIndexes[i] < 0) {
+                missing = (missing == null) ? new StringBuilder() : missing.append(", ");
+                missing.append(column.getColumnName());
+            }
+        }
+
+        SugarMapper<Object> mapper = SugarMappers.getMapper(metadata.getType());
+        if (mapper != null) {
+            String[] mapperColumns = mapper.getColumnNames();
+            this.mapperIndexes = new int[mapperColumns.length];
+            for (int i = 0; i < mapperColumns.length; i++) {
+                mapperIndexes[i] = cursor.getColumnIndex(mapperColumns[i]);
+            }
+        } else {
+            this.mapperIndexes = null;
+        }
+
+        //TODO auto upgrade to add new columns
+        if (missing != null && ManifestHelper.isDebugEnabled()) {
+            Log.e(LOG_TAG, "Columns missing for " + metadata.getType().getSimpleName() + ": " + missing
+                    + ", you should upgrade database");
+        }
+    }
+
+    /**
+     * Resolves the binding of an entity for a cursor, without caching it.
+     *
+     * @param cursor the cursor returned by the query
+     * @param type the entity class
+     * @return the binding
+     */
+    public static ColumnBinding of(Cursor cursor, Class<?> type) {
+        return new ColumnBinding(EntityMetadata.of(type), cursor);
+    }
+
+    /**
+     * Returns the binding of an entity for a cursor, reusing the one resolved by an earlier query of
+     * the same shape when it returned the same columns.
+     *
+     * @param cursor the cursor returned by the query
+     * @param type the entity class
+     * @param shape what identifies the columns of the query, usually its SQL
+     * @return the binding
+     */
+    public static ColumnBinding forQuery(Cursor cursor, Class<?> type, String shape) {
+        String key = type.getName() + '\n' + shape;
+        ColumnBinding binding;
+
+        synchronized (CACHE) {
+            binding = CACHE.get(key);
+        }
+
+        if (binding == null || !binding.matches(cursor)) {
+            binding = new ColumnBinding(EntityMetadata.of(type), cursor);
+            synchronized (CACHE) {
+                CACHE.put(key, binding);
+            }
+        }
+
+        return binding;
+    }
+
+    /**
+     * @param type the entity class
+     * @return the shape of a query returning all the columns of the entity table
+     */
+    public static String tableShape(Class<?> type) {
+        return "SELECT * FROM " + EntityMetadata.of(type).getTableName();
+    }
+
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * @param cursor a cursor
+     * @return true if the cursor has the same columns, in the same order, as the one this binding
+     *         was resolved for
+     */
+    public boolean matches(Cursor cursor) {
+        return Arrays.equals(cursorColumns, cursor.getColumnNames());
+    }
+
+    public EntityMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the index of the id column, or -1 if it is not in the cursor
+     */
+    public int getIdIndex() {
+        return idIndex;
+    }
+
+    /**
+     * @param column the position of the column in {@link EntityMetadata#getColumns()}
+     * @return the index of the column in the cursor, or -1 if it is missing or not persisted
+     */
+    public int getColumnIndex(int column) {
+        return columnIndexes[column];
+    }
+
+    /**
+     * @return the indexes of the columns of the generated mapper, in the order of
+     *         {@link SugarMapper#getColumnNames()}, or null if the entity has no mapper
+     */
+    public int[] getMapperIndexes() {
+        return mapperIndexes;
+    }
+}
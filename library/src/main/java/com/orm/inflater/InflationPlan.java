@@ -0,0 +1,221 @@
+package com.orm.inflater;
+
+import android.database.Cursor;
+
+import com.orm.inflater.field.DefaultFieldInflater;
+import com.orm.inflater.field.EntityFieldInflater;
+import com.orm.inflater.field.FieldInflater;
+import com.orm.inflater.field.ListFieldInflater;
+import com.orm.mapper.SugarMapper;
+import com.orm.mapper.SugarMappers;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How to create and fill an entity from a row, built once per entity class.
+ *
+ * A plan holds one field inflater per column and no state about the row being read, so it is shared
+ * by every query and every thread. Inflating a row only allocates the entity and its field values.
+ *
+ * @param <T> the entity class
+ */
+public final class InflationPlan<T> {
+    private static final Map<Class<?>, InflationPlan<?>> PLANS = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+    private final EntityMetadata metadata;
+    private final SugarMapper<T> mapper;
+    private final Constructor<T> constructor;
+    private final FieldInflater[] inflaters;
+    private final boolean numericId;
+
+    private InflationPlan(Class<T> type) {
+        this.type = type;
+        this.metadata = EntityMetadata.of(type);
+        this.mapper = SugarMappers.getMapper(type);
+        this.constructor = (mapper == null) ? findConstructor(type) : null;
+
+        Class<?> idType = metadata.hasIdField() ? metadata.getIdType() : null;
+        this.numericId = idType == Long.class || idType == long.class
+                || idType == Integer.class || idType == int.class;
+
+        List<ColumnMetadata> columns = metadata.getColumns();
+        this.inflaters = new FieldInflater[columns.size()];
+
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnMetadata column = columns.get(i);
+            switch (column.getKind()) {
+                case ENTITY:
+                    inflaters[i] = new EntityFieldInflater(column);
+                    break;
+                case LIST:
+                    inflaters[i] = new ListFieldInflater(column);
+                    break;
+                default:
+                    // plain columns are read by the generated mapper when there is one
+                    inflaters[i] = (mapper == null) ? new DefaultFieldInflater(column) : null;
+                    break;
+            }
+        }
+    }
+
+    private static <T> Constructor<T> findConstructor(Class<T> type) {
+        try {
+            return type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param type the entity class
+     * @return the plan of the class, built on first use
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> InflationPlan<T> of(Class<T> type) {
+        InflationPlan<T> plan = (InflationPlan<T>) PLANS.get(type);
+        if (plan == null) {
+            plan = new InflationPlan<>(type);
+            InflationPlan<T> existing = (InflationPlan<T>) PLANS.putIfAbsent(type, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    public static void clearCache() {
+        PLANS.clear();
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public EntityMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return true if the class has an {@link com.orm.annotation.Id} field holding a row id, by which
+     *         loaded entities can be shared
+     */
+    public boolean hasNumericId() {
+        return numericId;
+    }
+
+    /**
+     * @return a new, empty entity
+     * @throws Exception if the class has no default constructor or it fails
+     */
+    public T newInstance() throws Exception {
+        if (mapper != null) {
+            return mapper.newInstance();
+        }
+        if (constructor == null) {
+            throw new NoSuchMethodException(metadata.getType().getName() + ".<init>()");
+        }
+        return constructor.newInstance();
+    }
+
+    public void inflate(Cursor cursor, ColumnBinding binding, T object) {
+        inflate(cursor, binding, object, null, null);
+    }
+
+    /**
+     * Fills an entity from the current row of a cursor.
+     *
+     * @param cursor the cursor, positioned on the row to read
+     * @param binding the column indexes of the cursor
+     * @param object the entity to fill
+     * @param relationFieldName the field to set to {@code relationObject} instead of loading it, or
+     *                          null
+     * @param relationObject the owner of the one-to-many relation being loaded, or null
+     */
+    public void inflate(Cursor cursor, ColumnBinding binding, T object, String relationFieldName, Object relationObject) {
+        inflate(cursor, binding, object, relationFieldName, relationObject, null);
+    }
+
+    /**
+     * Fills an entity from the current row of a cursor, deferring its entity references and lists
+     * to the context of the load.
+     *
+     * @param context the context of the load, or null to read referenced entities and lists right
+     *                away
+     * @see #inflate(Cursor, ColumnBinding, Object, String, Object)
+     */
+    public void inflate(Cursor cursor, ColumnBinding binding, T object, String relationFieldName, Object relationObject,
+                        LoadContext context) {
+        if (mapper != null) {
+            mapper.fromCursor(cursor, binding.getMapperIndexes(), object);
+        }
+
+        for (int i = 0; i < inflaters.length; i++) {
+            FieldInflater inflater = inflaters[i];
+            if (inflater == null) {
+                continue;
+            }
+
+            ColumnMetadata column = inflater.getColumn();
+            switch (column.getKind()) {
+                case ENTITY:
+                    if (column.getFieldName().equals(relationFieldName)) {
+                        ((EntityFieldInflater) inflater).inflateRelation(object, relationObject);
+                    } else {
+                        ((EntityFieldInflater) inflater).inflate(cursor, binding.getColumnIndex(i), object, context);
+                    }
+                    break;
+                case LIST:
+                    ((ListFieldInflater) inflater).inflate(cursor, binding.getIdIndex(), object, context);
+                    break;
+                default:
+                    inflater.inflate(cursor, binding.getColumnIndex(i), object);
+                    break;
+            }
+        }
+    }
+    /**
+     * Fills the columns of an entity from the current row of a cursor, without reading anything else
+     * from the database. Entity references and eager lists are left as the constructor set them;
+     * {@link com.orm.EntityRef} fields and lazy lists are set, and read their entities only when
+     * they are used.
+     *
+     * @param cursor the cursor, positioned on the row to read
+     * @param binding the column indexes of the cursor
+     * @param object the entity to fill
+     */
+    public void inflateColumns(Cursor cursor, ColumnBinding binding, T object) {
+        if (mapper != null) {
+            mapper.fromCursor(cursor, binding.getMapperIndexes(), object);
+        }
+
+        for (int i = 0; i < inflaters.length; i++) {
+            FieldInflater inflater = inflaters[i];
+            if (inflater == null) {
+                continue;
+            }
+
+            ColumnMetadata column = inflater.getColumn();
+            switch (column.getKind()) {
+                case ENTITY:
+                    if (column.isLazy()) {
+                        inflater.inflate(cursor, binding.getColumnIndex(i), object);
+                    }
+                    break;
+                case LIST:
+                    if (column.isLazy()) {
+                        inflater.inflate(cursor, binding.getIdIndex(), object);
+                    }
+                    break;
+                default:
+                    inflater.inflate(cursor, binding.getColumnIndex(i), object);
+                    break;
+            }
+        }
+    }
+}
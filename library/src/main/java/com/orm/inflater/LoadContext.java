@@ -0,0 +1,253 @@
+package com.orm.inflater;
+
+import android.util.Log;
+
+import com.orm.SugarRecord;
+import com.orm.metadata.ColumnMetadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The identity map of one load, keyed by entity class and id, along with the entity references and
+ * one-to-many lists of its rows, so that they are read with one query per type and chunk of ids
+ * instead of one query per row, and each row is read at most once per load.
+ *
+ * Field inflaters {@link #defer(ColumnMetadata, Object, long) defer} each reference, and the loader
+ * reads the {@link #getPendingIds(Class) pending ids} of each type, {@link #register(Class, long, Object)
+ * registers} what it found and {@link #resolve(Class, long...) resolves} the deferred fields. Entities that
+ * are loaded more than once in the same load are shared, which also ends reference cycles.
+ *
+ * Lists are {@link #deferList(ColumnMetadata, Object, long) deferred} the same way, and the loader
+ * {@link #takePendingOwners(ColumnMetadata) takes the owners} of each list field to read the
+ * elements of all of them at once.
+ *
+ * The {@link SugarRecord}s read by the load are {@link #addRecord(SugarRecord) kept} until their
+ * references and lists are set, so that {@link SugarRecord#onLoad()} sees them fully loaded.
+ *
+ * A context is used by one thread, for one load, and dropped along with everything it holds once
+ * the load is done.
+ */
+public final class LoadContext {
+    private static final String LOG_TAG = "Sugar";
+
+    private final Map<Class<?>, Map<Long, Object>> loaded = new HashMap<>();
+    private final Map<Class<?>, List<PendingReference>> pending = new LinkedHashMap<>();
+    private final Map<ColumnMetadata, Map<Long, List<Object>>> pendingLists = new LinkedHashMap<>();
+    private final List<SugarRecord> records = new ArrayList<>();
+
+    /**
+     * Sets the field of an entity to the entity with the given id, now if it is already loaded and
+     * once it is resolved otherwise.
+     *
+     * @param column an {@link ColumnMetadata.Kind#ENTITY} column
+     * @param object the entity to set the field of
+     * @param id the id of the referenced entity
+     */
+    public void defer(ColumnMetadata column, Object object, long id) {
+        Class<?> type = column.getRelationType();
+        Map<Long, Object> entities = loaded.get(type);
+        if (entities != null && entities.containsKey(id)) {
+            set(column, object, entities.get(id));
+            return;
+        }
+
+        List<PendingReference> references = pending.get(type);
+        if (references == null) {
+            references = new ArrayList<>();
+            pending.put(type, references);
+        }
+        references.add(new PendingReference(column, object, id));
+    }
+
+    /**
+     * Records an entity read by this load, to be shared by every reference to it.
+     *
+     * @param type the entity class
+     * @param id the id of the entity
+     * @param entity the entity, or null if no row has this id
+     */
+    public void register(Class<?> type, long id, Object entity) {
+        Map<Long, Object> entities = loaded.get(type);
+        if (entities == null) {
+            entities = new HashMap<>();
+            loaded.put(type, entities);
+        }
+        if (!entities.containsKey(id) || entities.get(id) == null) {
+            entities.put(id, entity);
+        }
+    }
+
+    /**
+     * Defers the loading of a one-to-many list until the lists of every row are read at once.
+     *
+     * @param column a {@link ColumnMetadata.Kind#LIST} column
+     * @param owner the entity to set the list of
+     * @param ownerId the id of the owner
+     */
+    public void deferList(ColumnMetadata column, Object owner, long ownerId) {
+        Map<Long, List<Object>> owners = pendingLists.get(column);
+        if (owners == null) {
+            owners = new LinkedHashMap<>();
+            pendingLists.put(column, owners);
+        }
+
+        List<Object> sameId = owners.get(ownerId);
+        if (sameId == null) {
+            sameId = new ArrayList<>(1);
+            owners.put(ownerId, sameId);
+        }
+        sameId.add(owner);
+    }
+
+    /**
+     * @param type the entity class
+     * @return the entity registered with the id, or null if it is not loaded
+     */
+    public Object getLoaded(Class<?> type, long id) {
+        Map<Long, Object> entities = loaded.get(type);
+        return (entities != null) ? entities.get(id) : null;
+    }
+
+    /**
+     * Forgets an entity, so that the context does not keep it once the caller is done with it.
+     * Later references to it read it again.
+     *
+     * @param type the entity class
+     * @param id the id of the entity
+     */
+    public void release(Class<?> type, long id) {
+        Map<Long, Object> entities = loaded.get(type);
+        if (entities != null) {
+            entities.remove(id);
+        }
+    }
+
+    /**
+     * Keeps a record read by this load, to call back once the load is done.
+     */
+    public void addRecord(SugarRecord record) {
+        records.add(record);
+    }
+
+    /**
+     * @return the records read since the last call, in the order they were read
+     */
+    public List<SugarRecord> takeRecords() {
+        List<SugarRecord> taken = new ArrayList<>(records);
+        records.clear();
+        return taken;
+    }
+
+    /**
+     * @return true if some references or lists are still deferred
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty() || !pendingLists.isEmpty();
+    }
+
+    /**
+     * @return the next list field with deferred owners, or null if there are none
+     */
+    public ColumnMetadata nextPendingListColumn() {
+        Iterator<ColumnMetadata> columns = pendingLists.keySet().iterator();
+        return columns.hasNext() ? columns.next() : null;
+    }
+
+    /**
+     * Removes the deferred owners of a list field, for the loader to fill their lists.
+     *
+     * @param column a {@link ColumnMetadata.Kind#LIST} column
+     * @return the owners by id, in the order they were deferred
+     */
+    public Map<Long, List<Object>> takePendingOwners(ColumnMetadata column) {
+        Map<Long, List<Object>> owners = pendingLists.remove(column);
+        return (owners != null) ? owners : new LinkedHashMap<Long, List<Object>>();
+    }
+
+    /**
+     * @return the next type with deferred references, or null if there are none
+     */
+    public Class<?> nextPendingType() {
+        Iterator<Class<?>> types = pending.keySet().iterator();
+        return types.hasNext() ? types.next() : null;
+    }
+
+    /**
+     * @param type the entity class
+     * @return the distinct ids of the deferred references to the type that are not loaded yet
+     */
+    public long[] getPendingIds(Class<?> type) {
+        List<PendingReference> references = pending.get(type);
+        if (references == null) {
+            return new long[0];
+        }
+
+        Map<Long, Object> entities = loaded.get(type);
+        LinkedHashMap<Long, Boolean> ids = new LinkedHashMap<>();
+        for (PendingReference reference : references) {
+            if (entities == null || !entities.containsKey(reference.id)) {
+                ids.put(reference.id, Boolean.TRUE);
+            }
+        }
+
+        long[] result = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids.keySet()) {
+            result[i++] = id;
+        }
+        return result;
+    }
+
+    /**
+     * Sets the deferred references to the type. Ids that were looked up and not registered are
+     * set to null.
+     *
+     * @param type the entity class
+     * @param ids the ids that were looked up
+     */
+    public void resolve(Class<?> type, long... ids) {
+        for (long id : ids) {
+            register(type, id, null);
+        }
+
+        List<PendingReference> references = pending.remove(type);
+        if (references == null) {
+            return;
+        }
+
+        Map<Long, Object> entities = loaded.get(type);
+        for (PendingReference reference : references) {
+            if (entities != null && entities.containsKey(reference.id)) {
+                set(reference.column, reference.object, entities.get(reference.id));
+            } else {
+                // loading the type deferred new references to it, keep them for the next round
+                defer(reference.column, reference.object, reference.id);
+            }
+        }
+    }
+
+    private static void set(ColumnMetadata column, Object object, Object value) {
+        try {
+            column.getField().set(object, value);
+        } catch (IllegalAccessException e) {
+            Log.e(LOG_TAG, String.format("Error while inflating entity field %s", column.getField()), e);
+        }
+    }
+
+    private static final class PendingReference {
+        final ColumnMetadata column;
+        final Object object;
+        final long id;
+
+        PendingReference(ColumnMetadata column, Object object, long id) {
+            this.column = column;
+            this.object = object;
+            this.id = id;
+        }
+    }
+}
@@ -1,21 +1,131 @@
 package com.orm.inflater.field;
 
 import android.database.Cursor;
-import com.orm.util.ReflectionUtil;
+import android.util.Log;
 
-import java.lang.reflect.Field;
+import com.orm.helper.ManifestHelper;
+import com.orm.metadata.ColumnMetadata;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
 
 /**
  * Created by Łukasz Wesołowski on 03.08.2016.
+ *
+ * Reads a plain column the same way {@code ReflectionUtil.setFieldValueFromCursor} does. The type
+ * of the field is resolved once, and primitive fields are set without boxing.
  */
 public class DefaultFieldInflater extends FieldInflater {
+    private final ColumnMetadata.ValueType valueType;
+    private final boolean primitive;
+
+    public DefaultFieldInflater(ColumnMetadata column) {
+        super(column);
+        this.valueType = column.getValueType();
+        this.primitive = fieldType.isPrimitive();
 
-    public DefaultFieldInflater(Field field, Cursor cursor, Object object, Class<?> fieldType) {
-        super(field, cursor, object, fieldType);
+        if (valueType == ColumnMetadata.ValueType.OTHER && ManifestHelper.isDebugEnabled()) {
+            Log.e("Sugar", "Class cannot be read from Sqlite3 database. Please check the type of field " + field.getName() + "(" + fieldType.getName() + ")");
+        }
     }
 
     @Override
-    public void inflate() {
-        ReflectionUtil.setFieldValueFromCursor(cursor, field, object);
+    public void inflate(Cursor cursor, int columnIndex, Object object) {
+        if (columnIndex < 0 || valueType == ColumnMetadata.ValueType.OTHER || cursor.isNull(columnIndex)) {
+            return;
+        }
+
+        try {
+            String value;
+            switch (valueType) {
+                case LONG:
+                    if (primitive) {
+                        field.setLong(object, cursor.getLong(columnIndex));
+                    } else {
+                        field.set(object, cursor.getLong(columnIndex));
+                    }
+                    break;
+                case STRING:
+                    value = cursor.getString(columnIndex);
+                    field.set(object, "null".equals(value) ? null : value);
+                    break;
+                case DOUBLE:
+                    if (primitive) {
+                        field.setDouble(object, cursor.getDouble(columnIndex));
+                    } else {
+                        field.set(object, cursor.getDouble(columnIndex));
+                    }
+                    break;
+                case BOOLEAN:
+                    if (primitive) {
+                        field.setBoolean(object, cursor.getInt(columnIndex) == 1);
+                    } else {
+                        field.set(object, cursor.getInt(columnIndex) == 1);
+                    }
+                    break;
+                case INT:
+                    if (primitive) {
+                        field.setInt(object, cursor.getInt(columnIndex));
+                    } else {
+                        field.set(object, cursor.getInt(columnIndex));
+                    }
+                    break;
+                case FLOAT:
+                    if (primitive) {
+                        field.setFloat(object, cursor.getFloat(columnIndex));
+                    } else {
+                        field.set(object, cursor.getFloat(columnIndex));
+                    }
+                    break;
+                case SHORT:
+                    if (primitive) {
+                        field.setShort(object, cursor.getShort(columnIndex));
+                    } else {
+                        field.set(object, cursor.getShort(columnIndex));
+                    }
+                    break;
+                case BIG_DECIMAL:
+                    value = cursor.getString(columnIndex);
+                    field.set(object, "null".equals(value) ? null : new BigDecimal(value));
+                    break;
+                case TIMESTAMP:
+                    field.set(object, new Timestamp(cursor.getLong(columnIndex)));
+                    break;
+                case DATE:
+                    field.set(object, new Date(cursor.getLong(columnIndex)));
+                    break;
+                case CALENDAR:
+                    Calendar calendar = Calendar.getInstance();
+                    calendar.setTimeInMillis(cursor.getLong(columnIndex));
+                    field.set(object, calendar);
+                    break;
+                case BYTES:
+                    byte[] bytes = cursor.getBlob(columnIndex);
+                    field.set(object, (bytes == null) ? "".getBytes() : bytes);
+                    break;
+                case ENUM:
+                    inflateEnum(cursor.getString(columnIndex), object);
+                    break;
+                default:
+                    break;
+            }
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.e("field set error", e.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void inflateEnum(String value, Object object) throws IllegalAccessException {
+        try {
+            field.set(object, Enum.valueOf((Class<? extends Enum>) fieldType, value));
+        } catch (IllegalArgumentException e) {
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.e("Sugar", "Enum cannot be read from Sqlite3 database. Please check the type of field " + field.getName());
+            }
+        }
     }
 }
@@ -2,10 +2,10 @@ package com.orm.inflater.field;
 
 import android.database.Cursor;
 import android.util.Log;
+import com.orm.EntityRef;
 import com.orm.SugarRecord;
-import com.orm.helper.NamingHelper;
-
-import java.lang.reflect.Field;
+import com.orm.inflater.LoadContext;
+import com.orm.metadata.ColumnMetadata;
 
 /**
  * Created by Łukasz Wesołowski on 03.08.2016.
@@ -13,27 +13,64 @@ import java.lang.reflect.Field;
 public class EntityFieldInflater extends FieldInflater {
     private static final String LOG_TAG = "EntityFieldInflater";
 
-    public EntityFieldInflater(Field field, Cursor cursor, Object object, Class<?> fieldType) {
-        super(field, cursor, object, fieldType);
+    public EntityFieldInflater(ColumnMetadata column) {
+        super(column);
     }
 
     @Override
-    public void inflate() {
+    public void inflate(Cursor cursor, int columnIndex, Object object) {
+        if (columnIndex < 0) {
+            return;
+        }
+
         try {
-//            if(fieldType == Integer.class){
-//               Integer id = cursor.getInt(cursor.getColumnIndex(NamingHelper.toColumnName(field)));
-//               field.set(object, (id > 0) ? SugarRecord.findById(fieldType, id) : null);
-//            }else if(fieldType == Long.class){
-//                Long id = cursor.getLong(cursor.getColumnIndex(NamingHelper.toColumnName(field)));
-//                field.set(object, (id > 0) ? SugarRecord.findById(fieldType, id) : null);
-//            }else if(fieldType == String.class){
-//                String id = cursor.getString(cursor.getColumnIndex(NamingHelper.toColumnName(field)));
-//                field.set(object, SugarRecord.findById(fieldType, id));
-//            }
-            long id = cursor.getLong(cursor.getColumnIndex(NamingHelper.toColumnName(field)));
-            field.set(object, (id > 0) ? SugarRecord.findById(fieldType, id) : null);
+            long id = cursor.getLong(columnIndex);
+            if (column.isLazy()) {
+                field.set(object, (id > 0) ? EntityRef.of(column.getRelationType(), id) : null);
+            } else {
+                field.set(object, (id > 0) ? SugarRecord.findById(fieldType, id) : null);
+            }
         } catch (IllegalAccessException e) {
             Log.e(LOG_TAG, String.format("Error while inflating entity field %s", field), e);
         }
     }
+
+    /**
+     * Defers the reference to the load context, which reads the entities referenced by all the
+     * rows of the load at once. Without a context, the entity is read now. {@link EntityRef} fields
+     * only get the id, and are never deferred.
+     *
+     * @param context the context of the load, or null
+     */
+    public void inflate(Cursor cursor, int columnIndex, Object object, LoadContext context) {
+        if (context == null || column.isLazy()) {
+            inflate(cursor, columnIndex, object);
+            return;
+        }
+        if (columnIndex < 0) {
+            return;
+        }
+
+        long id = cursor.getLong(columnIndex);
+        if (id > 0) {
+            context.defer(column, object, id);
+        } else {
+            inflateRelation(object, null);
+        }
+    }
+
+    /**
+     * Sets the field to an entity that is already loaded, instead of reading it from the database.
+     * Used for the back reference of the entities of a one-to-many relation.
+     *
+     * @param object the entity to set the field of
+     * @param relationObject the owner of the relation
+     */
+    public void inflateRelation(Object object, Object relationObject) {
+        try {
+            field.set(object, column.isLazy() ? EntityRef.of(relationObject) : relationObject);
+        } catch (IllegalAccessException e) {
+            Log.e(LOG_TAG, String.format("Error while inflating %s field", field), e);
+        }
+    }
 }
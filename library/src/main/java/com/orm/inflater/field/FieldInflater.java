@@ -2,23 +2,36 @@ package com.orm.inflater.field;
 
 import android.database.Cursor;
 
+import com.orm.metadata.ColumnMetadata;
+
 import java.lang.reflect.Field;
 
 /**
  * Created by Łukasz Wesołowski on 03.08.2016.
+ *
+ * Field inflaters are created once per entity class and hold no state about the row they read, so
+ * the same instance is used for every row of every query.
  */
 public abstract class FieldInflater {
-    protected Field field;
-    protected Cursor cursor;
-    protected Object object;
-    protected Class<?> fieldType;
+    protected final ColumnMetadata column;
+    protected final Field field;
+    protected final Class<?> fieldType;
+
+    public FieldInflater(ColumnMetadata column) {
+        this.column = column;
+        this.field = column.getField();
+        this.fieldType = column.getFieldType();
+    }
 
-    public FieldInflater(Field field, Cursor cursor, Object object, Class<?> fieldType) {
-        this.field = field;
-        this.cursor = cursor;
-        this.object = object;
-        this.fieldType = fieldType;
+    public ColumnMetadata getColumn() {
+        return column;
     }
 
-    public abstract void inflate();
+    /**
+     * @param cursor the cursor, positioned on the row to read
+     * @param columnIndex the index of the column in the cursor, or -1 if it is missing. List fields
+     *                    have no column of their own and get the index of the owner id instead.
+     * @param object the entity to set the field of
+     */
+    public abstract void inflate(Cursor cursor, int columnIndex, Object object);
 }
@@ -3,10 +3,9 @@ package com.orm.inflater.field;
 import android.database.Cursor;
 import android.util.Log;
 import com.orm.SugarRecord;
-import com.orm.annotation.OneToMany;
-
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
+import com.orm.inflater.LoadContext;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.util.LazyList;
 
 /**
  * Created by Łukasz Wesołowski on 03.08.2016.
@@ -14,25 +13,49 @@ import java.lang.reflect.ParameterizedType;
 public class ListFieldInflater extends FieldInflater {
     private static final String LOG_TAG = "ListFieldInflater";
 
-    public ListFieldInflater(Field field, Cursor cursor, Object object, Class<?> fieldType) {
-        super(field, cursor, object, fieldType);
+    public ListFieldInflater(ColumnMetadata column) {
+        super(column);
+
+        if (column.getTargetFieldName() == null) {
+            Log.w(LOG_TAG, String.format("List field %s has not OneToMany annotation", field));
+        }
     }
 
     @Override
-    public void inflate() {
-        if (field.isAnnotationPresent(OneToMany.class)) {
-            try {
-                Long objectId = cursor.getLong(cursor.getColumnIndex(("ID")));
-
-                ParameterizedType genericListType = (ParameterizedType) field.getGenericType();
-                Class<?> genericListClass = (Class<?>) genericListType.getActualTypeArguments()[0];
-                String targetName = field.getAnnotation(OneToMany.class).targetField();
-                field.set(object, SugarRecord.findOneToMany(genericListClass, targetName, object, objectId));
-            } catch (IllegalAccessException e) {
-                Log.e(LOG_TAG, String.format("Error while inflating list field %s", field), e);
+    public void inflate(Cursor cursor, int columnIndex, Object object) {
+        if (column.getTargetFieldName() == null || columnIndex < 0) {
+            return;
+        }
+
+        try {
+            Long objectId = cursor.getLong(columnIndex);
+
+            if (column.isLazy()) {
+                field.set(object, new LazyList<>(column.getRelationType(), column.getTargetFieldName(), object, objectId));
+            } else {
+                field.set(object, SugarRecord.findOneToMany(column.getRelationType(), column.getTargetFieldName(), object, objectId));
             }
-        } else {
-            Log.w(LOG_TAG, String.format("List field %s has not OneToMany annotation", field));
+        } catch (IllegalAccessException e) {
+            Log.e(LOG_TAG, String.format("Error while inflating list field %s", field), e);
+        }
+    }
+
+    /**
+     * Defers the list to the load context, which reads the lists of all the rows of the load with
+     * one query. Without a context, the list is read now. Lazy lists are never deferred, they read
+     * their elements on first access.
+     *
+     * @param context the context of the load, or null
+     */
+    public void inflate(Cursor cursor, int columnIndex, Object object, LoadContext context) {
+        if (context == null || column.isLazy()) {
+            inflate(cursor, columnIndex, object);
+            return;
+        }
+        if (column.getTargetFieldName() == null || columnIndex < 0) {
+            return;
         }
+
+        context.deferList(column, object, cursor.getLong(columnIndex));
     }
 }
@@ -0,0 +1,60 @@
+package com.orm.mapper;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Maps the plain columns of an entity to and from the database without reflection.
+ *
+ * Implementations are generated at compile time by the sugar-compiler annotation processor, one
+ * per entity, and named after the entity with a {@code _SugarMapper} suffix. Relation fields
+ * (other entities and {@link com.orm.annotation.OneToMany} lists) are not handled by a mapper and
+ * keep going through the reflective inflaters.
+ *
+ * @param <T> the entity type
+ */
+public interface SugarMapper<T> {
+
+    /**
+     * @return a new, empty instance of the entity
+     */
+    T newInstance();
+
+    /**
+     * @return the columns handled by this mapper, in the order they are bound by
+     *         {@link #bind(SQLiteStatement, int, Object)}. The same array is returned on every
+     *         call, as it is read for every query, so callers must not change it.
+     */
+    String[] getColumnNames();
+
+    /**
+     * Puts the value of every mapped column of the entity in the given values.
+     *
+     * @param entity the entity to read from
+     * @param values the values to write to
+     */
+    void toContentValues(T entity, ContentValues values);
+
+    /**
+     * Binds the value of every mapped column of the entity to the statement, in the order
+     * returned by {@link #getColumnNames()}.
+     *
+     * @param statement the statement to bind to
+     * @param startIndex the 1-based index of the first argument to bind
+     * @param entity the entity to read from
+     * @return the index of the next argument after the ones that were bound
+     */
+    int bind(SQLiteStatement statement, int startIndex, T entity);
+
+    /**
+     * Sets every mapped field of the entity from the current row of the cursor. Columns that are
+     * missing from the cursor or null in the row leave the field untouched.
+     *
+     * @param cursor the cursor, positioned on the row to read
+     * @param columnIndexes the index in the cursor of each column of {@link #getColumnNames()},
+     *                      or -1 for missing columns
+     * @param entity the entity to write to
+     */
+    void fromCursor(Cursor cursor, int[] columnIndexes, T entity);
+}
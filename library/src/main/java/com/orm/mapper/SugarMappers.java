@@ -0,0 +1,103 @@
+package com.orm.mapper;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.orm.helper.ManifestHelper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the generated {@link SugarMapper} of an entity class, if there is one.
+ *
+ * The lookup is done once per class and its result, including the absence of a mapper, is
+ * cached so that callers can ask for it on every save and every row.
+ */
+public final class SugarMappers {
+    private static final String LOG_TAG = "Sugar";
+
+    /**
+     * Suffix appended to the entity class name to get the generated mapper name.
+     */
+    public static final String MAPPER_SUFFIX = "_SugarMapper";
+
+    private static final SugarMapper<Object> NO_MAPPER = new NoMapper();
+    private static final Map<Class<?>, SugarMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+    //Prevent instantiation..
+    private SugarMappers() { }
+
+    /**
+     * @param type the entity class
+     * @param <T> the entity type
+     * @return the generated mapper for the class or null if none was generated, in which case
+     *         callers should fall back to reflection
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SugarMapper<T> getMapper(Class<?> type) {
+        SugarMapper<?> mapper = MAPPERS.get(type);
+
+        if (mapper == null) {
+            mapper = loadMapper(type);
+            MAPPERS.put(type, mapper);
+        }
+
+        return (mapper == NO_MAPPER) ? null : (SugarMapper<T>) mapper;
+    }
+
+    /**
+     * @param type the entity class
+     * @return the fully qualified name of the mapper generated for the class
+     */
+    public static String getMapperClassName(Class<?> type) {
+        return type.getName().replace('$', '_') + MAPPER_SUFFIX;
+    }
+
+    public static void clearCache() {
+        MAPPERS.clear();
+    }
+
+    private static SugarMapper<?> loadMapper(Class<?> type) {
+        try {
+            Class<?> mapperClass = Class.forName(getMapperClassName(type), true, type.getClassLoader());
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.d(LOG_TAG, "Using generated mapper for " + type.getSimpleName());
+            }
+            return (SugarMapper<?>) mapperClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return NO_MAPPER;
+        } catch (Exception e) {
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.e(LOG_TAG, "Could not instantiate mapper for " + type.getSimpleName(), e);
+            }
+            return NO_MAPPER;
+        }
+    }
+
+    private static final class NoMapper implements SugarMapper<Object> {
+
+        @Override
+        public Object newInstance() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return new String[0];
+        }
+
+        @Override
+        public void toContentValues(Object entity, ContentValues values) { }
+
+        @Override
+        public int bind(SQLiteStatement statement, int startIndex, Object entity) {
+            return startIndex;
+        }
+
+        @Override
+        public void fromCursor(Cursor cursor, int[] columnIndexes, Object entity) { }
+    }
+}
@@ -0,0 +1,265 @@
+package com.orm.metadata;
+
+import com.orm.EntityRef;
+import com.orm.SugarRecord;
+import com.orm.annotation.Column;
+import com.orm.annotation.FetchType;
+import com.orm.annotation.Id;
+import com.orm.annotation.NotNull;
+import com.orm.annotation.OneToMany;
+import com.orm.annotation.Unique;
+import com.orm.helper.NamingHelper;
+import com.orm.util.QueryBuilder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Resolved mapping of one entity field to its column. Instances are immutable and shared by all
+ * threads through {@link EntityMetadata}.
+ */
+public final class ColumnMetadata {
+
+    public enum Kind {
+        /**
+         * A value stored as is in its column.
+         */
+        PLAIN,
+        /**
+         * A reference to another entity, stored as the id of that entity. The field is either of
+         * the entity type or an {@link EntityRef} of it.
+         */
+        ENTITY,
+        /**
+         * A list of entities, loaded from the table of the element type. It has no column.
+         */
+        LIST
+    }
+
+    /**
+     * How the value of a {@link Kind#PLAIN} column is read and written.
+     */
+    public enum ValueType {
+        LONG,
+        STRING,
+        DOUBLE,
+        BOOLEAN,
+        INT,
+        FLOAT,
+        SHORT,
+        BIG_DECIMAL,
+        TIMESTAMP,
+        DATE,
+        CALENDAR,
+        BYTES,
+        ENUM,
+        /**
+         * Any other type. It is written as its string value and never read back.
+         */
+        OTHER
+    }
+
+    private final Field field;
+    private final String columnName;
+    private final String sqlType;
+    private final Kind kind;
+    private final ValueType valueType;
+    private final boolean id;
+    private final boolean unique;
+    private final boolean uniqueAnnotated;
+    private final boolean notNull;
+    private final boolean lazy;
+    private final Class<?> relationType;
+    private final String targetFieldName;
+
+    ColumnMetadata(Field field) {
+        field.setAccessible(true);
+        Class<?> fieldType = field.getType();
+
+        this.field = field;
+        this.columnName = NamingHelper.toColumnName(field);
+        this.sqlType = QueryBuilder.getColumnType(fieldType);
+        this.id = field.isAnnotationPresent(Id.class);
+
+        Column column = field.getAnnotation(Column.class);
+        this.uniqueAnnotated = field.isAnnotationPresent(Unique.class);
+        this.unique = uniqueAnnotated || (column != null && column.unique());
+        this.notNull = field.isAnnotationPresent(NotNull.class) || (column != null && column.notNull());
+
+        Class<?> typeArgument = getTypeArgument(field);
+        if (SugarRecord.isSugarEntity(fieldType)) {
+            this.kind = Kind.ENTITY;
+            this.relationType = fieldType;
+            this.targetFieldName = null;
+            this.lazy = false;
+        } else if (fieldType.equals(EntityRef.class) && typeArgument != null && SugarRecord.isSugarEntity(typeArgument)) {
+            this.kind = Kind.ENTITY;
+            this.relationType = typeArgument;
+            this.targetFieldName = null;
+            this.lazy = true;
+        } else if (fieldType.equals(List.class)) {
+            OneToMany oneToMany = field.getAnnotation(OneToMany.class);
+            this.kind = Kind.LIST;
+            this.relationType = typeArgument;
+            this.targetFieldName = (oneToMany != null) ? oneToMany.targetField() : null;
+            this.lazy = oneToMany != null && oneToMany.fetch() == FetchType.LAZY;
+        } else {
+            this.kind = Kind.PLAIN;
+            this.relationType = null;
+            this.targetFieldName = null;
+            this.lazy = false;
+        }
+
+        this.valueType = (kind == Kind.PLAIN) ? getValueType(fieldType) : null;
+    }
+
+    private static ValueType getValueType(Class<?> fieldType) {
+        if (fieldType == long.class || fieldType == Long.class) {
+            return ValueType.LONG;
+        } else if (fieldType == String.class) {
+            return ValueType.STRING;
+        } else if (fieldType == double.class || fieldType == Double.class) {
+            return ValueType.DOUBLE;
+        } else if (fieldType == boolean.class || fieldType == Boolean.class) {
+            return ValueType.BOOLEAN;
+        } else if (fieldType == int.class || fieldType == Integer.class) {
+            return ValueType.INT;
+        } else if (fieldType == float.class || fieldType == Float.class) {
+            return ValueType.FLOAT;
+        } else if (fieldType == short.class || fieldType == Short.class) {
+            return ValueType.SHORT;
+        } else if (fieldType == BigDecimal.class) {
+            return ValueType.BIG_DECIMAL;
+        } else if (fieldType == Timestamp.class) {
+            return ValueType.TIMESTAMP;
+        } else if (fieldType == Date.class) {
+            return ValueType.DATE;
+        } else if (fieldType == Calendar.class) {
+            return ValueType.CALENDAR;
+        } else if (fieldType == byte[].class) {
+            return ValueType.BYTES;
+        } else if (fieldType.isEnum()) {
+            return ValueType.ENUM;
+        }
+        return ValueType.OTHER;
+    }
+
+    private static Class<?> getTypeArgument(Field field) {
+        Type genericType = field.getGenericType();
+        if (genericType instanceof ParameterizedType) {
+            Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (elementType instanceof Class) {
+                return (Class<?>) elementType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the field, already made accessible
+     */
+    public Field getField() {
+        return field;
+    }
+
+    public String getFieldName() {
+        return field.getName();
+    }
+
+    public Class<?> getFieldType() {
+        return field.getType();
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * @return the SQL type of the column, as given by {@link QueryBuilder#getColumnType(Class)}
+     */
+    public String getSqlType() {
+        return sqlType;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return how the value of a {@link Kind#PLAIN} column is read and written, null for other kinds
+     */
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    public boolean isId() {
+        return id;
+    }
+
+    /**
+     * @return true if the column has a UNIQUE constraint, from {@link Unique} or
+     *         {@link Column#unique()}
+     */
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * @return true if the field is annotated with {@link Unique}, whose columns are the ones
+     *         {@link SugarRecord#update(Object)} finds the row by, while it sets the columns of
+     *         {@link Column#unique()}
+     */
+    public boolean isUniqueAnnotated() {
+        return uniqueAnnotated;
+    }
+
+    public boolean isNotNull() {
+        return notNull;
+    }
+
+    /**
+     * @return true for {@link EntityRef} fields and {@link FetchType#LAZY} one-to-many lists, which
+     *         are not read along with their entity
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * @return the referenced entity type for {@link Kind#ENTITY} columns, the element type for
+     *         {@link Kind#LIST} columns and null otherwise
+     */
+    public Class<?> getRelationType() {
+        return relationType;
+    }
+
+    /**
+     * @return the {@link OneToMany#targetField()} of a {@link Kind#LIST} column, or null when the
+     *         list is not annotated
+     */
+    public String getTargetFieldName() {
+        return targetFieldName;
+    }
+
+    /**
+     * @return true if the column exists in the table, i.e. it is not a list
+     */
+    public boolean isPersisted() {
+        return kind != Kind.LIST;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnMetadata{" +
+                "field=" + field.getName() +
+                ", columnName=" + columnName +
+                ", kind=" + kind +
+                '}';
+    }
+}
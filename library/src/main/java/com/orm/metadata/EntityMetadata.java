@@ -0,0 +1,283 @@
+package com.orm.metadata;
+
+import com.orm.SchemaGenerator;
+import com.orm.SugarRecord;
+import com.orm.annotation.Id;
+import com.orm.annotation.MultiUnique;
+import com.orm.annotation.Table;
+import com.orm.helper.NamingHelper;
+import com.orm.util.ReflectionUtil;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Everything Sugar needs to know about an entity class to read and write it: table name, id field
+ * and columns with their resolved names and types.
+ *
+ * Metadata is built once per class by {@link #of(Class)} and is immutable afterwards, so it can be
+ * shared by any number of threads without locking. Saving, deleting or inflating an entity only
+ * reads from it and never scans annotations or the class hierarchy again.
+ */
+public final class EntityMetadata {
+    private static final String DEFAULT_ID_COLUMN = "id";
+    private static final ConcurrentMap<Class<?>, EntityMetadata> REGISTRY = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+    private final String tableName;
+    private final boolean tableAnnotated;
+    private final ColumnMetadata idColumn;
+    private final List<Field> fields;
+    private final List<ColumnMetadata> columns;
+    private final List<ColumnMetadata> plainColumns;
+    private final List<ColumnMetadata> entityColumns;
+    private final List<ColumnMetadata> listColumns;
+    private final List<ColumnMetadata> uniqueColumns;
+    private final List<String> multiUniqueColumnNames;
+
+    private EntityMetadata(Class<?> type) {
+        List<Field> tableFields = ReflectionUtil.getTableFields(type);
+        Field idField = SchemaGenerator.findAnnotatedField(type, Id.class);
+
+        List<ColumnMetadata> all = new ArrayList<>(tableFields.size());
+        List<ColumnMetadata> plain = new ArrayList<>();
+        List<ColumnMetadata> entities = new ArrayList<>();
+        List<ColumnMetadata> lists = new ArrayList<>();
+        List<ColumnMetadata> unique = new ArrayList<>();
+        ColumnMetadata id = null;
+
+        for (Field field : tableFields) {
+            ColumnMetadata column = new ColumnMetadata(field);
+            all.add(column);
+
+            if (field.equals(idField)) {
+                id = column;
+            }
+            if (column.isUnique()) {
+                unique.add(column);
+            }
+
+            switch (column.getKind()) {
+                case ENTITY:
+                    entities.add(column);
+                    break;
+                case LIST:
+                    lists.add(column);
+                    break;
+                default:
+                    plain.add(column);
+                    break;
+            }
+        }
+
+        // the id is not always one of the table fields, e.g. when it is declared transient
+        if (id == null && idField != null) {
+            id = new ColumnMetadata(idField);
+        }
+
+        List<String> multiUnique = new ArrayList<>();
+        if (type.isAnnotationPresent(MultiUnique.class)) {
+            for (String name : type.getAnnotation(MultiUnique.class).value().split(",")) {
+                multiUnique.add(NamingHelper.toSQLNameDefault(name.trim()));
+            }
+        }
+
+        this.type = type;
+        this.tableName = NamingHelper.toTableName(type);
+        this.tableAnnotated = type.isAnnotationPresent(Table.class);
+        this.idColumn = id;
+        this.fields = Collections.unmodifiableList(new ArrayList<>(tableFields));
+        this.columns = Collections.unmodifiableList(all);
+        this.plainColumns = Collections.unmodifiableList(plain);
+        this.entityColumns = Collections.unmodifiableList(entities);
+        this.listColumns = Collections.unmodifiableList(lists);
+        this.uniqueColumns = Collections.unmodifiableList(unique);
+        this.multiUniqueColumnNames = Collections.unmodifiableList(multiUnique);
+    }
+
+    /**
+     * Returns the metadata of an entity class, building it on first use.
+     *
+     * @param type the entity class
+     * @return the shared metadata of the class
+     */
+    public static EntityMetadata of(Class<?> type) {
+        EntityMetadata metadata = REGISTRY.get(type);
+
+        if (metadata == null) {
+            EntityMetadata created = new EntityMetadata(type);
+            metadata = REGISTRY.putIfAbsent(type, created);
+            if (metadata == null) {
+                metadata = created;
+            }
+        }
+
+        return metadata;
+    }
+
+    public static void clearCache() {
+        REGISTRY.clear();
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return true if the class is annotated with {@link Table}
+     */
+    public boolean isTableAnnotated() {
+        return tableAnnotated;
+    }
+
+    /**
+     * @return true if the class extends {@link SugarRecord}
+     */
+    public boolean isSugarRecord() {
+        return SugarRecord.class.isAssignableFrom(type);
+    }
+
+    public boolean hasIdField() {
+        return idColumn != null;
+    }
+
+    /**
+     * @return the column of the {@link Id} annotated field, or null if the class has none
+     */
+    public ColumnMetadata getIdColumn() {
+        return idColumn;
+    }
+
+    /**
+     * @return the {@link Id} annotated field, already made accessible, or null if the class has none
+     */
+    public Field getIdField() {
+        return (idColumn != null) ? idColumn.getField() : null;
+    }
+
+    public Class<?> getIdType() {
+        return (idColumn != null) ? idColumn.getFieldType() : Long.class;
+    }
+
+    /**
+     * @return the name of the primary key column
+     */
+    public String getIdColumnName() {
+        return (idColumn != null) ? idColumn.getFieldName() : DEFAULT_ID_COLUMN;
+    }
+
+    /**
+     * Reads the id of an entity.
+     *
+     * @param entity an instance of this metadata's class
+     * @return the value of the id field, or null if the class has no id field or it is not set
+     */
+    public Object getId(Object entity) {
+        if (idColumn == null) {
+            return null;
+        }
+
+        try {
+            return idColumn.getField().get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Can't read id of " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Sets the id of an entity to the row id it was inserted with. Does nothing if the class has no
+     * id field or the id is not numeric.
+     *
+     * @param entity an instance of this metadata's class
+     * @param id the row id
+     */
+    public void setGeneratedId(Object entity, long id) {
+        if (idColumn == null) {
+            return;
+        }
+
+        Field idField = idColumn.getField();
+        Class<?> idType = idField.getType();
+        try {
+            if (idType == Long.class || idType == long.class) {
+                idField.set(entity, id);
+            } else if (idType == Integer.class || idType == int.class) {
+                idField.set(entity, (int) id);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Can't set id of " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * @return the fields of the table, in the order returned by {@link ReflectionUtil#getTableFields(Class)}
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return all columns, in the same order as {@link #getFields()}
+     */
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param fieldName the name of a field of the class
+     * @return the column of the field, with its {@link com.orm.annotation.Column} name if it has one, or
+     *         the default column name of the field if it has no column
+     */
+    public String getColumnName(String fieldName) {
+        for (ColumnMetadata column : columns) {
+            if (column.getField().getName().equals(fieldName)) {
+                return column.getColumnName();
+            }
+        }
+        return NamingHelper.toSQLNameDefault(fieldName);
+    }
+
+    public List<ColumnMetadata> getPlainColumns() {
+        return plainColumns;
+    }
+
+    public List<ColumnMetadata> getEntityColumns() {
+        return entityColumns;
+    }
+
+    public List<ColumnMetadata> getListColumns() {
+        return listColumns;
+    }
+
+    /**
+     * @return the columns that are {@link com.orm.annotation.Unique} on their own
+     */
+    public List<ColumnMetadata> getUniqueColumns() {
+        return uniqueColumns;
+    }
+
+    /**
+     * @return the column names of the {@link MultiUnique} constraint, empty if there is none
+     */
+    public List<String> getMultiUniqueColumnNames() {
+        return multiUniqueColumnNames;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityMetadata{" +
+                "type=" + type.getSimpleName() +
+                ", tableName=" + tableName +
+                ", idColumn=" + getIdColumnName() +
+                ", columns=" + columns +
+                '}';
+    }
+}
@@ -0,0 +1,33 @@
+package com.orm.query;
+
+import java.util.List;
+
+/**
+ * A page of the results of a {@link Select}, read with
+ * {@link Select#page(String, boolean, int, String)}, with the token that reads the next one.
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final String nextToken;
+
+    Page(List<T> items, String nextToken) {
+        this.items = items;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the token to pass to {@link Select#page(String, boolean, int, String)} for the next
+     *         page, or null if this is the last one
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
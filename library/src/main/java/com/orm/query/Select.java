@@ -3,12 +3,20 @@ package com.orm.query;
 import android.database.Cursor;
 
 import com.orm.SugarRecord;
-import com.orm.helper.NamingHelper;
+import com.orm.cache.Caches;
+import com.orm.cache.QueryCache;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+import com.orm.util.CloseableIterator;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
+import static com.orm.SugarContext.getSugarContext;
+
 public class Select<T> implements Iterable {
     private static final String SPACE = " ";
     private static final String SINGLE_QUOTE = "'";
@@ -20,6 +28,9 @@ public class Select<T> implements Iterable {
     private static final String GROUP_BY = "GROUP BY ";
     private static final String LIMIT = "LIMIT ";
     private static final String OFFSET = "OFFSET ";
+    private static final String ASC = " ASC";
+    private static final String DESC = " DESC";
+    private static final String NO_LIMIT = String.valueOf(Long.MAX_VALUE);
 
     private Class<T> record;
     private String[] arguments;
@@ -29,6 +40,8 @@ public class Select<T> implements Iterable {
     private String limit = "";
     private String offset = "";
     private List<String> args = new ArrayList<>();
+    private boolean noCache;
+    private boolean readOnly;
 
     public Select(Class<T> record) {
         this.record = record;
@@ -58,6 +71,109 @@ public class Select<T> implements Iterable {
         return this;
     }
 
+    /**
+     * Keeps the rows that come after the given value of a column, for keyset pagination: unlike
+     * {@link #offset(String)}, the query seeks to the value through the index of the column, so a
+     * page deep into the table costs the same as the first one. Orders by the column if no order is
+     * set.
+     *
+     * @param column the column, which should be indexed
+     * @param value the value of the column in the last row read
+     */
+    public Select<T> after(String column, Object value) {
+        return seek(column, toArgument(value), null, false);
+    }
+
+    /**
+     * Keeps the rows that come after the given row in the order of a column and then of the id,
+     * which breaks the ties between rows with the same value. Orders by the column and the id,
+     * ascending, if no order is set.
+     *
+     * @param column the column, which should be indexed
+     * @param value the value of the column in the last row read, or null
+     * @param id the id of the last row read
+     */
+    public Select<T> after(String column, Object value, Long id) {
+        return seek(column, toArgument(value), id, false);
+    }
+
+    /**
+     * Keeps the rows that come before the given value of a column, nearest first, the way
+     * {@link #after(String, Object)} keeps the ones after it.
+     */
+    public Select<T> before(String column, Object value) {
+        return seek(column, toArgument(value), null, true);
+    }
+
+    /**
+     * Keeps the rows that come before the given row in the order of a column and then of the id,
+     * nearest first. Orders by the column and the id, descending, if no order is set.
+     */
+    public Select<T> before(String column, Object value, Long id) {
+        return seek(column, toArgument(value), id, true);
+    }
+
+    /**
+     * Reads a page of the results, ordered by a column and then by the id, replacing the order,
+     * limit and offset of this Select. The token of the page reads the next one with a seek on the
+     * column, instead of an offset, so that every page costs the same.
+     *
+     * @param column the column to page through, which should be indexed
+     * @param descending true to read the largest values first
+     * @param size the number of rows of a page
+     * @param token the {@link Page#getNextToken() token} of the previous page, or null for the first
+     * @return the page, with the token of the next one if there are more rows
+     */
+    public Page<T> page(String column, boolean descending, int size, String token) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size of a page must be positive");
+        }
+
+        Select<T> select = copy();
+        select.orderBy = order(column, descending);
+        if (token != null) {
+            int separator = token.indexOf(':');
+            String value = token.substring(separator + 1);
+            if (separator <= 0 || !(value.equals("N") || value.startsWith("V"))) {
+                throw new IllegalArgumentException("Not a page token: " + token);
+            }
+            select.seek(column, value.equals("N") ? null : value.substring(1),
+                    Long.valueOf(token.substring(0, separator)), descending);
+        }
+        select.limit = String.valueOf(size + 1);
+        select.offset = "";
+
+        List<T> rows = select.list();
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, size));
+        return new Page<>(items, getToken(column, items.get(size - 1)));
+    }
+
+    public Page<T> page(String column, int size, String token) {
+        return page(column, false, size, token);
+    }
+
+    /**
+     * Runs {@link #list()} and {@link #count()} against the database even when the
+     * {@link QueryCache query cache} is enabled, and leaves their results out of it.
+     */
+    public Select<T> noCache() {
+        this.noCache = true;
+        return this;
+    }
+
+    /**
+     * Reads the entities of {@link #list()}, {@link #first()} and {@link #iterator()} the way
+     * {@link SugarRecord#findReadOnly(Class, String, String[], String, String, String)} does, for
+     * entities that will not be saved back. Read-only results are never cached.
+     */
+    public Select<T> readOnly() {
+        this.readOnly = true;
+        return this;
+    }
+
     public Select<T> where(String whereClause) {
         this.whereClause = whereClause;
         return this;
@@ -106,6 +222,138 @@ public class Select<T> implements Iterable {
         whereClause += LEFT_PARENTHESIS + toAppend + RIGHT_PARENTHESIS;
     }
 
+    private void mergeCondition(String condition, String... conditionArgs) {
+        if (!whereClause.isEmpty()) {
+            // the clause may be a raw one with an OR at its top level
+            whereClause = LEFT_PARENTHESIS + whereClause + RIGHT_PARENTHESIS + SPACE + Condition.Type.AND.name() + SPACE;
+        }
+        whereClause += LEFT_PARENTHESIS + condition + RIGHT_PARENTHESIS;
+
+        Collections.addAll(args, conditionArgs);
+        if (arguments != null) {
+            String[] merged = new String[arguments.length + conditionArgs.length];
+            System.arraycopy(arguments, 0, merged, 0, arguments.length);
+            System.arraycopy(conditionArgs, 0, merged, arguments.length, conditionArgs.length);
+            arguments = merged;
+        }
+    }
+
+    /**
+     * Adds the condition of the rows after (or before) a row in the order of a column, then of
+     * the id. SQLite sorts NULL before any value, so the rows with a NULL value come first when
+     * ascending and last when descending.
+     */
+    private Select<T> seek(String column, String value, Long id, boolean descending) {
+        String idColumn = EntityMetadata.of(record).getIdColumnName();
+        String compare = descending ? " < ?" : " > ?";
+
+        if (column.equalsIgnoreCase(idColumn)) {
+            if (value == null) {
+                throw new IllegalArgumentException("Can't seek from a null id");
+            }
+            mergeCondition(column + compare, value);
+        } else if (id == null) {
+            if (value == null) {
+                throw new IllegalArgumentException("Can't seek from a null value without the id of its row");
+            }
+            mergeCondition(descending
+                    ? column + compare + " OR " + column + " IS NULL"
+                    : column + compare, value);
+        } else if (value == null) {
+            mergeCondition(descending
+                    ? column + " IS NULL AND " + idColumn + compare
+                    : "(" + column + " IS NULL AND " + idColumn + compare + ") OR " + column + " IS NOT NULL",
+                    String.valueOf(id));
+        } else {
+            String condition = column + compare + " OR (" + column + " = ? AND " + idColumn + compare + ")";
+            if (descending) {
+                condition += " OR " + column + " IS NULL";
+            }
+            mergeCondition(condition, value, value, String.valueOf(id));
+        }
+
+        if (orderBy.isEmpty()) {
+            orderBy = (id == null) ? column + (descending ? DESC : ASC) : order(column, descending);
+        }
+        return this;
+    }
+
+    private String order(String column, boolean descending) {
+        String direction = descending ? DESC : ASC;
+        String idColumn = EntityMetadata.of(record).getIdColumnName();
+        if (column.equalsIgnoreCase(idColumn)) {
+            return column + direction;
+        }
+        return column + direction + ", " + idColumn + direction;
+    }
+
+    /**
+     * @return the token of the row of an entity: its id and its value of the column
+     */
+    private String getToken(String column, T entity) {
+        EntityMetadata metadata = EntityMetadata.of(record);
+        Object id = metadata.getId(entity);
+        if (!(id instanceof Number)) {
+            throw new IllegalStateException(record.getSimpleName() + " has no numeric id to page with");
+        }
+
+        Object value = id;
+        if (!column.equalsIgnoreCase(metadata.getIdColumnName())) {
+            value = getColumnValue(metadata, column, entity);
+        }
+        String argument = toArgument(value);
+        return ((Number) id).longValue() + ":" + (argument == null ? "N" : "V" + argument);
+    }
+
+    private static Object getColumnValue(EntityMetadata metadata, String column, Object entity) {
+        for (ColumnMetadata columnMetadata : metadata.getPlainColumns()) {
+            if (columnMetadata.getColumnName().equalsIgnoreCase(column)) {
+                try {
+                    return columnMetadata.getField().get(entity);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Can't read " + columnMetadata.getFieldName(), e);
+                }
+            }
+        }
+        throw new IllegalArgumentException("No column " + column + " in " + metadata.getTableName());
+    }
+
+    /**
+     * @return the value as it is stored in its column, as an argument of a query
+     */
+    private static String toArgument(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? "1" : "0";
+        }
+        if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        }
+        if (value instanceof Calendar) {
+            return String.valueOf(((Calendar) value).getTimeInMillis());
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value.toString();
+    }
+
+    private Select<T> copy() {
+        Select<T> copy = new Select<>(record);
+        copy.arguments = (arguments == null) ? null : arguments.clone();
+        copy.whereClause = whereClause;
+        copy.orderBy = orderBy;
+        copy.groupBy = groupBy;
+        copy.limit = limit;
+        copy.offset = offset;
+        copy.args = new ArrayList<>(args);
+        copy.noCache = noCache;
+        copy.readOnly = readOnly;
+        return copy;
+    }
+
     public Select<T> whereOr(Condition... args) {
         mergeConditions(args, Condition.Type.OR);
         return this;
@@ -128,22 +376,60 @@ public class Select<T> implements Iterable {
     }
 
     public Cursor getCursor() {
-       return SugarRecord.getCursor(record, whereClause, arguments, groupBy, orderBy, limit);
+       return SugarRecord.getCursor(record, whereClause, arguments, groupBy, orderBy, getLimit());
     }
     public List<T> list() {
         if (arguments == null) {
             arguments = convertArgs(args);
         }
 
-        return SugarRecord.find(record, whereClause, arguments, groupBy, orderBy, limit);
+        if (readOnly) {
+            return SugarRecord.findReadOnly(record, whereClause, arguments, groupBy, orderBy, getLimit());
+        }
+
+        QueryCache cache = (noCache || Caches.inTransaction()) ? null : QueryCache.getInstance();
+        if (cache == null) {
+            return SugarRecord.find(record, whereClause, arguments, groupBy, orderBy, getLimit());
+        }
+
+        String key = getCacheKey("list");
+        QueryCache.Stamp stamp = cache.stamp(getTableName());
+        Cursor cached = cache.getRows(key, stamp);
+        if (cached != null) {
+            return SugarRecord.getEntitiesFromCursor(cached, record);
+        }
+
+        Cursor cursor = SugarRecord.getCursor(record, whereClause,
+                (arguments != null) ? SugarRecord.replaceArgs(arguments) : null, groupBy, orderBy, getLimit());
+        try {
+            cache.putRows(key, stamp, record, cursor);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        return SugarRecord.getEntitiesFromCursor(cursor, record);
     }
     
     public long count() {
         if (arguments == null) {
             arguments = convertArgs(args);
         }
-    	
-        return SugarRecord.count(record, whereClause, arguments, groupBy, orderBy, limit);
+
+        QueryCache cache = (noCache || Caches.inTransaction()) ? null : QueryCache.getInstance();
+        if (cache == null) {
+            return SugarRecord.count(record, whereClause, arguments, groupBy, orderBy, limit);
+        }
+
+        String key = getCacheKey("count");
+        QueryCache.Stamp stamp = cache.stamp(getTableName());
+        Long cached = cache.getCount(key, stamp);
+        if (cached != null) {
+            return cached;
+        }
+
+        long count = SugarRecord.count(record, whereClause, arguments, groupBy, orderBy, limit);
+        cache.putCount(key, stamp, count);
+        return count;
     }
 
     public T first() {
@@ -151,13 +437,16 @@ public class Select<T> implements Iterable {
             arguments = convertArgs(args);
         }
 
-        List<T> list = SugarRecord.find(record, whereClause, arguments, groupBy, orderBy, "1");
+        String firstLimit = offset.isEmpty() ? "1" : offset + ",1";
+        List<T> list = readOnly
+                ? SugarRecord.findReadOnly(record, whereClause, arguments, groupBy, orderBy, firstLimit)
+                : SugarRecord.find(record, whereClause, arguments, groupBy, orderBy, firstLimit);
         return list.size() > 0 ? list.get(0) : null;
     }
     
     String toSql() {
         StringBuilder sql = new StringBuilder();
-        sql.append(SELECT_FROM).append(NamingHelper.toTableName(this.record)).append(SPACE);
+        sql.append(SELECT_FROM).append(EntityMetadata.of(this.record).getTableName()).append(SPACE);
 
         if (!whereClause.isEmpty()) {
             sql.append(WHERE).append(whereClause).append(SPACE);
@@ -182,6 +471,39 @@ public class Select<T> implements Iterable {
         return sql.toString();
     }
 
+    /**
+     * @return the limit of the query with its offset, in the "offset,limit" form that
+     *         {@link android.database.sqlite.SQLiteDatabase#query} accepts
+     */
+    private String getLimit() {
+        if (offset.isEmpty()) {
+            return limit;
+        }
+        return offset + "," + (limit.isEmpty() ? NO_LIMIT : limit);
+    }
+
+    private String getTableName() {
+        return EntityMetadata.of(record).getTableName();
+    }
+
+    /**
+     * @return the SQL of the query and its arguments, each prefixed with its length so that no two
+     *         argument lists give the same key
+     */
+    String getCacheKey(String kind) {
+        StringBuilder key = new StringBuilder(kind).append(':').append(toSql());
+        if (arguments != null) {
+            for (String argument : arguments) {
+                if (argument == null) {
+                    key.append("|-");
+                } else {
+                    key.append('|').append(argument.length()).append(':').append(argument);
+                }
+            }
+        }
+        return key.toString();
+    }
+
     String getWhereCond() {
         return whereClause;
     }
@@ -194,13 +516,29 @@ public class Select<T> implements Iterable {
         return argsList.toArray(new String[argsList.size()]);
     }
 
+    /**
+     * @return an iterator over the results, which closes its cursor after the last row; close it
+     *         when stopping before then, or use {@link #forEachRow(SugarRecord.RowCallback)}
+     */
     @Override
-    public Iterator<T> iterator() {
+    public CloseableIterator<T> iterator() {
         if (arguments == null) {
             arguments = convertArgs(args);
         }
 
-        return SugarRecord.findAsIterator(record, whereClause, arguments, groupBy, orderBy, limit);
+        if (readOnly) {
+            return SugarRecord.findReadOnlyAsIterator(record, whereClause, arguments, groupBy, orderBy, getLimit());
+        }
+        return SugarRecord.findAsIterator(record, whereClause, arguments, groupBy, orderBy, getLimit());
     }
 
+    /**
+     * Streams the results to a callback one row at a time, until the callback asks to stop, and
+     * closes the cursor whether or not every row was read.
+     *
+     * @return the number of rows given to the callback
+     */
+    public int forEachRow(SugarRecord.RowCallback<? super T> callback) {
+        return SugarRecord.forEach(iterator(), callback);
+    }
 }
@@ -0,0 +1,18 @@
+package com.orm.util;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator over the rows of an open cursor, which it closes once the last row is read. A caller
+ * that stops before the end closes it, in a finally block or with try-with-resources (Android 4.4
+ * and up), so that the cursor and its window are released at once.
+ */
+public interface CloseableIterator<E> extends Iterator<E>, Closeable {
+
+    /**
+     * Closes the cursor. Does nothing if it is already closed.
+     */
+    @Override
+    void close();
+}
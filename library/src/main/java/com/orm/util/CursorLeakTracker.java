@@ -0,0 +1,132 @@
+package com.orm.util;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import com.orm.helper.ManifestHelper;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the cursors of Sugar iterators that were dropped without being read to the end or closed.
+ *
+ * When enabled, by default in debug mode, each tracked iterator records where it was created.
+ * Once the garbage collector finds an iterator that was never closed, the next tracked iterator
+ * logs the leak with that stack trace and closes the cursor, releasing its window.
+ */
+public final class CursorLeakTracker {
+    private static final String LOG_TAG = "Sugar";
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+    private static final Set<Handle> OPEN = new HashSet<>();
+    private static Boolean enabled = null;
+
+    //Prevent instantiation..
+    private CursorLeakTracker() { }
+
+    public static boolean isEnabled() {
+        Boolean value = enabled;
+        return (null == value) ? ManifestHelper.isDebugEnabled() : value;
+    }
+
+    /**
+     * @param enabled true or false to track cursors or not, or null to track them in debug mode only
+     */
+    public static void setEnabled(Boolean enabled) {
+        CursorLeakTracker.enabled = enabled;
+    }
+
+    /**
+     * Starts tracking the cursor of an iterator, if tracking is enabled.
+     *
+     * @param owner the iterator, which leaks its cursor if it is collected before being closed
+     * @param cursor the cursor of the iterator
+     * @return the handle to {@link Handle#closed() release} when the iterator closes the cursor, or
+     *         null if tracking is disabled
+     */
+    public static Handle track(Object owner, Cursor cursor) {
+        if (!isEnabled() || cursor == null) {
+            return null;
+        }
+
+        expungeLeaks();
+        Handle handle = new Handle(owner, cursor);
+        synchronized (OPEN) {
+            OPEN.add(handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Reports and closes the cursors of the iterators collected since the last call without being
+     * closed.
+     *
+     * @return the number of leaked cursors found
+     */
+    public static int expungeLeaks() {
+        int leaks = 0;
+        Reference<?> reference;
+
+        while ((reference = QUEUE.poll()) != null) {
+            Handle handle = (Handle) reference;
+            boolean open;
+            synchronized (OPEN) {
+                open = OPEN.remove(handle);
+            }
+            if (!open) {
+                continue;
+            }
+
+            leaks++;
+            Log.w(LOG_TAG, "A Sugar iterator was dropped without being closed, it was created here:", handle.origin);
+            if (!handle.cursor.isClosed()) {
+                handle.cursor.close();
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * @return where each tracked iterator that is still open was created
+     */
+    public static List<Throwable> getOpenCursors() {
+        List<Throwable> origins = new ArrayList<>();
+        synchronized (OPEN) {
+            for (Handle handle : OPEN) {
+                origins.add(handle.origin);
+            }
+        }
+        return origins;
+    }
+
+    /**
+     * A tracked cursor, which holds the cursor so that it can still be closed once its iterator is
+     * collected.
+     */
+    public static final class Handle extends WeakReference<Object> {
+        private final Cursor cursor;
+        private final Throwable origin;
+
+        private Handle(Object owner, Cursor cursor) {
+            super(owner, QUEUE);
+            this.cursor = cursor;
+            this.origin = new Throwable("Iterator created");
+        }
+
+        /**
+         * Stops tracking the cursor, once its iterator has closed it.
+         */
+        public void closed() {
+            synchronized (OPEN) {
+                OPEN.remove(this);
+            }
+            clear();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.orm.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Remembers the row ids of entities that have no {@link com.orm.annotation.Id} field, so that saving
+ * the same instance again replaces its row instead of inserting a new one.
+ *
+ * Entities are matched by identity, not by {@code equals}, and held weakly, so that an entity that is
+ * no longer used is forgotten. Ids are kept as primitives. The map is split into stripes by identity
+ * hash, each with its own lock, so that threads saving and loading different entities rarely wait on
+ * each other.
+ */
+public final class EntityIdMap {
+    private static final int STRIPES = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public EntityIdMap() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Remembers the row id of an entity, replacing the one it had.
+     */
+    public void put(Object entity, long id) {
+        int hash = hash(entity);
+        stripeFor(hash).put(entity, hash, id);
+    }
+
+    /**
+     * @return true if the row id of the entity is known
+     */
+    public boolean contains(Object entity) {
+        int hash = hash(entity);
+        return stripeFor(hash).find(entity, hash) != null;
+    }
+
+    /**
+     * @param defaultId the value to return if the row id of the entity is not known
+     * @return the row id of the entity
+     */
+    public long get(Object entity, long defaultId) {
+        int hash = hash(entity);
+        Entry entry = stripeFor(hash).find(entity, hash);
+        return (entry != null) ? entry.id : defaultId;
+    }
+
+    /**
+     * Forgets the row id of an entity, once its row is deleted.
+     */
+    public void remove(Object entity) {
+        int hash = hash(entity);
+        stripeFor(hash).remove(entity, hash);
+    }
+
+    /**
+     * @return the number of entities with a known row id, including ones just collected
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripes[(hash >>> 16 ^ hash) & (STRIPES - 1)];
+    }
+
+    private static int hash(Object entity) {
+        return System.identityHashCode(entity);
+    }
+
+    /**
+     * A chained hash table of weakly held entities, expunging collected ones as it is written to.
+     */
+    private static final class Stripe {
+        private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+        private Entry[] table = new Entry[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized Entry find(Object entity, int hash) {
+            for (Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.get() == entity) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        synchronized void put(Object entity, int hash, long id) {
+            expungeCollected();
+
+            Entry entry = find(entity, hash);
+            if (entry != null) {
+                entry.id = id;
+                return;
+            }
+
+            if (size >= table.length * 3 / 4) {
+                resize();
+            }
+            int index = hash & (table.length - 1);
+            table[index] = new Entry(entity, hash, id, table[index], queue);
+            size++;
+        }
+
+        synchronized void remove(Object entity, int hash) {
+            expungeCollected();
+
+            Entry entry = find(entity, hash);
+            if (entry != null) {
+                unlink(entry);
+                entry.clear();
+            }
+        }
+
+        synchronized int size() {
+            expungeCollected();
+            return size;
+        }
+
+        synchronized void clear() {
+            while (queue.poll() != null) {
+                // the table is dropped along with these entries
+            }
+            table = new Entry[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        private void expungeCollected() {
+            Object collected;
+            while ((collected = queue.poll()) != null) {
+                unlink((Entry) collected);
+            }
+        }
+
+        private void unlink(Entry entry) {
+            int index = entry.hash & (table.length - 1);
+            Entry previous = null;
+            for (Entry current = table[index]; current != null; previous = current, current = current.next) {
+                if (current == entry) {
+                    if (previous == null) {
+                        table[index] = current.next;
+                    } else {
+                        previous.next = current.next;
+                    }
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        private void resize() {
+            Entry[] newTable = new Entry[table.length * 2];
+            for (Entry head : table) {
+                Entry entry = head;
+                while (entry != null) {
+                    Entry next = entry.next;
+                    int index = entry.hash & (newTable.length - 1);
+                    entry.next = newTable[index];
+                    newTable[index] = entry;
+                    entry = next;
+                }
+            }
+            table = newTable;
+        }
+    }
+
+    private static final class Entry extends WeakReference<Object> {
+        final int hash;
+        long id;
+        Entry next;
+
+        Entry(Object entity, int hash, long id, Entry next, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.hash = hash;
+            this.id = id;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.orm.util;
+
+import com.orm.SugarRecord;
+import com.orm.metadata.EntityMetadata;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * The list of a {@link com.orm.annotation.FetchType#LAZY} one-to-many relation. The elements are
+ * read on first access, iteration and {@link #add(Object)} included, and {@link #size()} and
+ * {@link #isEmpty()} are answered with a COUNT until then, run again on every call since the
+ * children may be saved or deleted in between. Once read, it behaves like the
+ * {@link java.util.ArrayList} of an eager relation.
+ *
+ * Like the lists of eager relations, it is not synchronized.
+ *
+ * @param <T> the element entity class
+ */
+public final class LazyList<T> extends AbstractList<T> {
+    private final Class<T> type;
+    private final String targetFieldName;
+    private final Object owner;
+    private final long ownerId;
+    private List<T> elements;
+
+    /**
+     * @param type the element entity class
+     * @param targetFieldName the field of the elements that references the owner
+     * @param owner the entity that owns the list
+     * @param ownerId the id of the owner
+     */
+    public LazyList(Class<T> type, String targetFieldName, Object owner, long ownerId) {
+        this.type = type;
+        this.targetFieldName = targetFieldName;
+        this.owner = owner;
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * @return true if the elements were read
+     */
+    public boolean isLoaded() {
+        return elements != null;
+    }
+
+    private List<T> load() {
+        if (elements == null) {
+            elements = SugarRecord.findOneToMany(type, targetFieldName, owner, ownerId);
+        }
+        return elements;
+    }
+
+    @Override
+    public T get(int index) {
+        return load().get(index);
+    }
+
+    @Override
+    public int size() {
+        if (elements != null) {
+            return elements.size();
+        }
+        long count = SugarRecord.count(type, EntityMetadata.of(type).getColumnName(targetFieldName) + " = ?",
+                String.valueOf(ownerId));
+        // a COUNT that failed tells nothing, the elements are read instead
+        return (count >= 0) ? (int) count : load().size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        load();
+        return super.iterator();
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        load();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public boolean add(T element) {
+        load();
+        return super.add(element);
+    }
+
+    @Override
+    public T set(int index, T element) {
+        return load().set(index, element);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        load().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        T removed = load().remove(index);
+        modCount++;
+        return removed;
+    }
+}
@@ -1,5 +1,6 @@
 package com.orm.util;
 
+import com.orm.EntityRef;
 import com.orm.SugarRecord;
 
 import java.lang.RuntimeException;
@@ -8,13 +9,19 @@ import java.math.BigDecimal;
 
 public class QueryBuilder {
 
+    /**
+     * SQLITE_MAX_VARIABLE_NUMBER, the number of parameters a single statement can bind.
+     */
+    public static final int MAX_VARIABLES = 999;
+
     public static String getColumnType(Class<?> type) {
         if ((type.equals(Boolean.class)) ||
                 (type.equals(Boolean.TYPE)) ||
                 (type.equals(Integer.class)) ||
                 (type.equals(Integer.TYPE)) ||
                 (type.equals(Long.class)) ||
-                (type.equals(Long.TYPE)) || (
+                (type.equals(Long.TYPE)) ||
+                (type.equals(EntityRef.class)) || (
                 (!type.isPrimitive()) &&
                         (SugarRecord.class.isAssignableFrom(type))))  {
             return "INTEGER";
@@ -3,16 +3,18 @@ package com.orm.util;
 import android.content.ContentValues;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
-import com.orm.annotation.Id;
-import com.orm.SchemaGenerator;
+import com.orm.EntityRef;
 import com.orm.SugarRecord;
 import com.orm.annotation.Ignore;
 import com.orm.annotation.Table;
 import com.orm.helper.ManifestHelper;
 import com.orm.helper.MultiDexHelper;
 import com.orm.helper.NamingHelper;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
 
 import java.io.File;
 import java.io.IOException;
@@ -28,7 +30,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.Map;
 
 public final class ReflectionUtil {
 
@@ -67,21 +68,26 @@ public final class ReflectionUtil {
         return fields;
     }
 
-    public static void addFieldValueToColumn(ContentValues values, Field column, Object object,
-                                             Map<Object, Object> entitiesMap) {
+    public static void addFieldValueToColumn(ContentValues values, Field column, Object object) {
         column.setAccessible(true); //column field
+        addFieldValueToColumn(values, column, NamingHelper.toColumnName(column), object);
+    }
+
+    public static void addFieldValueToColumn(ContentValues values, ColumnMetadata column, Object object) {
+        addFieldValueToColumn(values, column.getField(), column.getColumnName(), object);
+    }
+
+    private static void addFieldValueToColumn(ContentValues values, Field column, String columnName, Object object) {
         Class<?> columnType = column.getType(); //type of the column
         try {
-            String columnName = NamingHelper.toColumnName(column); //name of the column
             Object columnValue = column.get(object); //current value of the column
 
             if (columnType.isAnnotationPresent(Table.class)) { //if column is table
                 Field field; //get id field
 //                try {
 //                    field = columnType.getDeclaredField("id");
-                    field = SchemaGenerator.findAnnotatedField(columnType, Id.class);
+                    field = EntityMetadata.of(columnType).getIdField();
                     if(field!=null) {
-                        field.setAccessible(true);
                         if (columnValue != null) {
                             values.put(columnName, String.valueOf(field.get(columnValue)));
                         } else {
@@ -101,13 +107,14 @@ public final class ReflectionUtil {
 //                    }
 //                }
             } else if (SugarRecord.class.isAssignableFrom(columnType)) {
+                if (columnValue != null) {
+                    // saved first, so that a new relation stores the id it was just given
+                    ((SugarRecord) columnValue).save();
+                }
                 values.put(columnName,
                         (columnValue != null)
                                 ? ((SugarRecord) columnValue).getIdField()
                                 : "0");
-                if(columnValue!=null){
-                    ((SugarRecord)columnValue).save();
-                }
             } else {
                 if (columnType.equals(Short.class) || columnType.equals(short.class)) {
                     values.put(columnName, (Short) columnValue);
@@ -153,6 +160,13 @@ public final class ReflectionUtil {
                     }
                 } else if (columnType.equals(List.class)) {
                     //ignore
+                } else if (columnType.equals(EntityRef.class)) {
+                    Long id = (columnValue != null) ? ((EntityRef<?>) columnValue).getId() : null;
+                    if (id == null) {
+                        values.putNull(columnName);
+                    } else {
+                        values.put(columnName, id);
+                    }
                 } else {
                     if (columnValue == null) {
                         values.putNull(columnName);
@@ -171,22 +185,234 @@ public final class ReflectionUtil {
         }
     }
 
-    public static void setFieldValueFromCursor(Cursor cursor, Field field, Object object) {
-        field.setAccessible(true);
+    /**
+     * Binds the value of a column to a compiled statement, the same way
+     * {@link #addFieldValueToColumn(ContentValues, ColumnMetadata, Object)} puts it in
+     * {@link ContentValues}. Primitive fields are read without boxing.
+     *
+     * @param statement the statement to bind to
+     * @param index the 1-based index of the parameter
+     * @param column a {@link ColumnMetadata.Kind#PLAIN} or {@link ColumnMetadata.Kind#ENTITY} column
+     * @param object the entity to read the value from
+     */
+    public static void bindFieldValue(SQLiteStatement statement, int index, ColumnMetadata column, Object object) {
+        Field field = column.getField();
         try {
-            Class fieldType = field.getType();
-            String colName = NamingHelper.toColumnName(field);
+            if (column.getKind() == ColumnMetadata.Kind.ENTITY) {
+                if (column.isLazy()) {
+                    EntityRef<?> reference = (EntityRef<?>) field.get(object);
+                    Long id = (reference != null) ? reference.getId() : null;
+                    if (id == null) {
+                        statement.bindNull(index);
+                    } else {
+                        statement.bindLong(index, id);
+                    }
+                } else {
+                    bindRelationId(statement, index, column.getFieldType(), field.get(object));
+                }
+                return;
+            }
 
-            int columnIndex = cursor.getColumnIndex(colName);
+            ColumnMetadata.ValueType valueType = column.getValueType();
+            if (field.getType().isPrimitive()) {
+                switch (valueType) {
+                    case LONG:
+                        statement.bindLong(index, field.getLong(object));
+                        break;
+                    case INT:
+                        statement.bindLong(index, field.getInt(object));
+                        break;
+                    case SHORT:
+                        statement.bindLong(index, field.getShort(object));
+                        break;
+                    case DOUBLE:
+                        statement.bindDouble(index, field.getDouble(object));
+                        break;
+                    case FLOAT:
+                        statement.bindDouble(index, field.getFloat(object));
+                        break;
+                    case BOOLEAN:
+                        statement.bindLong(index, field.getBoolean(object) ? 1 : 0);
+                        break;
+                    default:
+                        statement.bindString(index, String.valueOf(field.get(object)));
+                        break;
+                }
+                return;
+            }
 
-            //TODO auto upgrade to add new columns
-            if (columnIndex < 0) {
-                if (ManifestHelper.isDebugEnabled()) {
-                    Log.e("SUGAR", "Invalid colName, you should upgrade database");
+            Object value = field.get(object);
+            if (value == null) {
+                if (valueType == ColumnMetadata.ValueType.BYTES) {
+                    statement.bindBlob(index, "".getBytes());
+                } else {
+                    statement.bindNull(index);
                 }
                 return;
             }
 
+            switch (valueType) {
+                case LONG:
+                case INT:
+                case SHORT:
+                    statement.bindLong(index, ((Number) value).longValue());
+                    break;
+                case DOUBLE:
+                case FLOAT:
+                    statement.bindDouble(index, ((Number) value).doubleValue());
+                    break;
+                case BOOLEAN:
+                    statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+                    break;
+                case STRING:
+                    statement.bindString(index, (String) value);
+                    break;
+                case TIMESTAMP:
+                case DATE:
+                    statement.bindLong(index, ((Date) value).getTime());
+                    break;
+                case CALENDAR:
+                    statement.bindLong(index, ((Calendar) value).getTimeInMillis());
+                    break;
+                case BYTES:
+                    statement.bindBlob(index, (byte[]) value);
+                    break;
+                case ENUM:
+                    statement.bindString(index, ((Enum) value).name());
+                    break;
+                default:
+                    statement.bindString(index, value.toString());
+                    break;
+            }
+        } catch (IllegalAccessException e) {
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.e("Sugar", e.getMessage());
+            }
+            statement.bindNull(index);
+        }
+    }
+
+    private static void bindRelationId(SQLiteStatement statement, int index, Class<?> relationType, Object relation) {
+        if (relation == null) {
+            if (relationType.isAnnotationPresent(Table.class)) {
+                statement.bindNull(index);
+            } else {
+                statement.bindLong(index, 0);
+            }
+            return;
+        }
+
+        if (!relationType.isAnnotationPresent(Table.class)) {
+            // unlike @Table relations, SugarRecord relations are saved along with their owner
+            ((SugarRecord) relation).save();
+        }
+
+        Object id = EntityMetadata.of(relationType).getId(relation);
+        if (id == null) {
+            statement.bindNull(index);
+        } else if (id instanceof Number) {
+            statement.bindLong(index, ((Number) id).longValue());
+        } else {
+            statement.bindString(index, id.toString());
+        }
+    }
+
+    /**
+     * Reads the value of a column the way {@link #bindFieldValue(SQLiteStatement, int, ColumnMetadata, Object)}
+     * binds it, without saving relations: entity columns give the id their relation already has.
+     *
+     * @param column a {@link ColumnMetadata.Kind#PLAIN} or {@link ColumnMetadata.Kind#ENTITY} column
+     * @param object the entity to read the value from
+     * @return a Long, Double, String or byte[], or null
+     */
+    public static Object getColumnValue(ColumnMetadata column, Object object) {
+        try {
+            Object value = column.getField().get(object);
+            if (column.getKind() == ColumnMetadata.Kind.ENTITY) {
+                Object id;
+                if (column.isLazy()) {
+                    id = (value != null) ? ((EntityRef<?>) value).getId() : null;
+                } else if (value != null) {
+                    id = EntityMetadata.of(column.getFieldType()).getId(value);
+                } else {
+                    id = column.getFieldType().isAnnotationPresent(Table.class) ? null : 0L;
+                }
+                return (id instanceof Number) ? (Object) ((Number) id).longValue() : (id != null) ? id.toString() : null;
+            }
+
+            if (value == null) {
+                return (column.getValueType() == ColumnMetadata.ValueType.BYTES) ? "".getBytes() : null;
+            }
+
+            switch (column.getValueType()) {
+                case LONG:
+                case INT:
+                case SHORT:
+                    return ((Number) value).longValue();
+                case DOUBLE:
+                case FLOAT:
+                    return ((Number) value).doubleValue();
+                case BOOLEAN:
+                    return ((Boolean) value) ? 1L : 0L;
+                case STRING:
+                    return value;
+                case TIMESTAMP:
+                case DATE:
+                    return ((Date) value).getTime();
+                case CALENDAR:
+                    return ((Calendar) value).getTimeInMillis();
+                case BYTES:
+                    return ((byte[]) value).clone();
+                case ENUM:
+                    return ((Enum) value).name();
+                default:
+                    return value.toString();
+            }
+        } catch (IllegalAccessException e) {
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.e("Sugar", e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    public static void setFieldValueFromCursor(Cursor cursor, Field field, Object object) {
+        field.setAccessible(true);
+        setFieldValueFromCursor(cursor, field, NamingHelper.toColumnName(field), object);
+    }
+
+    public static void setFieldValueFromCursor(Cursor cursor, ColumnMetadata column, Object object) {
+        setFieldValueFromCursor(cursor, column.getField(), column.getColumnName(), object);
+    }
+
+    /**
+     * Same as {@link #setFieldValueFromCursor(Cursor, ColumnMetadata, Object)}, with the index of
+     * the column already resolved. A negative index leaves the field untouched.
+     */
+    public static void setFieldValueFromCursor(Cursor cursor, int columnIndex, ColumnMetadata column, Object object) {
+        if (columnIndex >= 0) {
+            setFieldValueFromCursor(cursor, column.getField(), column.getColumnName(), columnIndex, object);
+        }
+    }
+
+    private static void setFieldValueFromCursor(Cursor cursor, Field field, String colName, Object object) {
+        int columnIndex = cursor.getColumnIndex(colName);
+
+        //TODO auto upgrade to add new columns
+        if (columnIndex < 0) {
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.e("SUGAR", "Invalid colName, you should upgrade database");
+            }
+            return;
+        }
+
+        setFieldValueFromCursor(cursor, field, colName, columnIndex, object);
+    }
+
+    private static void setFieldValueFromCursor(Cursor cursor, Field field, String colName, int columnIndex, Object object) {
+        try {
+            Class fieldType = field.getType();
+
             if (cursor.isNull(columnIndex)) {
                 return;
             }
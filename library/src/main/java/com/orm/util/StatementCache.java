@@ -0,0 +1,140 @@
+package com.orm.util;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.orm.helper.ManifestHelper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of the compiled statements of one database connection,
+ * keyed by their SQL, so that statements run over and over are compiled once.
+ *
+ * A statement holds its bound arguments, so each run clears and binds them and executes while
+ * holding the lock of the statement; threads running the same SQL take turns, threads running
+ * different SQL don't wait on each other. Statements are reference counted: a statement evicted or
+ * {@link #clear() cleared} while a thread runs it is only released once that run is done.
+ */
+public final class StatementCache {
+    private static final String LOG_TAG = "Sugar";
+
+    public static final int DEFAULT_MAX_SIZE = 25;
+
+    private final SQLiteDatabase database;
+    private final int maxSize;
+    private final Map<String, SQLiteStatement> statements;
+
+    public StatementCache(SQLiteDatabase database, int maxSize) {
+        this.database = database;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Runs a query returning a single number, such as a count or a sum.
+     *
+     * @param sql the query, compiled on first use
+     * @param args the arguments of the query, or null
+     * @return the number in the first column of the first row
+     * @throws android.database.SQLException if the query fails to compile or run
+     */
+    public long simpleQueryForLong(String sql, Object... args) {
+        SQLiteStatement statement = acquire(sql);
+        try {
+            synchronized (statement) {
+                bind(statement, args);
+                return statement.simpleQueryForLong();
+            }
+        } finally {
+            statement.releaseReference();
+        }
+    }
+
+    /**
+     * Runs a statement that returns no rows.
+     *
+     * @param sql the statement, compiled on first use
+     * @param args the arguments of the statement, or null
+     * @throws android.database.SQLException if the statement fails to compile or run
+     */
+    public void execute(String sql, Object... args) {
+        SQLiteStatement statement = acquire(sql);
+        try {
+            synchronized (statement) {
+                bind(statement, args);
+                statement.execute();
+            }
+        } finally {
+            statement.releaseReference();
+        }
+    }
+
+    /**
+     * @return the cached statement, compiled if needed, with a reference held for the caller to
+     *         release
+     */
+    private synchronized SQLiteStatement acquire(String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            if (ManifestHelper.isDebugEnabled()) {
+                Log.d(LOG_TAG, "Compiling " + sql);
+            }
+            statement = database.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        statement.acquireReference();
+        return statement;
+    }
+
+    private static void bind(SQLiteStatement statement, Object[] args) {
+        statement.clearBindings();
+        if (args == null) {
+            return;
+        }
+
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                statement.bindNull(i + 1);
+            } else if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+                statement.bindLong(i + 1, ((Number) arg).longValue());
+            } else if (arg instanceof Double || arg instanceof Float) {
+                statement.bindDouble(i + 1, ((Number) arg).doubleValue());
+            } else if (arg instanceof byte[]) {
+                statement.bindBlob(i + 1, (byte[]) arg);
+            } else {
+                statement.bindString(i + 1, arg.toString());
+            }
+        }
+    }
+
+    /**
+     * Releases every statement, when the connection is closed or the schema changed.
+     */
+    public synchronized void clear() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
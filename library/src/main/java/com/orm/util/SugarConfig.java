@@ -1,30 +1,35 @@
 package com.orm.util;
 
+import com.orm.helper.EntityBinder;
+import com.orm.helper.UpsertHelper;
+import com.orm.inflater.ColumnBinding;
+import com.orm.inflater.InflationPlan;
+import com.orm.metadata.EntityMetadata;
+
 import java.lang.reflect.Field;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SugarConfig {
 
-    static Map<Class<?>, List<Field>> fields = new HashMap<>();
+    static Map<Class<?>, List<Field>> fields = new ConcurrentHashMap<>();
 
     public static void setFields(Class<?> clazz, List<Field> fieldz) {
-         fields.put(clazz, fieldz);
+         fields.put(clazz, Collections.unmodifiableList(fieldz));
     }
 
     public static List<Field> getFields(Class<?> clazz) {
-        if (fields.containsKey(clazz)) {
-            List<Field> list = fields.get(clazz);
-            return Collections.synchronizedList(list);
-        }
-
-        return null;
+        return fields.get(clazz);
     }
 
     public static void clearCache() {
         fields.clear();
-        fields = new HashMap<>();
+        EntityMetadata.clearCache();
+        ColumnBinding.clearCache();
+        InflationPlan.clearCache();
+        EntityBinder.clearCache();
+        UpsertHelper.clearCache();
     }
 }
@@ -1,9 +1,20 @@
 package com.orm.util;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.orm.SugarContext.getSugarContext;
 
 /**
  * Util class to deal with threads.
@@ -11,24 +22,90 @@ import java.util.concurrent.Future;
  * @author jonatan.salas
  */
 public final class ThreadUtil {
+    public static final int DEFAULT_POOL_SIZE = 2;
+    public static final int DEFAULT_QUEUE_SIZE = 128;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
 
     //Prevent instantiation..
     private ThreadUtil() { }
 
     /**
-     * Submits a Callable object and returns a Future ready to use.
+     * Submits a Callable object to the executor of the {@link com.orm.SugarContext} and returns a
+     * Future ready to use.
      *
      * @param callable the callable you want to submit
      * @return a Future object
+     * @throws java.util.concurrent.RejectedExecutionException if the queue of the executor is full
+     *         and its rejection policy is to abort
      */
-    public static Future doInBackground(Callable callable) {
-        final ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future future = executor.submit(callable);
+    public static <V> Future<V> doInBackground(Callable<V> callable) {
+        return getSugarContext().getExecutor().submit(callable);
+    }
 
-        if(executor.isTerminated()) {
-            executor.shutdown();
-        }
+    /**
+     * Creates an executor with a fixed number of named daemon threads, which stop after being idle
+     * for a while, and a bounded queue.
+     *
+     * @param poolSize the number of threads
+     * @param queueSize the number of tasks that can wait for a thread
+     * @param rejectionPolicy what to do with a task when the queue is full
+     * @return the executor
+     */
+    public static ExecutorService newExecutor(int poolSize, int queueSize, RejectedExecutionHandler rejectionPolicy) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new SugarThreadFactory(), rejectionPolicy);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return an executor running its tasks on the main thread, for the callbacks of
+     *         {@link com.orm.SugarDataSource}
+     */
+    public static Executor mainThreadExecutor() {
+        return looperExecutor(Looper.getMainLooper());
+    }
 
-        return future;
+    /**
+     * @return an executor posting its tasks to the thread of a {@link Looper}
+     */
+    public static Executor looperExecutor(Looper looper) {
+        final Handler handler = new Handler(looper);
+        return new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                handler.post(runnable);
+            }
+        };
+    }
+
+    /**
+     * @return an executor running its tasks right away on the thread that hands them over, for
+     *         callbacks that may run on a Sugar worker thread
+     */
+    public static Executor directExecutor() {
+        return DIRECT;
+    }
+
+    private static final class SugarThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+        private final String prefix = "Sugar-" + POOL_NUMBER.incrementAndGet() + "-";
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
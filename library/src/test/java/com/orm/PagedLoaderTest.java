@@ -0,0 +1,164 @@
+package com.orm;
+
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.TestRecord;
+import com.orm.query.Page;
+import com.orm.query.Select;
+import com.orm.util.ThreadUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class PagedLoaderTest {
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 7; i++) {
+            SugarRecord.save(new TestRecord().setName("name" + i));
+        }
+    }
+
+    @Test
+    public void pagesAreLoadedInOrder() {
+        PagedLoader<TestRecord> loader = SugarDataSource.getSynchronousInstance(TestRecord.class).pagedLoader("name", 3, 2);
+
+        assertEquals("[name0, name1, name2]", load(loader, 0).toString());
+        assertEquals("[name3, name4, name5]", load(loader, 1).toString());
+        assertEquals("[name6]", load(loader, 2).toString());
+        assertEquals(2, loader.getLastPage());
+    }
+
+    @Test
+    public void droppedPageIsReadAgain() {
+        PagedLoader<TestRecord> loader = SugarDataSource.getSynchronousInstance(TestRecord.class).pagedLoader("name", 3, 2);
+        load(loader, 0);
+        load(loader, 1);
+        load(loader, 2);
+
+        assertEquals(2, loader.getPageCount());
+        assertEquals("[name0, name1, name2]", load(loader, 0).toString());
+        assertEquals(2, loader.getPageCount());
+    }
+
+    @Test
+    public void pagePastTheLastOneFails() {
+        PagedLoader<TestRecord> loader = SugarDataSource.getSynchronousInstance(TestRecord.class).pagedLoader("name", 4, 2);
+        load(loader, 0);
+        load(loader, 1);
+        final Exception[] error = new Exception[1];
+
+        loader.load(
+                2,
+                new SugarDataSource.SuccessCallback<Page<TestRecord>>() {
+                    @Override
+                    public void onSuccess(Page<TestRecord> page) {
+                        fail();
+                    }
+                },
+                new SugarDataSource.ErrorCallback() {
+                    @Override
+                    public void onError(Exception e) {
+                        error[0] = e;
+                    }
+                }
+        );
+
+        assertTrue(error[0] instanceof NoSuchElementException);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageCantBeLoadedBeforeThePreviousOne() {
+        Callback callback = new Callback();
+        SugarDataSource.getSynchronousInstance(TestRecord.class).pagedLoader("name", 3, 2).load(1, callback, callback);
+    }
+
+    @Test
+    public void onlyTheNextPageIsReadAhead() throws Exception {
+        PagedLoader<TestRecord> loader = SugarDataSource.getInstance(TestRecord.class, ThreadUtil.directExecutor()).pagedLoader("name", 2, 4);
+        assertEquals("[name0, name1]", names(loader.load(0, new Callback(), new Callback()).get()).toString());
+        assertEquals(2, awaitPageCount(loader, 2));
+
+        Callback callback = new Callback();
+        loader.load(1, callback, callback);
+        assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("[name2, name3]", names(callback.page).toString());
+        assertEquals(3, awaitPageCount(loader, 3));
+        loader.close();
+    }
+
+    @Test
+    public void nextPageWaitsForThePreviousOne() throws Exception {
+        PagedLoader<TestRecord> loader = SugarDataSource.getInstance(TestRecord.class, ThreadUtil.directExecutor())
+                .pagedLoader(Select.from(TestRecord.class), "name", true, 4, 2);
+        Callback first = new Callback();
+        Callback second = new Callback();
+
+        loader.load(0, first, first);
+        Future<Page<TestRecord>> future = loader.load(1, second, second);
+
+        assertTrue(first.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(second.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("[name6, name5, name4, name3]", names(first.page).toString());
+        assertEquals("[name2, name1, name0]", names(second.page).toString());
+        assertFalse(future.get().hasNext());
+    }
+
+    private static List<String> load(PagedLoader<TestRecord> loader, int index) {
+        Callback callback = new Callback();
+        loader.load(index, callback, callback);
+        assertNotNull(callback.page);
+        return names(callback.page);
+    }
+
+    /**
+     * Waits for the loader to hold a number of pages, and then a little more for any page read
+     * ahead past it.
+     */
+    private static int awaitPageCount(PagedLoader<TestRecord> loader, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && loader.getPageCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        return loader.getPageCount();
+    }
+
+    private static List<String> names(Page<TestRecord> page) {
+        List<String> names = new ArrayList<>();
+        for (TestRecord record : page.getItems()) {
+            names.add(record.getName());
+        }
+        return names;
+    }
+
+    private static final class Callback implements SugarDataSource.SuccessCallback<Page<TestRecord>>, SugarDataSource.ErrorCallback {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Page<TestRecord> page;
+
+        @Override
+        public void onSuccess(Page<TestRecord> page) {
+            this.page = page;
+            latch.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            e.printStackTrace();
+            latch.countDown();
+        }
+    }
+}
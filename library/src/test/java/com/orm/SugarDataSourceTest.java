@@ -5,15 +5,26 @@ import android.database.Cursor;
 import com.orm.app.ClientApp;
 import com.orm.dsl.BuildConfig;
 import com.orm.model.TestRecord;
+import com.orm.util.ThreadUtil;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.*;
 
@@ -27,7 +38,7 @@ public final class SugarDataSourceTest {
 
     @Before
     public void setUp() {
-        recordSugarDataSource = SugarDataSource.getInstance(TestRecord.class);
+        recordSugarDataSource = SugarDataSource.getSynchronousInstance(TestRecord.class);
     }
 
     @Test
@@ -448,11 +459,11 @@ public final class SugarDataSourceTest {
 
         recordSugarDataSource.bulkInsert(
                 list,
-                new SugarDataSource.SuccessCallback<List<Long>>() {
+                new SugarDataSource.SuccessCallback<long[]>() {
                     @Override
-                    public void onSuccess(List<Long> ids) {
+                    public void onSuccess(long[] ids) {
                         for (int i = 0; i < list.size(); i++) {
-                            list.get(i).setId(ids.get(i));
+                            list.get(i).setId(ids[i]);
                         }
                     }
                 },
@@ -528,6 +539,144 @@ public final class SugarDataSourceTest {
         );
     }
 
+    @Test
+    public void testAsynchronousInsertCallsBackOnExecutor() throws Exception {
+        final AtomicInteger callbacks = new AtomicInteger();
+        Executor callbackExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                callbacks.incrementAndGet();
+                runnable.run();
+            }
+        };
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Long[] inserted = new Long[1];
+        TestRecord record = new TestRecord();
+        record.setName("lalala");
+
+        Future<Long> future = SugarDataSource.getInstance(TestRecord.class, callbackExecutor).insert(
+                record,
+                new SugarDataSource.SuccessCallback<Long>() {
+                    @Override
+                    public void onSuccess(Long id) {
+                        inserted[0] = id;
+                        latch.countDown();
+                    }
+                },
+                new SugarDataSource.ErrorCallback() {
+                    @Override
+                    public void onError(Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+        );
+
+        assertEquals(future.get(), SugarRecord.findById(TestRecord.class, future.get()).getId());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(future.get(), inserted[0]);
+        assertEquals(1, callbacks.get());
+    }
+
+    @Test
+    public void testDefaultInstanceCallsBackOnTheLooperThread() throws Exception {
+        final Thread[] callbackThread = new Thread[1];
+
+        Future<Long> future = SugarDataSource.getInstance(TestRecord.class).count(
+                new SugarDataSource.SuccessCallback<Long>() {
+                    @Override
+                    public void onSuccess(Long count) {
+                        callbackThread[0] = Thread.currentThread();
+                    }
+                },
+                new SugarDataSource.ErrorCallback() {
+                    @Override
+                    public void onError(Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+        );
+
+        assertEquals(0L, future.get().longValue());
+        // the callback is posted once the operation is done
+        for (int i = 0; i < 100 && callbackThread[0] == null; i++) {
+            Thread.sleep(10);
+            ShadowLooper.idleMainLooper();
+        }
+        assertSame(Thread.currentThread(), callbackThread[0]);
+    }
+
+    @Test
+    public void testAsynchronousErrorIsDelivered() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Exception[] error = new Exception[1];
+
+        SugarDataSource.getInstance(TestRecord.class, ThreadUtil.directExecutor()).findById(
+                0L,
+                new SugarDataSource.SuccessCallback<TestRecord>() {
+                    @Override
+                    public void onSuccess(TestRecord object) {
+                        latch.countDown();
+                    }
+                },
+                new SugarDataSource.ErrorCallback() {
+                    @Override
+                    public void onError(Exception e) {
+                        error[0] = e;
+                        latch.countDown();
+                    }
+                }
+        );
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertNotNull(error[0]);
+        assertNotNull(error[0].getMessage());
+    }
+
+    @Test
+    public void testCancelledOperationDoesNotRunOrCallBack() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration().setExecutor(executor));
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final AtomicInteger callbacks = new AtomicInteger();
+        TestRecord record = new TestRecord();
+        record.setName("lalala");
+
+        try {
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    blocker.await();
+                    return null;
+                }
+            });
+
+            Future<Long> future = SugarDataSource.getInstance(TestRecord.class, ThreadUtil.directExecutor()).insert(
+                    record,
+                    new SugarDataSource.SuccessCallback<Long>() {
+                        @Override
+                        public void onSuccess(Long id) {
+                            callbacks.incrementAndGet();
+                        }
+                    },
+                    new SugarDataSource.ErrorCallback() {
+                        @Override
+                        public void onError(Exception e) {
+                            callbacks.incrementAndGet();
+                        }
+                    }
+            );
+            assertTrue(future.cancel(false));
+        } finally {
+            blocker.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            SugarContext.init(RuntimeEnvironment.application);
+        }
+
+        assertEquals(0, callbacks.get());
+        assertEquals(0L, SugarRecord.count(TestRecord.class));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     @SuppressWarnings("all")
     public void testNullConstructor() {
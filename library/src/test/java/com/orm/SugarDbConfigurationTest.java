@@ -9,6 +9,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
 import java.util.Locale;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -36,6 +37,11 @@ public final class SugarDbConfigurationTest {
         assertEquals(configuration.getPageSize(), config.getPageSize());
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testDiscardingRejectionPolicyIsRefused() {
+        new SugarDbConfiguration().setExecutorRejectionPolicy(new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
     @Test
     public void testNullConfiguration() {
         SugarContext.init(RuntimeEnvironment.application);
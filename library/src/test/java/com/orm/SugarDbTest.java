@@ -1,16 +1,23 @@
 package com.orm;
 
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 
 import com.orm.app.ClientApp;
 import com.orm.dsl.BuildConfig;
+import com.orm.model.UniqueCodeModel;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author jonatan.salas
@@ -38,4 +45,55 @@ public final class SugarDbTest {
         final SQLiteDatabase db = sugarDb.getDB();
         assertEquals(false, db.isReadOnly());
     }
+
+    @Test
+    public void testReadsWithoutPoolUseThePrimaryConnection() {
+        SugarDb db = SugarContext.getSugarContext().getSugarDb();
+        assertSame(db.getDB(), db.getReadDB());
+    }
+
+    @Test
+    public void testReadPool() {
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration()
+                .setWriteAheadLogging(true)
+                .setReadConnectionPoolSize(2)
+                .setCacheSize(-2000));
+        SugarDb db = SugarContext.getSugarContext().getSugarDb();
+
+        SQLiteDatabase reader = db.getReadDB();
+        assertNotSame(db.getDB(), reader);
+        assertEquals("wal", DatabaseUtils.stringForQuery(reader, "PRAGMA journal_mode", null));
+        // a single connection, without a pool of Android's own that the settings would not reach
+        assertFalse(reader.isWriteAheadLoggingEnabled());
+        assertEquals(-2000, DatabaseUtils.longForQuery(reader, "PRAGMA cache_size", null));
+
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        assertEquals(1, SugarRecord.count(UniqueCodeModel.class));
+        assertEquals("first", SugarRecord.listAll(UniqueCodeModel.class).get(0).getName());
+
+        db.getDB().beginTransaction();
+        try {
+            // a thread in a transaction reads its own writes
+            assertSame(db.getDB(), db.getReadDB());
+        } finally {
+            db.getDB().endTransaction();
+        }
+
+        SugarContext.terminate();
+    }
+
+    @Test
+    public void testWriteAheadLoggingKeepsOnePrimaryConnection() {
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration()
+                .setWriteAheadLogging(true)
+                .setCacheSize(-2000));
+        SQLiteDatabase database = SugarContext.getSugarContext().getSugarDb().getDB();
+
+        // Android would otherwise open connections of its own, without the settings
+        assertFalse(database.isWriteAheadLoggingEnabled());
+        assertEquals("wal", DatabaseUtils.stringForQuery(database, "PRAGMA journal_mode", null));
+        assertEquals(-2000, DatabaseUtils.longForQuery(database, "PRAGMA cache_size", null));
+
+        SugarContext.terminate();
+    }
 }
@@ -0,0 +1,215 @@
+package com.orm.cache;
+
+import android.database.Cursor;
+
+import com.orm.SugarContext;
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.helper.SugarTransactionHelper;
+import com.orm.inflater.ColumnBinding;
+import com.orm.model.CachedModel;
+import com.orm.model.MappedModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class EntityCacheTest {
+
+    @Test
+    public void testOnlyCacheableClassesHaveACache() {
+        assertNotNull(EntityCache.of(CachedModel.class));
+        assertNull(EntityCache.of(MappedModel.class));
+        assertEquals(2, EntityCache.of(CachedModel.class).getMaxEntries());
+    }
+
+    @Test
+    public void testFindByIdIsCached() {
+        CachedModel model = new CachedModel("first");
+        SugarRecord.save(model);
+        EntityCache cache = EntityCache.of(CachedModel.class);
+        cache.clear();
+
+        CachedModel found = SugarRecord.findById(CachedModel.class, model.getId());
+        CachedModel again = SugarRecord.findById(CachedModel.class, model.getId());
+
+        assertNotSame(found, again);
+        assertEquals("first", again.getName());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testSaveWritesThrough() {
+        CachedModel model = new CachedModel("first");
+        SugarRecord.save(model);
+
+        model.setName("second");
+        SugarRecord.save(model);
+        EntityCache cache = EntityCache.of(CachedModel.class);
+        long hits = cache.getHitCount();
+
+        CachedModel found = SugarRecord.findById(CachedModel.class, model.getId());
+        assertNotSame(model, found);
+        assertEquals("second", found.getName());
+        assertEquals(hits + 1, cache.getHitCount());
+    }
+
+    @Test
+    public void testChangesThatAreNotSavedAreNotCached() {
+        CachedModel model = new CachedModel("first");
+        SugarRecord.save(model);
+
+        SugarRecord.findById(CachedModel.class, model.getId()).setName("changed");
+        model.setName("changed too");
+
+        assertEquals("first", SugarRecord.findById(CachedModel.class, model.getId()).getName());
+        assertEquals("first", SugarRecord.findById(CachedModel.class, String.valueOf(model.getId())).getName());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        SugarRecord.saveInTx(new CachedModel("a"), new CachedModel("b"), new CachedModel("c"));
+
+        EntityCache cache = EntityCache.of(CachedModel.class);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testDeletesEvict() {
+        CachedModel first = new CachedModel("first");
+        CachedModel second = new CachedModel("second");
+        SugarRecord.save(first);
+        SugarRecord.save(second);
+
+        SugarRecord.delete(first);
+        assertNull(SugarRecord.findById(CachedModel.class, first.getId()));
+
+        SugarRecord.deleteAll(CachedModel.class);
+        assertEquals(0, EntityCache.of(CachedModel.class).size());
+        assertNull(SugarRecord.findById(CachedModel.class, second.getId()));
+    }
+
+    @Test
+    public void testRawQueryClearsCaches() {
+        CachedModel model = new CachedModel("first");
+        SugarRecord.save(model);
+
+        SugarRecord.executeQuery("UPDATE CachedModel SET name = 'raw'");
+
+        CachedModel found = SugarRecord.findById(CachedModel.class, model.getId());
+        assertNotSame(model, found);
+        assertEquals("raw", found.getName());
+    }
+
+    @Test
+    public void testRowReadBeforeAWriteIsNotCached() {
+        CachedModel model = new CachedModel("first");
+        SugarRecord.save(model);
+        EntityCache cache = EntityCache.of(CachedModel.class);
+        cache.clear();
+
+        long version = cache.getVersion();
+        Cursor cursor = SugarContext.getSugarContext().getSugarDb().getDB()
+                .rawQuery("SELECT * FROM CachedModel WHERE id = ?", new String[]{String.valueOf(model.getId())});
+        try {
+            cursor.moveToFirst();
+            model.setName("second");
+            SugarRecord.save(model);
+            cache.put(cursor, ColumnBinding.of(cursor, CachedModel.class), version);
+        } finally {
+            cursor.close();
+        }
+
+        assertEquals("second", SugarRecord.findById(CachedModel.class, model.getId()).getName());
+    }
+
+    @Test
+    public void testRawQueryKeepsCountsAndInstances() {
+        CachedModel model = new CachedModel("first");
+        SugarRecord.save(model);
+        EntityCache cache = EntityCache.of(CachedModel.class);
+        SugarRecord.findById(CachedModel.class, model.getId());
+        long hits = cache.getHitCount();
+
+        SugarRecord.executeQuery("UPDATE CachedModel SET name = 'raw'");
+
+        assertSame(cache, EntityCache.of(CachedModel.class));
+        assertEquals(0, cache.size());
+        assertEquals(hits, cache.getHitCount());
+    }
+
+    @Test
+    public void testRolledBackSaveIsNotCached() {
+        final CachedModel model = new CachedModel("first");
+        SugarTransactionHelper.doInTransaction(new SugarTransactionHelper.Callback() {
+            @Override
+            public void manipulateInTransaction() {
+                SugarRecord.save(model);
+                throw new IllegalStateException("roll back");
+            }
+        });
+
+        assertNull(SugarRecord.findById(CachedModel.class, model.getId()));
+        assertEquals(0, EntityCache.of(CachedModel.class).size());
+    }
+
+    @Test
+    public void testReadsInATransactionAreNotCached() {
+        final CachedModel model = new CachedModel("first");
+        SugarRecord.save(model);
+        final EntityCache cache = EntityCache.of(CachedModel.class);
+        cache.clear();
+
+        final String[] foundInTransaction = new String[1];
+        final int[] sizeInTransaction = new int[1];
+        SugarTransactionHelper.doInTransaction(new SugarTransactionHelper.Callback() {
+            @Override
+            public void manipulateInTransaction() {
+                model.setName("second");
+                SugarRecord.save(model);
+                foundInTransaction[0] = SugarRecord.findById(CachedModel.class, model.getId()).getName();
+                sizeInTransaction[0] = cache.size();
+            }
+        });
+
+        assertEquals("second", foundInTransaction[0]);
+        assertEquals(0, sizeInTransaction[0]);
+        assertEquals("second", SugarRecord.findById(CachedModel.class, model.getId()).getName());
+    }
+
+    @Test
+    public void testRolledBackSavepointIsNotCached() {
+        final CachedModel kept = new CachedModel("kept");
+        final CachedModel dropped = new CachedModel("dropped");
+        SugarTransactionHelper.doInTransaction(new SugarTransactionHelper.Callback() {
+            @Override
+            public void manipulateInTransaction() {
+                SugarRecord.save(kept);
+                SugarTransactionHelper.doInTransaction(new SugarTransactionHelper.Callback() {
+                    @Override
+                    public void manipulateInTransaction() {
+                        SugarRecord.save(dropped);
+                        throw new IllegalStateException("roll back");
+                    }
+                });
+            }
+        });
+
+        assertEquals("kept", SugarRecord.findById(CachedModel.class, kept.getId()).getName());
+        assertNull(SugarRecord.findById(CachedModel.class, dropped.getId()));
+        assertFalse(SugarContext.getSugarContext().getSugarDb().getDB().inTransaction());
+    }
+}
@@ -0,0 +1,181 @@
+package com.orm.cache;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.orm.SugarContext;
+import com.orm.SugarDb;
+import com.orm.SugarDbConfiguration;
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.CodeReferenceModel;
+import com.orm.model.UniqueCodeModel;
+import com.orm.query.Condition;
+import com.orm.query.Select;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class QueryCacheTest {
+
+    @Before
+    public void setUp() {
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration().setQueryCacheSize(2));
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        SugarContext.init(RuntimeEnvironment.application);
+        assertNull(QueryCache.getInstance());
+    }
+
+    @Test
+    public void testRepeatedQueriesAreCached() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+
+        List<UniqueCodeModel> first = Select.from(UniqueCodeModel.class).where(Condition.prop("code").eq("a")).list();
+        List<UniqueCodeModel> again = Select.from(UniqueCodeModel.class).where(Condition.prop("code").eq("a")).list();
+
+        assertNotSame(first, again);
+        assertNotSame(first.get(0), again.get(0));
+        assertEquals("first", again.get(0).getName());
+        assertEquals(1, QueryCache.getInstance().getHitCount());
+    }
+
+    @Test
+    public void testChangesToAHitAreNotShared() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        Select.from(UniqueCodeModel.class).list();
+
+        Select.from(UniqueCodeModel.class).list().get(0).setName("changed");
+
+        assertEquals("first", Select.from(UniqueCodeModel.class).list().get(0).getName());
+        assertEquals(2, QueryCache.getInstance().getHitCount());
+    }
+
+    @Test
+    public void testReferencesAreReadOnEveryHit() {
+        UniqueCodeModel code = new UniqueCodeModel("a", "first");
+        SugarRecord.save(code);
+        SugarRecord.save(new CodeReferenceModel(code));
+        assertEquals("first", Select.from(CodeReferenceModel.class).list().get(0).getCode().getName());
+
+        code.setName("second");
+        SugarRecord.save(code);
+
+        assertEquals("second", Select.from(CodeReferenceModel.class).list().get(0).getCode().getName());
+        assertEquals(1, QueryCache.getInstance().getHitCount());
+    }
+
+    @Test
+    public void testQueriesOnReadConnectionsAreCached() {
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration()
+                .setQueryCacheSize(2)
+                .setWriteAheadLogging(true)
+                .setReadConnectionPoolSize(2));
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+
+        // the queries take the read connections in turn, but are all stamped by the same one
+        SugarDb sugarDb = SugarContext.getSugarContext().getSugarDb();
+        assertNotSame(sugarDb.getDB(), sugarDb.getDataVersionDB());
+        assertSame(sugarDb.getDataVersionDB(), sugarDb.getDataVersionDB());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, Select.from(UniqueCodeModel.class).count());
+        }
+        assertEquals(3, QueryCache.getInstance().getHitCount());
+
+        insertFromAnotherConnection("b", "second");
+        assertEquals(2, Select.from(UniqueCodeModel.class).count());
+        assertEquals(3, QueryCache.getInstance().getHitCount());
+        SugarContext.terminate();
+    }
+
+    @Test
+    public void testWritesOfOtherConnectionsInvalidateEverything() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        assertEquals(1, Select.from(UniqueCodeModel.class).count());
+        assertEquals(1, Select.from(UniqueCodeModel.class).count());
+        assertEquals(1, QueryCache.getInstance().getHitCount());
+
+        insertFromAnotherConnection("b", "second");
+
+        assertEquals(2, Select.from(UniqueCodeModel.class).count());
+        assertEquals(1, QueryCache.getInstance().getHitCount());
+        assertEquals(2, QueryCache.getInstance().getMissCount());
+    }
+
+    @Test
+    public void testArgumentsArePartOfTheKey() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        SugarRecord.save(new UniqueCodeModel("b", "second"));
+
+        assertEquals("first", Select.from(UniqueCodeModel.class).where(Condition.prop("code").eq("a")).first().getName());
+        assertEquals(1, Select.from(UniqueCodeModel.class).where(Condition.prop("code").eq("b")).count());
+        assertEquals(0, QueryCache.getInstance().getHitCount());
+    }
+
+    @Test
+    public void testWritesInvalidateTheirTable() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        assertEquals(1, Select.from(UniqueCodeModel.class).count());
+
+        SugarRecord.save(new UniqueCodeModel("b", "second"));
+        assertEquals(2, Select.from(UniqueCodeModel.class).count());
+
+        SugarRecord.deleteAll(UniqueCodeModel.class);
+        assertEquals(0, Select.from(UniqueCodeModel.class).count());
+        assertEquals(0, QueryCache.getInstance().getHitCount());
+    }
+
+    @Test
+    public void testRawQueriesInvalidateEverything() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        assertEquals(1, Select.from(UniqueCodeModel.class).count());
+
+        SugarRecord.executeQuery("DELETE FROM UniqueCodeModel");
+        assertEquals(0, Select.from(UniqueCodeModel.class).count());
+    }
+
+    @Test
+    public void testNoCacheBypassesTheCache() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        Select.from(UniqueCodeModel.class).noCache().list();
+        Select.from(UniqueCodeModel.class).noCache().list();
+
+        assertEquals(0, QueryCache.getInstance().size());
+        assertEquals(0, QueryCache.getInstance().getHitCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        Select.from(UniqueCodeModel.class).where(Condition.prop("code").eq("a")).count();
+        Select.from(UniqueCodeModel.class).where(Condition.prop("code").eq("b")).count();
+        Select.from(UniqueCodeModel.class).where(Condition.prop("code").eq("c")).count();
+
+        assertEquals(2, QueryCache.getInstance().size());
+        assertEquals(1, QueryCache.getInstance().getEvictionCount());
+    }
+
+    private static void insertFromAnotherConnection(String code, String name) {
+        String path = SugarContext.getSugarContext().getSugarDb().getDB().getPath();
+        SQLiteDatabase other = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READWRITE);
+        try {
+            other.execSQL("INSERT INTO UniqueCodeModel (CODE, NAME) VALUES (?, ?)", new Object[]{code, name});
+        } finally {
+            other.close();
+        }
+    }
+}
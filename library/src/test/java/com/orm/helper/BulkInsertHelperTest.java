@@ -0,0 +1,84 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.IntegerFieldAnnotatedModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.orm.SugarContext.getSugarContext;
+import static junit.framework.Assert.assertNull;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class BulkInsertHelperTest {
+
+    @Test(expected = IllegalAccessException.class)
+    public void testPrivateConstructor() throws Exception {
+        BulkInsertHelper helper = BulkInsertHelper.class.getDeclaredConstructor().newInstance();
+        assertNull(helper);
+    }
+
+    @Test
+    public void testInsertAssignsIds() {
+        List<IntegerFieldAnnotatedModel> models = newModels(3);
+
+        long[] ids = BulkInsertHelper.insert(getDatabase(), models, SQLiteDatabase.CONFLICT_REPLACE);
+
+        assertEquals(3, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(Long.valueOf(ids[i]), models.get(i).id);
+        }
+    }
+
+    @Test
+    public void testMultiRowInsertAssignsIds() {
+        List<IntegerFieldAnnotatedModel> models = newModels(1200);
+        models.get(600).id = 5000L;
+
+        long[] ids = BulkInsertHelper.insert(getDatabase(), models, SQLiteDatabase.CONFLICT_REPLACE, true);
+
+        assertEquals(1200L, SugarRecord.count(IntegerFieldAnnotatedModel.class));
+        for (int i = 0; i < models.size(); i++) {
+            IntegerFieldAnnotatedModel model = models.get(i);
+            assertEquals(Long.valueOf(ids[i]), model.id);
+            assertEquals(i, SugarRecord.findById(IntegerFieldAnnotatedModel.class, model.id).getInt());
+        }
+    }
+
+    @Test
+    public void testMultiRowInsertWithTriggerFallsBackToOneRowAtATime() {
+        getDatabase().execSQL("CREATE TRIGGER echo AFTER INSERT ON IntegerFieldAnnotatedModel"
+                + " WHEN NEW.RAW_INTEGER = 1 BEGIN INSERT INTO IntegerFieldAnnotatedModel (RAW_INTEGER) VALUES (-1); END");
+        List<IntegerFieldAnnotatedModel> models = newModels(3);
+
+        BulkInsertHelper.insert(getDatabase(), models, SQLiteDatabase.CONFLICT_ABORT, true);
+
+        assertEquals(4L, SugarRecord.count(IntegerFieldAnnotatedModel.class));
+        for (int i = 0; i < models.size(); i++) {
+            assertEquals(i, SugarRecord.findById(IntegerFieldAnnotatedModel.class, models.get(i).id).getInt());
+        }
+    }
+
+    private static List<IntegerFieldAnnotatedModel> newModels(int count) {
+        List<IntegerFieldAnnotatedModel> models = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            models.add(new IntegerFieldAnnotatedModel(i));
+        }
+        return models;
+    }
+
+    private static SQLiteDatabase getDatabase() {
+        return getSugarContext().getSugarDb().getDB();
+    }
+}
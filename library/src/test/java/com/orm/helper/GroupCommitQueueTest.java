@@ -0,0 +1,246 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.orm.SugarContext;
+import com.orm.SugarDataSource;
+import com.orm.SugarDb;
+import com.orm.SugarDbConfiguration;
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.TestRecord;
+import com.orm.model.UniqueCodeModel;
+import com.orm.util.ThreadUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.orm.SugarContext.getSugarContext;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class GroupCommitQueueTest {
+    private SugarDb sugarDb;
+
+    @Before
+    public void setUp() {
+        sugarDb = getSugarContext().getSugarDb();
+    }
+
+    @After
+    public void tearDown() {
+        SugarContext.init(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void testWritesOfAWindowShareOneTransaction() throws Exception {
+        GroupCommitQueue queue = new GroupCommitQueue(sugarDb, 10000, 3);
+        GroupCommitQueue.Ticket<Boolean> first = new GroupCommitQueue.Ticket<>();
+        GroupCommitQueue.Ticket<Boolean> second = new GroupCommitQueue.Ticket<>();
+        GroupCommitQueue.Ticket<Boolean> third = new GroupCommitQueue.Ticket<>();
+
+        queue.submit(null, "check", inTransaction(), first);
+        queue.submit(null, "check", inTransaction(), second);
+        queue.submit(null, "check", inTransaction(), third);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertTrue(third.get(5, TimeUnit.SECONDS));
+        queue.shutdown();
+    }
+
+    @Test
+    public void testWritesOfTheSameEntityAreJoined() throws Exception {
+        GroupCommitQueue queue = new GroupCommitQueue(sugarDb, 10000, 100);
+        Object entity = new Object();
+        AtomicInteger writes = new AtomicInteger();
+        GroupCommitQueue.Ticket<Integer> first = new GroupCommitQueue.Ticket<>();
+        GroupCommitQueue.Ticket<Integer> second = new GroupCommitQueue.Ticket<>();
+        GroupCommitQueue.Ticket<Integer> deleted = new GroupCommitQueue.Ticket<>();
+
+        queue.submit(entity, "save", counting(writes), first);
+        queue.submit(entity, "save", counting(writes), second);
+        queue.submit(entity, "delete", counting(writes), deleted);
+        assertEquals(2, queue.getPendingCount());
+        queue.shutdown();
+
+        assertEquals(2, writes.get());
+        assertEquals(1, (int) first.get());
+        assertEquals(1, (int) second.get());
+        assertEquals(2, (int) deleted.get());
+    }
+
+    @Test
+    public void testFailedWriteOnlyFailsItsTicket() throws Exception {
+        GroupCommitQueue queue = new GroupCommitQueue(sugarDb, 10000, 100);
+        GroupCommitQueue.Ticket<Integer> failed = new GroupCommitQueue.Ticket<>();
+        GroupCommitQueue.Ticket<Integer> written = new GroupCommitQueue.Ticket<>();
+
+        queue.submit(null, "save", new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                throw new Exception("failed");
+            }
+        }, failed);
+        queue.submit(null, "save", counting(new AtomicInteger()), written);
+        queue.shutdown();
+
+        assertEquals(1, (int) written.get());
+        try {
+            failed.get();
+            fail("The write should have failed");
+        } catch (ExecutionException e) {
+            assertEquals("failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testFailedWriteIsRolledBackAlone() throws Exception {
+        GroupCommitQueue queue = new GroupCommitQueue(sugarDb, 10000, 100);
+        GroupCommitQueue.Ticket<long[]> failedInsert = new GroupCommitQueue.Ticket<>();
+        GroupCommitQueue.Ticket<Long> failedHalfway = new GroupCommitQueue.Ticket<>();
+        GroupCommitQueue.Ticket<Long> written = new GroupCommitQueue.Ticket<>();
+        final TestRecord record = new TestRecord().setName("written");
+
+        queue.submit(null, "bulkInsert", new Callable<long[]>() {
+            @Override
+            public long[] call() {
+                // the second row breaks the unique code of the first one
+                return BulkInsertHelper.insert(sugarDb.getDB(), Arrays.asList(
+                        new UniqueCodeModel("code", "first"), new UniqueCodeModel("code", "second")),
+                        SQLiteDatabase.CONFLICT_ABORT);
+            }
+        }, failedInsert);
+        queue.submit(null, "save", new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                SugarRecord.save(new TestRecord().setName("rolled back"));
+                throw new Exception("failed");
+            }
+        }, failedHalfway);
+        queue.submit(record, "save", new Callable<Long>() {
+            @Override
+            public Long call() {
+                return SugarRecord.save(record);
+            }
+        }, written);
+        queue.shutdown();
+
+        assertEquals(record.getId(), written.get());
+        assertEquals(1, SugarRecord.count(TestRecord.class));
+        assertEquals("written", SugarRecord.first(TestRecord.class).getName());
+        assertEquals(0, SugarRecord.count(UniqueCodeModel.class));
+        try {
+            failedInsert.get();
+            fail("The insert should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLiteConstraintException);
+        }
+        try {
+            failedHalfway.get();
+            fail("The write should have failed");
+        } catch (ExecutionException e) {
+            assertEquals("failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testCancelledWriteIsDropped() throws Exception {
+        GroupCommitQueue queue = new GroupCommitQueue(sugarDb, 10000, 100);
+        AtomicInteger writes = new AtomicInteger();
+        GroupCommitQueue.Ticket<Integer> cancelled = new GroupCommitQueue.Ticket<>();
+
+        queue.submit(null, "save", counting(writes), cancelled);
+        assertTrue(cancelled.cancel(false));
+        queue.shutdown();
+
+        assertEquals(0, writes.get());
+    }
+
+    @Test
+    public void testShutdownRejectsWrites() throws Exception {
+        GroupCommitQueue queue = new GroupCommitQueue(sugarDb, 10, 100);
+        queue.shutdown();
+        GroupCommitQueue.Ticket<Integer> rejected = new GroupCommitQueue.Ticket<>();
+
+        queue.submit(null, "save", counting(new AtomicInteger()), rejected);
+
+        try {
+            rejected.get();
+            fail("The write should have been rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testDataSourceWritesAreCommittedTogether() throws Exception {
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration().setGroupCommitWindow(50));
+        SugarDataSource<TestRecord> dataSource = SugarDataSource.getInstance(TestRecord.class, ThreadUtil.directExecutor());
+        final CountDownLatch latch = new CountDownLatch(3);
+        final AtomicInteger errors = new AtomicInteger();
+        SugarDataSource.SuccessCallback<Long> success = new SugarDataSource.SuccessCallback<Long>() {
+            @Override
+            public void onSuccess(Long id) {
+                latch.countDown();
+            }
+        };
+        SugarDataSource.ErrorCallback error = new SugarDataSource.ErrorCallback() {
+            @Override
+            public void onError(Exception e) {
+                errors.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        TestRecord record = new TestRecord();
+        record.setName("first");
+        TestRecord other = new TestRecord();
+        other.setName("other");
+
+        dataSource.insert(record, success, error);
+        record.setName("second");
+        dataSource.insert(record, success, error);
+        dataSource.insert(other, success, error);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertEquals(2, SugarRecord.count(TestRecord.class));
+        assertEquals("second", SugarRecord.findById(TestRecord.class, record.getId()).getName());
+    }
+
+    private Callable<Boolean> inTransaction() {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return sugarDb.getDB().inTransaction();
+            }
+        };
+    }
+
+    private static Callable<Integer> counting(final AtomicInteger writes) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return writes.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.orm.helper;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.orm.SugarDbConfiguration;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static com.orm.SugarContext.getSugarContext;
+import static junit.framework.Assert.assertNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class PragmaHelperTest {
+
+    @Test(expected = IllegalAccessException.class)
+    public void testPrivateConstructor() throws Exception {
+        PragmaHelper helper = PragmaHelper.class.getDeclaredConstructor().newInstance();
+        assertNull(helper);
+    }
+
+    @Test
+    public void testSettingsAreAppliedAndReadBack() {
+        SQLiteDatabase database = getSugarContext().getSugarDb().getDB();
+        SugarDbConfiguration configuration = new SugarDbConfiguration()
+                .setSynchronous(SugarDbConfiguration.Synchronous.NORMAL)
+                .setCacheSize(-4000)
+                .setTempStore(SugarDbConfiguration.TempStore.MEMORY)
+                .setForeignKeys(true);
+
+        List<String> failed = PragmaHelper.apply(database, configuration, false);
+
+        assertTrue(failed.isEmpty());
+        assertEquals("1", pragma(database, "synchronous"));
+        assertEquals("-4000", pragma(database, "cache_size"));
+        assertEquals("2", pragma(database, "temp_store"));
+        assertEquals("1", pragma(database, "foreign_keys"));
+    }
+
+    @Test
+    public void testReadOnlyConnectionsOnlyGetReadSettings() {
+        SQLiteDatabase database = getSugarContext().getSugarDb().getDB();
+        PragmaHelper.apply(database, new SugarDbConfiguration().setSynchronous(SugarDbConfiguration.Synchronous.FULL), false);
+
+        SugarDbConfiguration configuration = new SugarDbConfiguration()
+                .setSynchronous(SugarDbConfiguration.Synchronous.OFF)
+                .setCacheSize(100);
+        PragmaHelper.apply(database, configuration, true);
+
+        assertEquals("2", pragma(database, "synchronous"));
+        assertEquals("100", pragma(database, "cache_size"));
+    }
+
+    private static String pragma(SQLiteDatabase database, String name) {
+        Cursor cursor = database.rawQuery("PRAGMA " + name, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.orm.helper;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.AllAnotatedModel;
+import com.orm.model.UniqueCodeModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.orm.SugarContext.getSugarContext;
+import static junit.framework.Assert.assertNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class UpsertHelperTest {
+
+    @Test(expected = IllegalAccessException.class)
+    public void testPrivateConstructor() throws Exception {
+        UpsertHelper helper = UpsertHelper.class.getDeclaredConstructor().newInstance();
+        assertNull(helper);
+    }
+
+    @Test
+    public void testIsAtLeast() {
+        assertTrue(UpsertHelper.isAtLeast("3.24.0", 3, 24));
+        assertTrue(UpsertHelper.isAtLeast("3.28.0", 3, 24));
+        assertFalse(UpsertHelper.isAtLeast("3.8.10.2", 3, 24));
+        assertFalse(UpsertHelper.isAtLeast("unknown", 3, 24));
+    }
+
+    @Test
+    public void testCanUpsert() {
+        assertTrue(UpsertHelper.canUpsert(UniqueCodeModel.class));
+        assertFalse(UpsertHelper.canUpsert(AllAnotatedModel.class));
+    }
+
+    @Test
+    public void testUpsertByUniqueKeepsRow() {
+        long id = UpsertHelper.upsert(getDatabase(), new UniqueCodeModel("a", "first"));
+        long sameId = UpsertHelper.upsert(getDatabase(), new UniqueCodeModel("a", "second"));
+
+        assertEquals(id, sameId);
+        assertEquals(1L, SugarRecord.count(UniqueCodeModel.class));
+        assertEquals("second", SugarRecord.findById(UniqueCodeModel.class, id).getName());
+    }
+
+    @Test
+    public void testUpsertInsertsNewKey() {
+        long first = UpsertHelper.upsert(getDatabase(), new UniqueCodeModel("a", "first"));
+        long second = UpsertHelper.upsert(getDatabase(), new UniqueCodeModel("b", "second"));
+
+        assertTrue(first != second);
+        assertEquals(2L, SugarRecord.count(UniqueCodeModel.class));
+    }
+
+    @Test
+    public void testFallbackByUniqueKeepsTheIdOfTheRow() {
+        UpsertHelper.nativeUpsert = Boolean.FALSE;
+        try {
+            long id = UpsertHelper.upsert(getDatabase(), new UniqueCodeModel("a", "first"));
+            long otherId = UpsertHelper.upsert(getDatabase(), new UniqueCodeModel("b", "other"));
+
+            UniqueCodeModel model = new UniqueCodeModel("a", "second");
+            model.setId(otherId + 1);
+            assertEquals(id, UpsertHelper.upsert(getDatabase(), model));
+
+            assertEquals("second", SugarRecord.findById(UniqueCodeModel.class, id).getName());
+            assertNull(SugarRecord.findById(UniqueCodeModel.class, otherId + 1));
+            assertEquals(2L, SugarRecord.count(UniqueCodeModel.class));
+        } finally {
+            UpsertHelper.nativeUpsert = null;
+        }
+    }
+
+    private static SQLiteDatabase getDatabase() {
+        return getSugarContext().getSugarDb().getDB();
+    }
+}
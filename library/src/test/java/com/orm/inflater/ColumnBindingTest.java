@@ -0,0 +1,67 @@
+package com.orm.inflater;
+
+import android.database.MatrixCursor;
+
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.MappedModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class ColumnBindingTest {
+
+    @Test
+    public void testIndexesFollowCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[] { "name", "id" });
+        ColumnBinding binding = ColumnBinding.of(cursor, MappedModel.class);
+
+        assertEquals(1, binding.getIdIndex());
+        assertEquals(1, binding.getMapperIndexes()[0]);
+        assertEquals(0, binding.getMapperIndexes()[1]);
+    }
+
+    @Test
+    public void testMissingColumn() {
+        MatrixCursor cursor = new MatrixCursor(new String[] { "id" });
+        ColumnBinding binding = ColumnBinding.of(cursor, MappedModel.class);
+
+        assertEquals(0, binding.getIdIndex());
+        assertEquals(-1, binding.getMapperIndexes()[1]);
+    }
+
+    @Test
+    public void testBindingIsReusedForSameShape() {
+        ColumnBinding.clearCache();
+        String query = "SELECT * FROM MappedModel";
+
+        ColumnBinding first = ColumnBinding.forQuery(new MatrixCursor(new String[] { "id", "name" }), MappedModel.class, query);
+        ColumnBinding second = ColumnBinding.forQuery(new MatrixCursor(new String[] { "id", "name" }), MappedModel.class, query);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testBindingIsResolvedAgainWhenColumnsChange() {
+        ColumnBinding.clearCache();
+        String query = "SELECT * FROM MappedModel";
+        MatrixCursor reordered = new MatrixCursor(new String[] { "name", "id" });
+
+        ColumnBinding first = ColumnBinding.forQuery(new MatrixCursor(new String[] { "id", "name" }), MappedModel.class, query);
+        ColumnBinding second = ColumnBinding.forQuery(reordered, MappedModel.class, query);
+
+        assertFalse(first.matches(reordered));
+        assertTrue(second.matches(reordered));
+        assertNotSame(first, second);
+    }
+}
@@ -0,0 +1,56 @@
+package com.orm.inflater;
+
+import android.database.MatrixCursor;
+
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.IntegerFieldAnnotatedModel;
+import com.orm.model.MappedModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class InflationPlanTest {
+
+    @Test
+    public void testPlanIsBuiltOnce() {
+        assertSame(InflationPlan.of(MappedModel.class), InflationPlan.of(MappedModel.class));
+    }
+
+    @Test
+    public void testInflateWithReflection() throws Exception {
+        MatrixCursor cursor = new MatrixCursor(new String[] { "rawInteger", "id", "integer" });
+        cursor.addRow(new Object[] { 7, 1L, 5 });
+        cursor.moveToFirst();
+
+        InflationPlan<IntegerFieldAnnotatedModel> plan = InflationPlan.of(IntegerFieldAnnotatedModel.class);
+        IntegerFieldAnnotatedModel model = plan.newInstance();
+        plan.inflate(cursor, ColumnBinding.of(cursor, IntegerFieldAnnotatedModel.class), model);
+
+        assertEquals(Long.valueOf(1L), model.id);
+        assertEquals(Integer.valueOf(5), model.getInteger());
+        assertEquals(7, model.getInt());
+    }
+
+    @Test
+    public void testInflateWithMapper() throws Exception {
+        MatrixCursor cursor = new MatrixCursor(new String[] { "id", "name" });
+        cursor.addRow(new Object[] { 3L, null });
+        cursor.moveToFirst();
+
+        InflationPlan<MappedModel> plan = InflationPlan.of(MappedModel.class);
+        MappedModel model = plan.newInstance();
+        plan.inflate(cursor, ColumnBinding.of(cursor, MappedModel.class), model);
+
+        assertEquals(Long.valueOf(3L), model.getId());
+        assertNull(model.getName());
+    }
+}
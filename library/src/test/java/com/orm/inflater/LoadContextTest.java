@@ -0,0 +1,154 @@
+package com.orm.inflater;
+
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.metadata.ColumnMetadata;
+import com.orm.metadata.EntityMetadata;
+import com.orm.model.CodeReferenceModel;
+import com.orm.model.LoadHookModel;
+import com.orm.model.SimpleExtendedModel;
+import com.orm.model.UniqueCodeModel;
+import com.orm.model.onetomany.AnnotatedOneToManyModel;
+import com.orm.model.onetomany.AnnotatedOneToManyRelationModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class LoadContextTest {
+
+    @Test
+    public void testResolveSharesOneInstancePerId() {
+        ColumnMetadata column = EntityMetadata.of(CodeReferenceModel.class).getEntityColumns().get(0);
+        CodeReferenceModel first = new CodeReferenceModel();
+        CodeReferenceModel second = new CodeReferenceModel();
+        CodeReferenceModel missing = new CodeReferenceModel(new UniqueCodeModel());
+
+        LoadContext context = new LoadContext();
+        context.defer(column, first, 1L);
+        context.defer(column, second, 1L);
+        context.defer(column, missing, 2L);
+
+        assertTrue(context.hasPending());
+        assertSame(UniqueCodeModel.class, context.nextPendingType());
+        long[] ids = context.getPendingIds(UniqueCodeModel.class);
+        assertEquals(2, ids.length);
+
+        UniqueCodeModel code = new UniqueCodeModel("a", "first");
+        context.register(UniqueCodeModel.class, 1L, code);
+        context.resolve(UniqueCodeModel.class, ids);
+
+        assertFalse(context.hasPending());
+        assertSame(code, first.getCode());
+        assertSame(code, second.getCode());
+        assertNull(missing.getCode());
+    }
+
+    @Test
+    public void testDeferToLoadedEntitySetsItNow() {
+        ColumnMetadata column = EntityMetadata.of(CodeReferenceModel.class).getEntityColumns().get(0);
+        UniqueCodeModel code = new UniqueCodeModel("a", "first");
+        CodeReferenceModel reference = new CodeReferenceModel();
+
+        LoadContext context = new LoadContext();
+        context.register(UniqueCodeModel.class, 1L, code);
+        context.defer(column, reference, 1L);
+
+        assertFalse(context.hasPending());
+        assertSame(code, reference.getCode());
+    }
+
+    @Test
+    public void testListAllLoadsReferencesOnce() {
+        UniqueCodeModel a = new UniqueCodeModel("a", "first");
+        UniqueCodeModel b = new UniqueCodeModel("b", "second");
+        SugarRecord.save(a);
+        SugarRecord.save(b);
+        for (int i = 0; i < 10; i++) {
+            SugarRecord.save(new CodeReferenceModel((i % 2 == 0) ? a : b));
+        }
+
+        List<CodeReferenceModel> references = SugarRecord.listAll(CodeReferenceModel.class);
+
+        assertEquals(10, references.size());
+        for (int i = 0; i < references.size(); i++) {
+            assertSame(references.get(i % 2).getCode(), references.get(i).getCode());
+        }
+        assertEquals("first", references.get(0).getCode().getName());
+        assertEquals("second", references.get(1).getCode().getName());
+    }
+
+    @Test
+    public void testListAllLoadsListsOnce() {
+        AnnotatedOneToManyModel first = new AnnotatedOneToManyModel();
+        AnnotatedOneToManyModel second = new AnnotatedOneToManyModel();
+        AnnotatedOneToManyModel empty = new AnnotatedOneToManyModel();
+        SugarRecord.saveInTx(first, second, empty);
+        for (int i = 0; i < 6; i++) {
+            SugarRecord.save(new AnnotatedOneToManyRelationModel((i < 4) ? first : second));
+        }
+
+        List<AnnotatedOneToManyModel> owners = SugarRecord.listAll(AnnotatedOneToManyModel.class);
+
+        assertEquals(3, owners.size());
+        assertEquals(4, owners.get(0).getModels().size());
+        assertEquals(2, owners.get(1).getModels().size());
+        assertTrue(owners.get(2).getModels().isEmpty());
+        for (AnnotatedOneToManyRelationModel model : owners.get(0).getModels()) {
+            assertSame(owners.get(0), model.getOwner());
+        }
+    }
+
+    @Test
+    public void testRowReadTwiceIsOneInstance() {
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+
+        List<UniqueCodeModel> codes = SugarRecord.findWithQuery(UniqueCodeModel.class,
+                "SELECT * FROM UniqueCodeModel UNION ALL SELECT * FROM UniqueCodeModel");
+
+        assertEquals(2, codes.size());
+        assertSame(codes.get(0), codes.get(1));
+    }
+
+    @Test
+    public void testIteratorSharesReferences() {
+        UniqueCodeModel a = new UniqueCodeModel("a", "first");
+        SugarRecord.save(a);
+        SugarRecord.save(new CodeReferenceModel(a));
+        SugarRecord.save(new CodeReferenceModel(a));
+
+        Iterator<CodeReferenceModel> iterator = SugarRecord.findAll(CodeReferenceModel.class);
+        CodeReferenceModel first = iterator.next();
+        CodeReferenceModel second = iterator.next();
+
+        assertFalse(iterator.hasNext());
+        assertSame(first.getCode(), second.getCode());
+    }
+
+    @Test
+    public void testOnLoadSeesReferences() {
+        SimpleExtendedModel simple = new SimpleExtendedModel();
+        SugarRecord.save(simple);
+        SugarRecord.save(new LoadHookModel(simple));
+
+        List<LoadHookModel> loaded = SugarRecord.listAll(LoadHookModel.class);
+        assertNotNull(loaded.get(0).getSimpleOnLoad());
+
+        Iterator<LoadHookModel> iterator = SugarRecord.findAll(LoadHookModel.class);
+        assertNotNull(iterator.next().getSimpleOnLoad());
+    }
+}
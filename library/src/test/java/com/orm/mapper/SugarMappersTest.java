@@ -0,0 +1,40 @@
+package com.orm.mapper;
+
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.MappedModel;
+import com.orm.model.MappedModel_SugarMapper;
+import com.orm.model.SimpleAnnotatedModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class SugarMappersTest {
+
+    @Test
+    public void testMapperClassName() {
+        assertEquals("com.orm.model.MappedModel_SugarMapper", SugarMappers.getMapperClassName(MappedModel.class));
+    }
+
+    @Test
+    public void testGeneratedMapperIsFound() {
+        SugarMapper<MappedModel> mapper = SugarMappers.getMapper(MappedModel.class);
+        assertTrue(mapper instanceof MappedModel_SugarMapper);
+        assertSame(mapper, SugarMappers.getMapper(MappedModel.class));
+    }
+
+    @Test
+    public void testMissingMapperFallsBack() {
+        assertNull(SugarMappers.getMapper(SimpleAnnotatedModel.class));
+        assertNull(SugarMappers.getMapper(SimpleAnnotatedModel.class));
+    }
+}
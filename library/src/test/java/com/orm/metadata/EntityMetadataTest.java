@@ -0,0 +1,98 @@
+package com.orm.metadata;
+
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.ColumnUniqueModel;
+import com.orm.model.IntUniqueModel;
+import com.orm.model.MappedModel;
+import com.orm.model.MultiColumnUniqueModel;
+import com.orm.model.RelationshipAnnotatedModel;
+import com.orm.model.SimpleAnnotatedModel;
+import com.orm.model.onetomany.OneToManyModel;
+import com.orm.model.onetomany.OneToManyRelationModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class EntityMetadataTest {
+
+    @Test
+    public void testMetadataIsBuiltOnce() {
+        assertSame(EntityMetadata.of(MappedModel.class), EntityMetadata.of(MappedModel.class));
+    }
+
+    @Test
+    public void testIdColumn() {
+        EntityMetadata metadata = EntityMetadata.of(MappedModel.class);
+
+        assertEquals("MappedModel", metadata.getTableName());
+        assertTrue(metadata.isTableAnnotated());
+        assertTrue(metadata.hasIdField());
+        assertEquals("id", metadata.getIdColumnName());
+        assertEquals(Long.class, metadata.getIdType());
+        assertTrue(metadata.getIdColumn().isId());
+    }
+
+    @Test
+    public void testNoIdColumn() {
+        EntityMetadata metadata = EntityMetadata.of(SimpleAnnotatedModel.class);
+
+        assertFalse(metadata.hasIdField());
+        assertNull(metadata.getIdField());
+        assertEquals("id", metadata.getIdColumnName());
+    }
+
+    @Test
+    public void testEntityColumn() {
+        EntityMetadata metadata = EntityMetadata.of(RelationshipAnnotatedModel.class);
+        ColumnMetadata column = metadata.getEntityColumns().get(0);
+
+        assertEquals("simple", column.getColumnName());
+        assertEquals(ColumnMetadata.Kind.ENTITY, column.getKind());
+        assertEquals(SimpleAnnotatedModel.class, column.getRelationType());
+    }
+
+    @Test
+    public void testListColumn() {
+        EntityMetadata metadata = EntityMetadata.of(OneToManyModel.class);
+        ColumnMetadata column = metadata.getListColumns().get(0);
+
+        assertEquals(ColumnMetadata.Kind.LIST, column.getKind());
+        assertEquals(OneToManyRelationModel.class, column.getRelationType());
+        assertEquals("model", column.getTargetFieldName());
+        assertFalse(column.isPersisted());
+    }
+
+    @Test
+    public void testUniqueColumns() {
+        assertEquals("value", EntityMetadata.of(IntUniqueModel.class).getUniqueColumns().get(0).getColumnName());
+        assertEquals(Arrays.asList("a", "b"), EntityMetadata.of(MultiColumnUniqueModel.class).getMultiUniqueColumnNames());
+    }
+
+    @Test
+    public void testColumnUniqueIsNotUniqueAnnotated() {
+        ColumnMetadata code = EntityMetadata.of(ColumnUniqueModel.class).getUniqueColumns().get(0);
+
+        assertEquals("CODE", code.getColumnName());
+        assertTrue(code.isUnique());
+        assertFalse(code.isUniqueAnnotated());
+        assertTrue(EntityMetadata.of(IntUniqueModel.class).getUniqueColumns().get(0).isUniqueAnnotated());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testColumnsAreImmutable() {
+        EntityMetadata.of(MappedModel.class).getColumns().clear();
+    }
+}
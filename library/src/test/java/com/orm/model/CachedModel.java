@@ -0,0 +1,31 @@
+package com.orm.model;
+
+import com.orm.annotation.Cacheable;
+import com.orm.annotation.Id;
+import com.orm.annotation.Table;
+
+@Table
+@Cacheable(maxEntries = 2)
+public class CachedModel {
+    @Id
+    Long id;
+    String name;
+
+    public CachedModel() {}
+
+    public CachedModel(String name) {
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
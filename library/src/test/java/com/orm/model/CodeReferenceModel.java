@@ -0,0 +1,21 @@
+package com.orm.model;
+
+import com.orm.annotation.Id;
+import com.orm.annotation.Table;
+
+@Table
+public class CodeReferenceModel {
+    @Id
+    Long id;
+    UniqueCodeModel code;
+
+    public CodeReferenceModel() {}
+
+    public CodeReferenceModel(UniqueCodeModel code) {
+        this.code = code;
+    }
+
+    public UniqueCodeModel getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,41 @@
+package com.orm.model;
+
+import com.orm.annotation.Column;
+import com.orm.annotation.Id;
+import com.orm.annotation.Table;
+
+@Table
+public class ColumnUniqueModel {
+    @Id
+    Long id;
+    @Column(name = "CODE", unique = true)
+    String code;
+    String name;
+
+    public ColumnUniqueModel() {}
+
+    public ColumnUniqueModel(String code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,23 @@
+package com.orm.model;
+
+import com.orm.SugarRecord;
+
+public class LoadHookModel extends SugarRecord {
+    private SimpleExtendedModel simple;
+    private transient SimpleExtendedModel simpleOnLoad;
+
+    public LoadHookModel() {}
+
+    public LoadHookModel(SimpleExtendedModel simple) {
+        this.simple = simple;
+    }
+
+    @Override
+    public void onLoad() {
+        simpleOnLoad = simple;
+    }
+
+    public SimpleExtendedModel getSimpleOnLoad() {
+        return simpleOnLoad;
+    }
+}
@@ -0,0 +1,21 @@
+package com.orm.model;
+
+import com.orm.annotation.Id;
+import com.orm.annotation.Table;
+
+@Table
+public class MappedModel {
+    @Id
+    Long id;
+    String name;
+
+    public MappedModel() {}
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,33 @@
+package com.orm.model;
+
+import com.orm.annotation.Id;
+import com.orm.annotation.Table;
+import com.orm.annotation.Unique;
+
+@Table
+public class UniqueCodeModel {
+    @Id
+    Long id;
+    @Unique
+    String code;
+    String name;
+
+    public UniqueCodeModel() {}
+
+    public UniqueCodeModel(String code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
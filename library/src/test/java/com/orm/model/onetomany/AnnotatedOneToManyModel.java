@@ -0,0 +1,26 @@
+package com.orm.model.onetomany;
+
+import com.orm.annotation.Id;
+import com.orm.annotation.OneToMany;
+import com.orm.annotation.Table;
+
+import java.util.List;
+
+@Table
+public class AnnotatedOneToManyModel {
+    @Id
+    Long id;
+    @OneToMany(targetField = "owner")
+    List<AnnotatedOneToManyRelationModel> models;
+
+    public AnnotatedOneToManyModel() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public List<AnnotatedOneToManyRelationModel> getModels() {
+        return models;
+    }
+}
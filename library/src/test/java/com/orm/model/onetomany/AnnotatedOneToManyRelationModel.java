@@ -0,0 +1,22 @@
+package com.orm.model.onetomany;
+
+import com.orm.annotation.Id;
+import com.orm.annotation.Table;
+
+@Table
+public class AnnotatedOneToManyRelationModel {
+    @Id
+    Long id;
+    AnnotatedOneToManyModel owner;
+
+    public AnnotatedOneToManyRelationModel() {
+    }
+
+    public AnnotatedOneToManyRelationModel(AnnotatedOneToManyModel owner) {
+        this.owner = owner;
+    }
+
+    public AnnotatedOneToManyModel getOwner() {
+        return owner;
+    }
+}
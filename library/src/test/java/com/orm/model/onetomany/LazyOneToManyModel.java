@@ -0,0 +1,27 @@
+package com.orm.model.onetomany;
+
+import com.orm.annotation.FetchType;
+import com.orm.annotation.Id;
+import com.orm.annotation.OneToMany;
+import com.orm.annotation.Table;
+
+import java.util.List;
+
+@Table
+public class LazyOneToManyModel {
+    @Id
+    Long id;
+    @OneToMany(targetField = "owner", fetch = FetchType.LAZY)
+    List<LazyOneToManyRelationModel> models;
+
+    public LazyOneToManyModel() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public List<LazyOneToManyRelationModel> getModels() {
+        return models;
+    }
+}
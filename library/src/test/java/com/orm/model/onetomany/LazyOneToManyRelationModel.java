@@ -0,0 +1,26 @@
+package com.orm.model.onetomany;
+
+import com.orm.EntityRef;
+import com.orm.annotation.Column;
+import com.orm.annotation.Id;
+import com.orm.annotation.Table;
+
+@Table
+public class LazyOneToManyRelationModel {
+    @Id
+    Long id;
+    // not the default column name, which the lazy list has to find
+    @Column(name = "OWNER_REF")
+    EntityRef<LazyOneToManyModel> owner;
+
+    public LazyOneToManyRelationModel() {
+    }
+
+    public LazyOneToManyRelationModel(LazyOneToManyModel owner) {
+        this.owner = EntityRef.of(owner);
+    }
+
+    public EntityRef<LazyOneToManyModel> getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,143 @@
+package com.orm.query;
+
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.UniqueCodeModel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.orm.SugarRecord.save;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class KeysetPaginationTest {
+
+    @Before
+    public void setUp() {
+        // names repeat, so that pages need the id to break ties
+        String[] names = {"b", "a", "c", "a", "b", null, "a"};
+        for (int i = 0; i < names.length; i++) {
+            save(new UniqueCodeModel("code" + i, names[i]));
+        }
+    }
+
+    @Test
+    public void pagesVisitEveryRowOnceInOrder() {
+        List<String> names = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+
+        do {
+            Page<UniqueCodeModel> page = Select.from(UniqueCodeModel.class).page("name", 2, token);
+            for (UniqueCodeModel model : page.getItems()) {
+                names.add(model.getName());
+            }
+            token = page.getNextToken();
+            pages++;
+        } while (token != null);
+
+        assertEquals(4, pages);
+        assertEquals(7, names.size());
+        assertNull(names.get(0));
+        assertEquals("[null, a, a, a, b, b, c]", names.toString());
+    }
+
+    @Test
+    public void descendingPages() {
+        List<String> names = new ArrayList<>();
+        String token = null;
+
+        do {
+            Page<UniqueCodeModel> page = Select.from(UniqueCodeModel.class).page("name", true, 3, token);
+            for (UniqueCodeModel model : page.getItems()) {
+                names.add(model.getName());
+            }
+            token = page.getNextToken();
+        } while (token != null);
+
+        assertEquals("[c, b, b, a, a, a, null]", names.toString());
+    }
+
+    @Test
+    public void pagesKeepTheConditions() {
+        Page<UniqueCodeModel> page = Select.from(UniqueCodeModel.class)
+                .where(Condition.prop("name").eq("a"))
+                .page("id", 2, null);
+        assertEquals(2, page.getItems().size());
+        assertTrue(page.hasNext());
+
+        Page<UniqueCodeModel> next = Select.from(UniqueCodeModel.class)
+                .where(Condition.prop("name").eq("a"))
+                .page("id", 2, page.getNextToken());
+        assertEquals(1, next.getItems().size());
+        assertFalse(next.hasNext());
+        assertTrue(next.getItems().get(0).getId() > page.getItems().get(1).getId());
+    }
+
+    @Test
+    public void pagesKeepARawOrClause() {
+        List<Long> ids = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+
+        do {
+            Page<UniqueCodeModel> page = Select.from(UniqueCodeModel.class)
+                    .where("name = ? OR name = ?", new String[]{"a", "b"})
+                    .page("id", 2, token);
+            for (UniqueCodeModel model : page.getItems()) {
+                assertFalse(ids.contains(model.getId()));
+                ids.add(model.getId());
+            }
+            token = page.getNextToken();
+            pages++;
+        } while (token != null && pages < 10);
+
+        assertEquals(3, pages);
+        assertEquals(5, ids.size());
+    }
+
+    @Test
+    public void afterAndBefore() {
+        List<UniqueCodeModel> as = Select.from(UniqueCodeModel.class).where(Condition.prop("name").eq("a")).orderBy("id").list();
+        Long secondA = as.get(1).getId();
+
+        List<UniqueCodeModel> after = Select.from(UniqueCodeModel.class).after("name", "a", secondA).list();
+        assertEquals(4, after.size());
+        assertEquals("a", after.get(0).getName());
+        assertEquals("c", after.get(3).getName());
+
+        List<UniqueCodeModel> before = Select.from(UniqueCodeModel.class).before("name", "b").list();
+        assertEquals(4, before.size());
+        assertEquals("a", before.get(0).getName());
+        assertNull(before.get(3).getName());
+    }
+
+    @Test
+    public void listAppliesOffset() {
+        List<UniqueCodeModel> all = Select.from(UniqueCodeModel.class).orderBy("id").list();
+
+        List<UniqueCodeModel> skipped = Select.from(UniqueCodeModel.class).orderBy("id").limit("2").offset("3").list();
+        assertEquals(2, skipped.size());
+        assertEquals(all.get(3).getId(), skipped.get(0).getId());
+
+        List<UniqueCodeModel> rest = Select.from(UniqueCodeModel.class).orderBy("id").offset("5").list();
+        assertEquals(2, rest.size());
+        assertEquals(all.get(5).getId(), Select.from(UniqueCodeModel.class).orderBy("id").offset("5").first().getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badToken() {
+        Select.from(UniqueCodeModel.class).page("name", 2, "nonsense");
+    }
+}
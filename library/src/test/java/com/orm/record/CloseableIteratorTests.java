@@ -0,0 +1,129 @@
+package com.orm.record;
+
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.UniqueCodeModel;
+import com.orm.query.Select;
+import com.orm.util.CloseableIterator;
+import com.orm.util.CursorLeakTracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.orm.SugarRecord.save;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public class CloseableIteratorTests {
+
+    @Before
+    public void setUp() {
+        CursorLeakTracker.setEnabled(true);
+        CursorLeakTracker.expungeLeaks();
+        for (int i = 0; i < 5; i++) {
+            save(new UniqueCodeModel("code" + i, "name" + i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        CursorLeakTracker.setEnabled(null);
+    }
+
+    @Test
+    public void closingEarlyReleasesTheCursor() {
+        int open = CursorLeakTracker.getOpenCursors().size();
+        CloseableIterator<UniqueCodeModel> iterator = SugarRecord.findAll(UniqueCodeModel.class);
+        try {
+            iterator.next();
+            assertEquals(open + 1, CursorLeakTracker.getOpenCursors().size());
+        } finally {
+            iterator.close();
+        }
+
+        assertFalse(iterator.hasNext());
+        assertEquals(open, CursorLeakTracker.getOpenCursors().size());
+        iterator.close();
+    }
+
+    @Test
+    public void readingToTheEndReleasesTheCursor() {
+        int open = CursorLeakTracker.getOpenCursors().size();
+        CloseableIterator<UniqueCodeModel> iterator = Select.from(UniqueCodeModel.class).iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+
+        assertEquals(5, count);
+        assertEquals(open, CursorLeakTracker.getOpenCursors().size());
+    }
+
+    @Test
+    public void forEachStopsWhenAsked() {
+        int open = CursorLeakTracker.getOpenCursors().size();
+        final List<String> names = new ArrayList<>();
+
+        int count = SugarRecord.forEach(UniqueCodeModel.class, null, null, "code", new SugarRecord.RowCallback<UniqueCodeModel>() {
+            @Override
+            public boolean onRow(UniqueCodeModel entity) {
+                names.add(entity.getName());
+                return names.size() < 2;
+            }
+        });
+
+        assertEquals(2, count);
+        assertEquals("name0", names.get(0));
+        assertEquals("name1", names.get(1));
+        assertEquals(open, CursorLeakTracker.getOpenCursors().size());
+    }
+
+    @Test
+    public void selectForEachRow() {
+        final List<String> names = new ArrayList<>();
+
+        int count = Select.from(UniqueCodeModel.class).readOnly().orderBy("code").forEachRow(new SugarRecord.RowCallback<UniqueCodeModel>() {
+            @Override
+            public boolean onRow(UniqueCodeModel entity) {
+                names.add(entity.getName());
+                return true;
+            }
+        });
+
+        assertEquals(5, count);
+        assertEquals("name4", names.get(4));
+    }
+
+    @Test
+    public void droppedIteratorIsReported() throws Exception {
+        int open = CursorLeakTracker.getOpenCursors().size();
+        leakIterator();
+        assertEquals(open + 1, CursorLeakTracker.getOpenCursors().size());
+
+        int leaks = 0;
+        for (int i = 0; i < 20 && leaks == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            leaks = CursorLeakTracker.expungeLeaks();
+        }
+
+        assertTrue(leaks > 0);
+        assertEquals(open, CursorLeakTracker.getOpenCursors().size());
+    }
+
+    private static void leakIterator() {
+        SugarRecord.findAll(UniqueCodeModel.class).next();
+    }
+}
@@ -0,0 +1,120 @@
+package com.orm.record;
+
+import com.orm.EntityRef;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.onetomany.LazyOneToManyModel;
+import com.orm.model.onetomany.LazyOneToManyRelationModel;
+import com.orm.util.LazyList;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static com.orm.SugarRecord.delete;
+import static com.orm.SugarRecord.findById;
+import static com.orm.SugarRecord.listAll;
+import static com.orm.SugarRecord.save;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public class LazyRelationTests {
+
+    @Test
+    public void lazyListIsCountedWithoutLoading() {
+        LazyOneToManyModel owner = new LazyOneToManyModel();
+        save(owner);
+        for (int i = 0; i < 3; i++) {
+            save(new LazyOneToManyRelationModel(owner));
+        }
+
+        LazyOneToManyModel result = findById(LazyOneToManyModel.class, owner.getId());
+        LazyList<LazyOneToManyRelationModel> models = (LazyList<LazyOneToManyRelationModel>) result.getModels();
+
+        assertEquals(3, models.size());
+        assertFalse(models.isEmpty());
+        assertFalse(models.isLoaded());
+
+        LazyOneToManyRelationModel first = models.get(0);
+        assertTrue(models.isLoaded());
+        assertSame(result, first.getOwner().get());
+    }
+
+    @Test
+    public void emptyLazyList() {
+        LazyOneToManyModel owner = new LazyOneToManyModel();
+        save(owner);
+
+        LazyOneToManyModel result = findById(LazyOneToManyModel.class, owner.getId());
+
+        assertTrue(result.getModels().isEmpty());
+        assertFalse(((LazyList<?>) result.getModels()).isLoaded());
+    }
+
+    @Test
+    public void entityRefIsReadOnFirstGet() {
+        LazyOneToManyModel owner = new LazyOneToManyModel();
+        save(owner);
+        save(new LazyOneToManyRelationModel(owner));
+        save(new LazyOneToManyRelationModel(null));
+
+        List<LazyOneToManyRelationModel> models = listAll(LazyOneToManyRelationModel.class);
+        EntityRef<LazyOneToManyModel> reference = models.get(0).getOwner();
+
+        assertFalse(reference.isLoaded());
+        assertEquals(owner.getId(), reference.getId());
+        assertEquals(owner.getId(), reference.get().getId());
+        assertTrue(reference.isLoaded());
+        assertNull(models.get(1).getOwner());
+    }
+
+    @Test
+    public void lazyListIsIteratedAfterAStaleCount() {
+        LazyOneToManyModel owner = new LazyOneToManyModel();
+        save(owner);
+
+        LazyOneToManyModel result = findById(LazyOneToManyModel.class, owner.getId());
+        List<LazyOneToManyRelationModel> models = result.getModels();
+        assertTrue(models.isEmpty());
+
+        save(new LazyOneToManyRelationModel(owner));
+        assertEquals(1, models.size());
+
+        int iterated = 0;
+        for (LazyOneToManyRelationModel model : models) {
+            assertSame(result, model.getOwner().get());
+            iterated++;
+        }
+        assertEquals(1, iterated);
+    }
+
+    @Test
+    public void lazyListAddsAfterAStaleCount() {
+        LazyOneToManyModel owner = new LazyOneToManyModel();
+        save(owner);
+        LazyOneToManyRelationModel first = new LazyOneToManyRelationModel(owner);
+        LazyOneToManyRelationModel second = new LazyOneToManyRelationModel(owner);
+        save(first);
+        save(second);
+
+        LazyOneToManyModel result = findById(LazyOneToManyModel.class, owner.getId());
+        List<LazyOneToManyRelationModel> models = result.getModels();
+        assertEquals(2, models.size());
+
+        delete(first);
+        delete(second);
+        LazyOneToManyRelationModel added = new LazyOneToManyRelationModel(owner);
+        assertTrue(models.add(added));
+
+        assertEquals(1, models.size());
+        assertSame(added, models.get(0));
+    }
+}
@@ -0,0 +1,83 @@
+package com.orm.record;
+
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.CodeReferenceModel;
+import com.orm.model.UniqueCodeModel;
+import com.orm.model.onetomany.LazyOneToManyModel;
+import com.orm.model.onetomany.LazyOneToManyRelationModel;
+import com.orm.query.Select;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static com.orm.SugarRecord.save;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public class ReadOnlyTests {
+
+    @Test
+    public void readOnlyRowsAreNotShared() {
+        save(new UniqueCodeModel("a", "first"));
+
+        List<UniqueCodeModel> models = SugarRecord.findReadOnly(UniqueCodeModel.class,
+                "code = ? OR code = ?", "a", "a");
+        List<UniqueCodeModel> again = SugarRecord.findReadOnly(UniqueCodeModel.class, null);
+
+        assertEquals(1, models.size());
+        assertEquals("first", models.get(0).getName());
+        assertNotSame(models.get(0), again.get(0));
+    }
+
+    @Test
+    public void readOnlyDoesNotLoadReferences() {
+        UniqueCodeModel code = new UniqueCodeModel("a", "first");
+        save(code);
+        save(new CodeReferenceModel(code));
+
+        CodeReferenceModel model = Select.from(CodeReferenceModel.class).readOnly().first();
+
+        assertNotNull(model);
+        assertNull(model.getCode());
+        assertNotNull(Select.from(CodeReferenceModel.class).first().getCode());
+    }
+
+    @Test
+    public void readOnlyKeepsLazyRelations() {
+        LazyOneToManyModel owner = new LazyOneToManyModel();
+        save(owner);
+        save(new LazyOneToManyRelationModel(owner));
+
+        LazyOneToManyRelationModel model = Select.from(LazyOneToManyRelationModel.class).readOnly().first();
+
+        assertFalse(model.getOwner().isLoaded());
+        assertEquals(owner.getId(), model.getOwner().getId());
+    }
+
+    @Test
+    public void readOnlyIterator() {
+        for (int i = 0; i < 3; i++) {
+            save(new UniqueCodeModel("code" + i, "name" + i));
+        }
+
+        Iterator<UniqueCodeModel> iterator = Select.from(UniqueCodeModel.class).readOnly().orderBy("id").iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertEquals("name" + count, iterator.next().getName());
+            count++;
+        }
+        assertEquals(3, count);
+    }
+}
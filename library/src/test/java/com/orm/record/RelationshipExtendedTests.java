@@ -13,7 +13,9 @@ import org.robolectric.annotation.Config;
 import java.util.List;
 
 import static com.orm.SugarRecord.save;
+import static com.orm.SugarRecord.saveInTx;
 import static com.orm.SugarRecord.count;
+import static com.orm.SugarRecord.findById;
 import static com.orm.SugarRecord.listAll;
 
 import static org.junit.Assert.assertEquals;
@@ -122,4 +124,18 @@ public class RelationshipExtendedTests {
             assertEquals(model.getId(), model.getSimple().getId());
         }
     }
+
+    @Test
+    public void unsavedRelationIsSavedFirstTest() throws Exception {
+        SimpleExtendedModel simple = new SimpleExtendedModel();
+        RelationshipExtendedModel model = new RelationshipExtendedModel(simple);
+        save(model);
+
+        SimpleExtendedModel anotherSimple = new SimpleExtendedModel();
+        RelationshipExtendedModel another = new RelationshipExtendedModel(anotherSimple);
+        saveInTx(another);
+
+        assertEquals(simple.getId(), findById(RelationshipExtendedModel.class, model.getId()).getSimple().getId());
+        assertEquals(anotherSimple.getId(), findById(RelationshipExtendedModel.class, another.getId()).getSimple().getId());
+    }
 }
@@ -20,6 +20,7 @@ import static com.orm.SugarRecord.save;
 import static com.orm.SugarRecord.count;
 import static com.orm.SugarRecord.deleteAll;
 import static com.orm.SugarRecord.delete;
+import static com.orm.SugarRecord.deleteByIds;
 import static com.orm.SugarRecord.deleteInTx;
 import static com.orm.SugarRecord.listAll;
 import static com.orm.SugarRecord.findById;
@@ -178,12 +179,37 @@ public final class SimpleAnnotatedModelTests {
         assertEquals(0L, count(SimpleAnnotatedModel.class));
     }
 
+    @Test
+    public void deleteByIdsTest() throws Exception {
+        for (int i = 1; i <= 1500; i++) {
+            save(new SimpleAnnotatedModel());
+        }
+
+        long[] ids = new long[1200];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i + 1;
+        }
+
+        assertEquals(1200, deleteByIds(SimpleAnnotatedModel.class, ids));
+        assertEquals(300L, count(SimpleAnnotatedModel.class));
+        assertEquals(0, deleteByIds(SimpleAnnotatedModel.class, 1L, 2L));
+    }
+
     @Test
     public void saveInTransactionTest() throws Exception {
         saveInTx(new SimpleAnnotatedModel(), new SimpleAnnotatedModel());
         assertEquals(2L, count(SimpleAnnotatedModel.class));
     }
 
+    @Test
+    public void saveInTransactionIdsTest() throws Exception {
+        long[] ids = saveInTx(new SimpleAnnotatedModel(), new SimpleAnnotatedModel());
+
+        assertEquals(2, ids.length);
+        assertEquals(1L, ids[0]);
+        assertEquals(2L, ids[1]);
+    }
+
     @Test
     public void listAllTest() throws Exception {
         for (int i = 1; i <= 100; i++) {
@@ -0,0 +1,38 @@
+package com.orm.record;
+
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.ColumnUniqueModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.orm.SugarRecord.count;
+import static com.orm.SugarRecord.findById;
+import static com.orm.SugarRecord.save;
+import static com.orm.SugarRecord.update;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public class UpdateTests {
+
+    @Test
+    public void columnUniqueValuesAreUpdatedInPlace() {
+        save(new ColumnUniqueModel("a", "first"));
+        ColumnUniqueModel model = new ColumnUniqueModel("b", "second");
+        save(model);
+
+        // only @Unique columns find the row, so the row is updated rather than saved again
+        model.setCode("c");
+        model.setName("third");
+        assertEquals(1, update(model));
+
+        assertEquals(2, count(ColumnUniqueModel.class));
+        ColumnUniqueModel found = findById(ColumnUniqueModel.class, model.getId());
+        assertEquals("c", found.getCode());
+        assertEquals("third", found.getName());
+    }
+}
@@ -0,0 +1,73 @@
+package com.orm.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class EntityIdMapTest {
+    private EntityIdMap entityIds;
+
+    @Before
+    public void setUp() {
+        entityIds = new EntityIdMap();
+    }
+
+    @Test
+    public void testEqualEntitiesAreTrackedSeparately() {
+        String first = new String("entity");
+        String second = new String("entity");
+
+        entityIds.put(first, 1L);
+        entityIds.put(second, 2L);
+
+        assertEquals(1L, entityIds.get(first, -1L));
+        assertEquals(2L, entityIds.get(second, -1L));
+        assertEquals(2, entityIds.size());
+    }
+
+    @Test
+    public void testPutReplacesTheId() {
+        Object entity = new Object();
+        entityIds.put(entity, 1L);
+        entityIds.put(entity, 5L);
+
+        assertEquals(5L, entityIds.get(entity, -1L));
+        assertEquals(1, entityIds.size());
+    }
+
+    @Test
+    public void testRemove() {
+        Object entity = new Object();
+        entityIds.put(entity, 1L);
+        entityIds.remove(entity);
+
+        assertFalse(entityIds.contains(entity));
+        assertEquals(-1L, entityIds.get(entity, -1L));
+        assertEquals(0, entityIds.size());
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        List<Object> entities = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Object entity = new Object();
+            entities.add(entity);
+            entityIds.put(entity, i);
+        }
+
+        for (int i = 0; i < entities.size(); i++) {
+            assertTrue(entityIds.contains(entities.get(i)));
+            assertEquals(i, entityIds.get(entities.get(i), -1L));
+        }
+        assertEquals(1000, entityIds.size());
+
+        entityIds.clear();
+        assertEquals(0, entityIds.size());
+    }
+}
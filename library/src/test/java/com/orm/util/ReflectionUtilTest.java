@@ -57,7 +57,7 @@ public final class ReflectionUtilTest {
         Field column = TestRecord.class.getField("name");
         ContentValues values = new ContentValues();
 
-        ReflectionUtil.addFieldValueToColumn(values, column, record, context.getEntitiesMap());
+        ReflectionUtil.addFieldValueToColumn(values, column, record);
 
         Assert.assertEquals(record.getName(), values.getAsString("NAME"));
     }
@@ -0,0 +1,58 @@
+package com.orm.util;
+
+import com.orm.SugarContext;
+import com.orm.SugarRecord;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+import com.orm.model.UniqueCodeModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class StatementCacheTest {
+
+    @Test
+    public void testCountReusesItsStatement() {
+        StatementCache statements = SugarContext.getSugarContext().getSugarDb().getStatementCache();
+        statements.clear();
+
+        SugarRecord.save(new UniqueCodeModel("a", "first"));
+        assertEquals(1, SugarRecord.count(UniqueCodeModel.class, "code = ?", "a"));
+        assertEquals(0, SugarRecord.count(UniqueCodeModel.class, "code = ?", "b"));
+
+        assertEquals(1, statements.size());
+    }
+
+    @Test
+    public void testArgumentsAreRebound() {
+        StatementCache statements = new StatementCache(SugarContext.getSugarContext().getSugarDb().getDB(), 2);
+
+        statements.execute("INSERT INTO UniqueCodeModel (code, name) VALUES (?, ?)", "a", null);
+        statements.execute("INSERT INTO UniqueCodeModel (code, name) VALUES (?, ?)", "b", "second");
+
+        assertEquals(1, statements.simpleQueryForLong("SELECT count(*) FROM UniqueCodeModel WHERE name IS NULL"));
+        assertEquals(1, statements.simpleQueryForLong("SELECT count(*) FROM UniqueCodeModel WHERE code = ?", "b"));
+        assertEquals(2, statements.size());
+        statements.clear();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        StatementCache statements = new StatementCache(SugarContext.getSugarContext().getSugarDb().getDB(), 2);
+
+        statements.simpleQueryForLong("SELECT 1");
+        statements.simpleQueryForLong("SELECT 2");
+        statements.simpleQueryForLong("SELECT 1");
+        assertEquals(3, statements.simpleQueryForLong("SELECT 3"));
+
+        assertEquals(2, statements.size());
+        assertEquals(1, statements.simpleQueryForLong("SELECT 1"));
+        statements.clear();
+    }
+}
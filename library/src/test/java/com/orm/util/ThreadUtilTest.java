@@ -0,0 +1,110 @@
+package com.orm.util;
+
+import com.orm.SugarContext;
+import com.orm.SugarDbConfiguration;
+import com.orm.app.ClientApp;
+import com.orm.dsl.BuildConfig;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.orm.SugarContext.getSugarContext;
+import static junit.framework.Assert.assertNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(sdk = 18, constants = BuildConfig.class, application = ClientApp.class, packageName = "com.orm.model", manifest = Config.NONE)
+public final class ThreadUtilTest {
+
+    @After
+    public void tearDown() {
+        SugarContext.init(RuntimeEnvironment.application);
+    }
+
+    @Test(expected = IllegalAccessException.class)
+    public void testPrivateConstructor() throws Exception {
+        ThreadUtil util = ThreadUtil.class.getDeclaredConstructor().newInstance();
+        assertNull(util);
+    }
+
+    @Test
+    public void testWorkRunsOnNamedDaemonThreads() throws Exception {
+        Thread thread = ThreadUtil.doInBackground(new Callable<Thread>() {
+            @Override
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        }).get();
+
+        assertTrue(thread.isDaemon());
+        assertTrue(thread.getName().startsWith("Sugar-"));
+        assertSame(getSugarContext().getExecutor(), getSugarContext().getExecutor());
+    }
+
+    @Test
+    public void testFullQueueRejects() throws Exception {
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration()
+                .setExecutorPoolSize(1)
+                .setExecutorQueueSize(1));
+        final CountDownLatch latch = new CountDownLatch(1);
+        Callable<Void> blocked = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                latch.await();
+                return null;
+            }
+        };
+
+        try {
+            ThreadUtil.doInBackground(blocked);
+            ThreadUtil.doInBackground(blocked);
+            ThreadUtil.doInBackground(blocked);
+            fail("The third task should have been rejected");
+        } catch (RejectedExecutionException e) {
+            // the first task runs, the second waits, and there's no room for the third
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void testTerminateShutsDownOwnExecutorOnly() {
+        ExecutorService own = getSugarContext().getExecutor();
+        SugarContext.terminate();
+        assertTrue(own.isShutdown());
+
+        ExecutorService given = Executors.newSingleThreadExecutor();
+        SugarContext.init(RuntimeEnvironment.application, new SugarDbConfiguration().setExecutor(given));
+        assertSame(given, getSugarContext().getExecutor());
+        SugarContext.terminate();
+        assertFalse(given.isShutdown());
+        given.shutdown();
+    }
+
+    @Test
+    public void testRejectionPolicy() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ThreadUtil.newExecutor(1, 2,
+                new ThreadPoolExecutor.DiscardPolicy());
+
+        assertEquals(1, executor.getCorePoolSize());
+        assertTrue(executor.getRejectedExecutionHandler() instanceof ThreadPoolExecutor.DiscardPolicy);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}